@@ -115,7 +115,7 @@ public class AE {
                     Image.write(a, 256, 256, dumpPath + "/" + prefix + index.get() + ".png");
                     Image.write(p, 256, 256, dumpPath + "/" + prefix + index.get() + " rec.png");
                     printf("\r%-3s", ".".repeat(index.incrementAndGet() % 4));
-                    return 1.0 - (p - a).map(Math::abs).reduce(0, Double::sum) / p.size;
+                    return 1.0 - (p.lazy() - a).map(Math::abs).sum() / p.size;
                 }).average().getOrElse(0.0) * 100.0;
         printf("\r");
         return accuracy;
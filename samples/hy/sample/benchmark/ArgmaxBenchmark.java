@@ -0,0 +1,38 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+
+import java.util.function.IntSupplier;
+
+import hy.util.NArray;
+import io.vavr.Tuple2;
+import io.vavr.collection.Array;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class ArgmaxBenchmark {
+
+    int repeats = 200;
+
+    public void main(String[] args) {
+        val logits = NArray(1000).randomize();
+        report("boxed argmax [1000]", () -> Array.ofAll(logits).zipWithIndex().<Double>maxBy(Tuple2::_1).get()._2);
+        report("indexOfMax [1000]", logits::indexOfMax);
+
+        val batch = NArray(256, 1000).randomize();
+        report("boxed per-row [256,1000]", () -> {
+            var sum = 0;
+            for (var r = 0; r < 256; r++) {
+                val row = batch.select(0, r);
+                sum += Array.ofAll(row).zipWithIndex().<Double>maxBy(Tuple2::_1).get()._2;
+            }
+            return sum;
+        });
+        report("argmax(-1) [256,1000]", () -> batch.argmax(-1)[0]);
+        report("topK(5, -1) [256,1000]", () -> batch.topK(5, -1)._2[0]);
+    }
+
+    void report(String name, IntSupplier op) { Measure.report(name, 20, repeats, op::getAsInt); }
+}
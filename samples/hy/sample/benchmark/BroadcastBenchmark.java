@@ -0,0 +1,47 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.Supplier;
+
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class BroadcastBenchmark {
+
+    int repeats = 5;
+
+    public void main(String[] args) {
+        compare("per-channel bias", NArray(64, 128, 128).randomize(), NArray(64, 1, 1).randomize());
+        compare("row vector", NArray(1024, 1024).randomize(), NArray(1024).randomize());
+        compare("column vector", NArray(1024, 1024).randomize(), NArray(1024, 1).randomize());
+        compare("scalar", NArray(1024, 1024).randomize(), NArray(1, 1).randomize());
+        compare("outer product", NArray(1024, 1).randomize(), NArray(1, 1024).randomize());
+    }
+
+    void compare(String name, NArray a, NArray b) {
+        DoubleBinaryOperator op = (x, y) -> x * y + 1.0;
+        val legacy = millis(() -> legacyBimap(a, b, op));
+        val strided = millis(() -> a.bimap(op, b));
+        printf("%-18s legacy %9.2f ms  strided %9.2f ms  (%.1fx)\n", name, legacy, strided, legacy / strided);
+    }
+
+    double millis(Supplier<NArray> op) {
+        op.get();
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) op.get();
+        return (System.nanoTime() - start) * 1e-6 / repeats;
+    }
+
+    NArray legacyBimap(NArray a, NArray b, DoubleBinaryOperator op) {
+        val arr = NArray(NArray.broadcast(a.getShape(), b.getShape()));
+        arr.coordinates().parallel()
+                .forEach(coords -> arr[coords] = op.applyAsDouble(a[a.clipCoords(coords)], b[b.clipCoords(coords)]));
+        return arr;
+    }
+}
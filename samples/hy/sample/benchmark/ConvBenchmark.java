@@ -0,0 +1,49 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import hy.layer.feedforward.Conv;
+import hy.util.ConvEngine;
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class ConvBenchmark {
+
+    int[][] layers  = { { 4, 3, 256 }, { 5, 4, 254 }, { 6, 5, 126 }, { 6, 6, 124 }, { 5, 6, 61 }, { 5, 5, 59 } };
+    int     repeats = 3;
+
+    public void main(String[] args) {
+        for (val layer : layers) {
+            val filters = layer[0], channels = layer[1], size = layer[2];
+            val x = NArray(channels, size, size).randomize();
+            val delta = NArray(filters, size - 2, size - 2).randomize();
+            val flops = 2.0 * filters * channels * 9 * (size - 2) * (size - 2);
+            val direct = Conv(filters, channels, 3).engine(ConvEngine.DIRECT);
+            val lowered = Conv(filters, channels, 3).engine(ConvEngine.IM2COL);
+            val forward = gflops(flops, direct, x, null);
+            val forwardLowered = gflops(flops, lowered, x, null);
+            val backward = gflops(2 * flops, direct, x, delta);
+            val backwardLowered = gflops(2 * flops, lowered, x, delta);
+            printf("%d -> %d @ %3d  forward %7.3f / %7.3f GFLOP/s (%5.1fx)  backward %7.3f / %7.3f GFLOP/s (%5.1fx)\n",
+                channels, filters, size, forward, forwardLowered, forwardLowered / forward, backward, backwardLowered,
+                backwardLowered / backward);
+        }
+    }
+
+    double gflops(double flops, Conv layer, NArray x, NArray delta) {
+        run(layer, x, delta);
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) run(layer, x, delta);
+        layer.clearGradients();
+        return flops * repeats / (System.nanoTime() - start);
+    }
+
+    void run(Conv layer, NArray x, NArray delta) {
+        if (delta == null) layer.of(x, false);
+        else layer.delta(x, null, delta);
+    }
+}
@@ -0,0 +1,61 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.nio.DoubleBuffer;
+import java.util.function.Supplier;
+
+import hy.layer.ParamLayer;
+import hy.util.ConvEngine;
+import hy.util.ExecutionContext;
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class ConvScalingBenchmark {
+
+    int batch   = 8;
+    int repeats = 3;
+
+    public void main(String[] args) {
+        run("Conv 16->16 3x3", () -> Conv(16, 16, 3).engine(ConvEngine.DIRECT), NArray(batch, 16, 64, 64),
+            NArray(batch, 16, 62, 62));
+        run("Conv1D 16->16 w9", () -> Conv1D(16, 16, 9), NArray(batch, 16, 4096), NArray(batch, 16, 4088));
+        run("TConv 6->5 3x3/3", () -> TConv(5, 6, 3, 3, 0).engine(ConvEngine.DIRECT), NArray(batch, 6, 19, 19),
+            NArray(batch, 5, 57, 57));
+        run("TConv1D 8->8 w5/2", () -> TConv1D(8, 8, 5, 2, 0).engine(ConvEngine.DIRECT), NArray(batch, 8, 2048),
+            NArray(batch, 8, 4099));
+    }
+
+    @SuppressWarnings("try")
+    void run(String name, Supplier<? extends ParamLayer> factory, NArray x, NArray delta) {
+        x.randomize();
+        delta.randomize();
+        val reference = factory.get();
+        DoubleBuffer expected = null;
+        var base = 0.0;
+        for (var threads = 1; threads <= ExecutionContext.availableProcessors(); threads *= 2) {
+            val context = ExecutionContext.dedicated(threads, ExecutionContext.DEFAULT_GRAIN);
+            try (val scope = ExecutionContext.scope(context)) {
+                val layer = factory.get();
+                layer.readParameter(reference.parameterBuffer());
+                layer.delta(x, null, delta);
+                val start = System.nanoTime();
+                for (var i = 0; i < repeats; i++) layer.delta(x, null, delta);
+                val millis = (System.nanoTime() - start) * 1e-6 / repeats;
+                layer.update(SGD(1.0), null);
+                val parameters = layer.parameterBuffer();
+                if (expected == null) expected = parameters;
+                else if (!expected.equals(parameters)) throw new IllegalStateException(
+                        name + " gradients differ between 1 and " + threads + " threads");
+                if (threads == 1) base = millis;
+                printf("%-18s %2d threads  backward %9.3f ms  (%5.2fx)\n", name, threads, millis, base / millis);
+            } finally {
+                context.shutdown();
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+
+import java.util.function.Supplier;
+
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class EinsumBenchmark {
+
+    int repeats = 20;
+
+    public void main(String[] args) {
+        val a = NArray(32, 64, 128).randomize();
+        val b = NArray(32, 128, 64).randomize();
+        report("coordinate loop bik,bkj->bij", () -> NArray(32, 64, 64).fill((index, coords) -> {
+            var sum = 0.0;
+            for (var k = 0; k < 128; k++) sum += a.get(coords[0], coords[1], k) * b.get(coords[0], k, coords[2]);
+            return sum;
+        }));
+        report("einsum bik,bkj->bij", () -> NArray.einsum("bik,bkj->bij", a, b));
+        report("einsum bki,bkj->bij", () -> NArray.einsum("bki,bkj->bij", b, b));
+
+        val features = NArray(16, 64, 16, 16).randomize();
+        val mixing = NArray(32, 64).randomize();
+        report("einsum bchw,oc->bohw", () -> NArray.einsum("bchw,oc->bohw", features, mixing));
+        val matrix = NArray(256, 512).randomize();
+        val vector = NArray(512).randomize();
+        report("tensordot(1) [256,512]x[512]", () -> matrix.tensordot(vector, 1));
+    }
+
+    void report(String name, Supplier<Object> op) { Measure.report(name, 10, repeats, op::get); }
+}
@@ -0,0 +1,48 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.util.function.Supplier;
+
+import hy.util.ExecutionContext;
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class ExecutionBenchmark {
+
+    int work = 1 << 22;
+
+    @SuppressWarnings("try")
+    public void main(String[] args) {
+        val contexts = new ExecutionContext[] { ExecutionContext.common(1), ExecutionContext.getDefault(),
+                ExecutionContext.dedicated(ExecutionContext.availableProcessors(), ExecutionContext.DEFAULT_GRAIN),
+                ExecutionContext.sequential() };
+        for (val n : new int[] { 1, 16, 256, 4096, 1 << 20 }) {
+            val a = NArray(n).randomize();
+            val b = NArray(n).randomize();
+            val rows = NArray(32, Math.max(1, n / 32)).randomize();
+            for (val context : contexts) {
+                try (val scope = ExecutionContext.scope(context)) {
+                    val map = micros(n, () -> a.map(Math::tanh));
+                    val bimap = micros(n, () -> a.bimap((x, y) -> x * y, b));
+                    val reduce = micros(n, () -> rows.reduceLast(0, Double::sum));
+                    printf("n=%-8d %-60s map %9.2f us  bimap %9.2f us  reduceLast %9.2f us\n", n, context, map,
+                        bimap, reduce);
+                }
+            }
+        }
+        contexts[2].shutdown();
+    }
+
+    double micros(int n, Supplier<NArray> op) {
+        val repeats = Math.max(10, Math.min(100_000, work / n));
+        for (var i = 0; i < repeats / 10; i++) op.get();
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) op.get();
+        return (System.nanoTime() - start) * 1e-3 / repeats;
+    }
+}
@@ -0,0 +1,37 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.util.function.DoubleSupplier;
+import java.util.function.Supplier;
+
+import hy.util.NArray;
+import lombok.val;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class ExprBenchmark {
+
+    int repeats = 20;
+
+    public void main(String[] args) {
+        val y = NArray(64, 256, 256).map(Math::tanh);
+        val delta = NArray(64, 256, 256).randomize();
+        val a = NArray(64, 256, 256).randomize();
+
+        report("sigmoid delta eager", () -> y.map(v -> v * (1.0 - v)) * delta);
+        report("sigmoid delta lazy", () -> (y.lazy().map(v -> v * (1.0 - v)) * delta).eval());
+        report("adam step eager", () -> (y * 0.9 + delta * 0.1) / (a * a + 1e-8));
+        report("adam step lazy", () -> ((y.lazy() * 0.9 + delta.lazy() * 0.1) / (a.lazy() * a + 1e-8)).eval());
+        reportReduction("abs error eager", () -> (y - a).map(Math::abs).reduce(0, Double::sum));
+        reportReduction("abs error lazy", () -> (y.lazy() - a).map(Math::abs).sum());
+    }
+
+    void report(String name, Supplier<NArray> op) { reportReduction(name, () -> op.get().size); }
+
+    void reportReduction(String name, DoubleSupplier op) {
+        val result = Measure.run(3, repeats, op::getAsDouble);
+        printf("%-22s %10.2f ms %,16d bytes/op\n", name, result.getNanos() * 1e-6, result.getBytes());
+    }
+}
@@ -0,0 +1,58 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import hy.layer.Layer;
+import hy.layer.feedforward.Conv;
+import hy.layer.feedforward.Conv1D;
+import hy.util.ConvEngine;
+import hy.util.FftConv;
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class FftBenchmark {
+
+    int[] windows1D = { 8, 16, 24, 32, 48, 64, 128, 256 };
+    int[] windows2D = { 3, 5, 7, 9, 11, 15 };
+    int   channels  = 8;
+    int   filters   = 8;
+    int   length    = 16384;
+    int   size      = 96;
+    int   repeats   = 3;
+
+    public void main(String[] args) {
+        var crossover = 0;
+        val signal = NArray(channels, length).randomize();
+        for (val window : windows1D) {
+            val delta = NArray(filters, length - window + 1).randomize();
+            val direct = time(Conv1D(filters, channels, window).engine(ConvEngine.DIRECT), signal, delta);
+            val fft = time(Conv1D(filters, channels, window).engine(ConvEngine.FFT), signal, delta);
+            if (crossover == 0 && fft < direct) crossover = window;
+            printf("Conv1D window %3d  direct %9.3f ms  fft %9.3f ms  (%5.1fx)\n", window, direct, fft, direct / fft);
+        }
+        printf("Conv1D crossover ~ %d (current hy.fft.crossover1d = %d)\n\n", crossover, FftConv.CROSSOVER_1D);
+
+        crossover = 0;
+        val image = NArray(channels, size, size).randomize();
+        for (val window : windows2D) {
+            val delta = NArray(filters, size - window + 1, size - window + 1).randomize();
+            val lowered = time(Conv(filters, channels, window).engine(ConvEngine.IM2COL), image, delta);
+            val fft = time(Conv(filters, channels, window).engine(ConvEngine.FFT), image, delta);
+            if (crossover == 0 && fft < lowered) crossover = window * window;
+            printf("Conv window %2dx%-2d  im2col %9.3f ms  fft %9.3f ms  (%5.1fx)\n", window, window, lowered, fft,
+                lowered / fft);
+        }
+        printf("Conv crossover ~ %d taps (current hy.fft.crossover2d = %d)\n", crossover, FftConv.CROSSOVER_2D);
+    }
+
+    double time(Layer layer, NArray x, NArray delta) {
+        layer.delta(x, layer.of(x, true), delta);
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) layer.delta(x, layer.of(x, true), delta);
+        return (System.nanoTime() - start) * 1e-6 / repeats;
+    }
+}
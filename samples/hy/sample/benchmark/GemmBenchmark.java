@@ -0,0 +1,54 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.util.function.Supplier;
+
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class GemmBenchmark {
+
+    int[][] layers  = { { 1805, 1000 }, { 1000, 500 }, { 500, 50 }, { 50, 20 } };
+    int[]   batches = { 1, 20 };
+    int     repeats = 5;
+
+    public void main(String[] args) {
+        for (val batch : batches) for (val layer : layers) {
+            val x = NArray(batch, layer[0]).randomize();
+            val W = NArray(layer[0], layer[1]).randomize();
+            val flops = 2.0 * batch * layer[0] * layer[1];
+            val legacy = gflops(flops, () -> legacyDot(x, W));
+            val gemm = gflops(flops, () -> x.dot(W));
+            printf("%3d x %4d x %4d  legacy %8.3f GFLOP/s  gemm %8.3f GFLOP/s  (%.1fx)\n", batch, layer[0], layer[1],
+                legacy, gemm, gemm / legacy);
+        }
+    }
+
+    double gflops(double flops, Supplier<NArray> op) {
+        op.get();
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) op.get();
+        return flops * repeats / (System.nanoTime() - start);
+    }
+
+    NArray legacyDot(NArray x, NArray W) {
+        val Z = x.firstDim(), C = x.lastDim(), J = W.lastDim();
+        val result = NArray(Z, J);
+        result.coordinates().parallel().forEach(coords -> {
+            val xCoords = new int[] { coords[0], 0 };
+            val wCoords = new int[] { 0, coords[1] };
+            var sum = 0.0;
+            for (var c = 0; c < C; c++) {
+                xCoords[1] = wCoords[0] = c;
+                sum = sum + x[xCoords] * W[wCoords];
+            }
+            result[coords] = sum;
+        });
+        return result;
+    }
+}
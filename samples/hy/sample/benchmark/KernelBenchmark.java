@@ -0,0 +1,54 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.util.function.Supplier;
+
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class KernelBenchmark {
+
+    public void main(String[] args) {
+        val input = NArray(3, 128, 128).randomize();
+        val W = NArray(4, 3, 3, 3).randomize();
+        val outShape = new int[] { 4, 126, 126 };
+
+        report("fill(Function) conv", outShape, () -> new NArray(outShape).fill(outCoords -> {
+            val inCoords = outCoords.clone();
+            var sum = 0.0;
+            for (var c = 0; c < 3; c++) for (var rx = 0; rx < 3; rx++) for (var ry = 0; ry < 3; ry++) {
+                val kcrxry = new int[] { outCoords[0], c, rx, ry };
+                inCoords[0] = c;
+                inCoords[1] = outCoords[1] + rx;
+                inCoords[2] = outCoords[2] + ry;
+                sum += input[inCoords] * W[kcrxry];
+            }
+            return sum;
+        }));
+        report("fill(IndexKernel) conv", outShape, () -> new NArray(outShape).fill((index, outCoords) -> {
+            var sum = 0.0;
+            for (var c = 0; c < 3; c++) for (var rx = 0; rx < 3; rx++) for (var ry = 0; ry < 3; ry++)
+                sum += input[(c * 128 + outCoords[1] + rx) * 128 + outCoords[2] + ry]
+                       * W[((outCoords[0] * 3 + c) * 3 + rx) * 3 + ry];
+            return sum;
+        }));
+
+        val conv = Conv(4, 3, 3);
+        report("Conv.of", outShape, () -> conv.of(input, false));
+        val pool = MaxPool(2);
+        report("MaxPool.of", new int[] { 3, 64, 64 }, () -> pool.of(input, false));
+        val tconv = TConv(4, 3, 3);
+        report("TConv.of", new int[] { 4, 130, 130 }, () -> tconv.of(input, false));
+    }
+
+    void report(String name, int[] outShape, Supplier<NArray> op) {
+        val result = Measure.run(3, 1, op::get);
+        printf("%-24s %10.2f ms %12.2f bytes/element\n", name, result.getNanos() * 1e-6,
+            (double) result.getBytes() / NArray(outShape).size);
+    }
+}
@@ -0,0 +1,46 @@
+package hy.sample.benchmark;
+
+import static io.vavr.API.printf;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+
+import hy.util.LargeNArray;
+import hy.util.Precision;
+import hy.util.StorageType;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class LargeTensorBenchmark {
+
+    long rows    = Long.getLong("hy.large.rows", 1L << 16);
+    int  columns = Integer.getInteger("hy.large.columns", 1 << 12);
+    int  batch   = 256;
+
+    public void main(String[] args) {
+        printf("%,d x %,d = %,d elements\n", rows, columns, rows * columns);
+        for (val type : StorageType.values()) {
+            val start = System.nanoTime();
+            var checksum = 0.0;
+            try (val large = new LargeNArray(type, Precision.FLOAT, rows, columns)) {
+                large.fill(1.0);
+                for (var row = 0L; row < rows; row += batch) {
+                    val count = (int) Math.min(batch, rows - row);
+                    checksum += large.rows(row, count).sum();
+                }
+                printf("%-6s %d segments, %,d direct bytes while open", type, large.segmentCount(), directBytes());
+            }
+            printf(", %,d after close, checksum %.0f, %.2f s\n", directBytes(), checksum,
+                (System.nanoTime() - start) * 1e-9);
+        }
+    }
+
+    long directBytes() {
+        var total = 0L;
+        for (val pool : ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class))
+            if (pool.getName().equals("direct")) total += pool.getMemoryUsed();
+        return total;
+    }
+}
@@ -0,0 +1,55 @@
+package hy.sample.benchmark;
+
+import static io.vavr.API.printf;
+
+import java.lang.management.ManagementFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.sun.management.ThreadMXBean;
+
+import lombok.Value;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Measure {
+
+    ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    @Value
+    public static class Result {
+        double nanos;
+        long   bytes;
+    }
+
+    public Result run(int warmup, int repeats, Runnable op) {
+        for (var i = 0; i < warmup; i++) op.run();
+        val before = allocations();
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) op.run();
+        val nanos = (double) (System.nanoTime() - start) / repeats;
+        return new Result(nanos, allocatedSince(before) / repeats);
+    }
+
+    public void report(String name, int warmup, int repeats, Runnable op) {
+        val result = run(warmup, repeats, op);
+        printf("%-32s %10.2f us %,14d bytes/op\n", name, result.getNanos() * 1e-3, result.getBytes());
+    }
+
+    public Map<Long, Long> allocations() {
+        val ids = threads.getAllThreadIds();
+        val bytes = threads.getThreadAllocatedBytes(ids);
+        val allocations = new HashMap<Long, Long>();
+        for (var i = 0; i < ids.length; i++) if (bytes[i] >= 0) allocations.put(ids[i], bytes[i]);
+        return allocations;
+    }
+
+    public long allocatedSince(Map<Long, Long> before) {
+        var total = 0L;
+        for (val thread : allocations().entrySet())
+            total += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        return total;
+    }
+}
@@ -0,0 +1,66 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import hy.model.Model.TrainConfig;
+import hy.util.BufferPool;
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class PoolBenchmark {
+
+    int instances = 64;
+    int epochs    = 5;
+
+    public void main(String[] args) {
+        val x = new ArrayList<NArray>();
+        val y = new ArrayList<NArray>();
+        for (var i = 0; i < instances; i++) {
+            x.add(NArray(3, 32, 32).randomize());
+            y.add(NArray(10).fill(0.0).set(i % 10, 1.0));
+        }
+        for (val pooling : new boolean[] { false, true }) {
+            val nn = Sequential() //
+                    .add(Conv(4, 3, 3), Tanh) //
+                    .add(MaxPool(2)) //
+                    .flatten() //
+                    .add(FC(4 * 15 * 15, 128), Tanh) //
+                    .add(FC(128, 10), Softmax) //
+                    .pooling(pooling);
+            val config = config(x, y);
+            nn.fitEpoch(config);
+            val gcBefore = gcCount();
+            val before = Measure.allocations();
+            val start = System.nanoTime();
+            for (var i = 0; i < epochs; i++) nn.fitEpoch(config);
+            val seconds = (System.nanoTime() - start) * 1e-9;
+            val steps = instances * epochs;
+            printf("pooling=%-5s %10.1f steps/s %,14d bytes/step %5d GCs\n", pooling, steps / seconds,
+                Measure.allocatedSince(before) / steps, gcCount() - gcBefore);
+        }
+        printf("%s\n", BufferPool.shared().statistics());
+    }
+
+    TrainConfig config(List<NArray> x, List<NArray> y) {
+        return TrainConfig() //
+                .inputs(x).targets(y) //
+                .batchSize(16) //
+                .loss(SoftmaxCrossEntropy) //
+                .batchLossCallback((batch, processed, total, lossType, loss, averageLoss) -> {}) //
+                .build();
+    }
+
+    long gcCount() {
+        var total = 0L;
+        for (val gc : ManagementFactory.getGarbageCollectorMXBeans()) total += Math.max(0, gc.getCollectionCount());
+        return total;
+    }
+}
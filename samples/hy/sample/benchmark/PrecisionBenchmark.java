@@ -0,0 +1,71 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import hy.model.Model.TrainConfig;
+import hy.util.NArray;
+import hy.util.Precision;
+import lombok.SneakyThrows;
+import lombok.val;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class PrecisionBenchmark {
+
+    int instances = 64;
+    int warmup    = 2;
+    int epochs    = 5;
+
+    @SneakyThrows
+    public void main(String[] args) {
+        for (val precision : Precision.values()) {
+            val x = new ArrayList<NArray>();
+            val y = new ArrayList<NArray>();
+            for (int i = 0; i < instances; i++) {
+                x.add(NArray(3, 32, 32).randomize().to(precision));
+                y.add(NArray(10).fill(0.0).set(i % 10, 1.0).to(precision));
+            }
+            val nn = Sequential() //
+                    .add(Conv(4, 3, 3), Tanh) //
+                    .add(MaxPool(2)) //
+                    .flatten() //
+                    .add(FC(4 * 15 * 15, 128), Tanh) //
+                    .add(FC(128, 10), Softmax) //
+                    .precision(precision);
+            val config = config(x, y);
+            for (int i = 0; i < warmup; i++) nn.fitEpoch(config);
+            System.gc();
+            val heapBefore = usedHeap();
+            val start = System.nanoTime();
+            for (int i = 0; i < epochs; i++) nn.fitEpoch(config);
+            val seconds = (System.nanoTime() - start) * 1e-9;
+            val file = File.createTempFile("precision", ".pm");
+            nn.save(file.getPath());
+            val checkpoint = Files.size(file.toPath());
+            file.delete();
+            val inputBytes = (long) instances * 3 * 32 * 32 * precision.bytes;
+            printf("%-6s %10.1f steps/s  inputs %,d bytes  checkpoint %,d bytes  heap growth %,d bytes\n", precision,
+                instances * epochs / seconds, inputBytes, checkpoint, usedHeap() - heapBefore);
+        }
+    }
+
+    TrainConfig config(List<NArray> x, List<NArray> y) {
+        return TrainConfig() //
+                .inputs(x).targets(y) //
+                .batchSize(16) //
+                .loss(SoftmaxCrossEntropy) //
+                .batchLossCallback((batch, processed, total, lossType, loss, averageLoss) -> {}) //
+                .build();
+    }
+
+    long usedHeap() {
+        val runtime = Runtime.getRuntime();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,36 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.function.Supplier;
+
+import hy.util.NArray;
+import hy.util.Rng;
+import lombok.val;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class RandomBenchmark {
+
+    int repeats = 20;
+
+    public void main(String[] args) {
+        val shared = new Random();
+        val array = NArray(1 << 20);
+        report("shared Random gaussian [2^20]", () -> array.fill((index, coords) -> shared.nextGaussian()));
+        report("Rng gaussian [2^20]", () -> Rng.next().fillGaussian(array, 0.0, 1.0));
+        report("Rng uniform [2^20]", () -> Rng.next().fillUniform(array));
+
+        Rng.seed(42);
+        val first = NArray(256, 256).randomize();
+        Rng.seed(42);
+        val second = NArray(256, 256).randomize();
+        printf("seeded initialization reproducible: %s\n",
+            Arrays.equals(first.values().toArray(), second.values().toArray()));
+    }
+
+    void report(String name, Supplier<Object> op) { Measure.report(name, 10, repeats, op::get); }
+}
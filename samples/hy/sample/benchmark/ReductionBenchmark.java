@@ -0,0 +1,86 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.util.Arrays;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class ReductionBenchmark {
+
+    int repeats = 10;
+
+    public void main(String[] args) {
+        val x = NArray(64, 32, 32, 16).randomize();
+        compare("sum axes 1..2", () -> legacyReduceDim(x, 1, 2), () -> x.sum(false, 1, 2));
+        compare("max last axis", () -> legacyReduceLast(x), () -> x.max(false, -1));
+        compare("sum first axis", () -> legacyReduceFirst(x), () -> x.sum(false, 0));
+        val logits = NArray(256, 1000).randomize();
+        compare("softmax rows", () -> {
+            val max = legacyReduceLast(logits);
+            return logits.bimap((v, m) -> Math.exp(v - m), max.reshaped(256, 1));
+        }, () -> logits.bimap((v, m) -> Math.exp(v - m), logits.max(true, -1)));
+
+        val n = 1 << 22;
+        val values = NArray(n).fill(i -> i[0] % 2 == 0 ? 1e8 : 1e-8);
+        val exact = n / 2 * 1e8 + n / 2 * 1e-8;
+        printf("compensated sum error %.3e, naive sum error %.3e\n", Math.abs(values.sum(false, 0)[0] - exact),
+            Math.abs(values.values().reduce(0, Double::sum) - exact));
+    }
+
+    void compare(String name, Supplier<NArray> legacy, Supplier<NArray> engine) {
+        val before = millis(legacy);
+        val after = millis(engine);
+        printf("%-16s legacy %9.2f ms  engine %9.2f ms  (%.1fx)\n", name, before, after, before / after);
+    }
+
+    double millis(Supplier<NArray> op) {
+        op.get();
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) op.get();
+        return (System.nanoTime() - start) * 1e-6 / repeats;
+    }
+
+    NArray legacyReduceDim(NArray x, int dimFrom, int dimTo) {
+        val shape = x.getShape();
+        val dims = shape.length - (dimTo + 1 - dimFrom);
+        val outShape = new int[dims];
+        System.arraycopy(shape, 0, outShape, 0, dimFrom);
+        System.arraycopy(shape, dimTo + 1, outShape, dimFrom, dims - dimFrom);
+        val arr = NArray(outShape);
+        x.coordinates().collect(Collectors.groupingBy(coords -> {
+            val key = new int[dims];
+            System.arraycopy(coords, 0, key, 0, dimFrom);
+            System.arraycopy(coords, dimTo + 1, key, dimFrom, dims - dimFrom);
+            return Arrays.stream(key).boxed().collect(Collectors.toList());
+        })).forEach((key, group) -> arr[key.stream().mapToInt(Integer::intValue).toArray()] = group.parallelStream()
+                .mapToDouble(x::get).sum());
+        return arr;
+    }
+
+    NArray legacyReduceLast(NArray x) {
+        val shape = x.getShape();
+        val last = shape[shape.length - 1];
+        val arr = NArray(Arrays.copyOf(shape, shape.length - 1));
+        IntStream.range(0, arr.size).forEach(i -> arr[i] = IntStream.range(0, last).parallel()
+                .mapToDouble(j -> x[i * last + j]).reduce(Double.NEGATIVE_INFINITY, Math::max));
+        return arr;
+    }
+
+    NArray legacyReduceFirst(NArray x) {
+        val shape = x.getShape();
+        val arr = NArray(Arrays.copyOfRange(shape, 1, shape.length));
+        val first = shape[0];
+        IntStream.range(0, arr.size).forEach(i -> arr[i] = IntStream.range(0, first).parallel()
+                .mapToDouble(j -> x[i + j * arr.size]).sum());
+        return arr;
+    }
+}
@@ -0,0 +1,58 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import hy.layer.feedforward.FC;
+import hy.model.Sequential;
+import lombok.SneakyThrows;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class SnapshotBenchmark {
+
+    int  readers = 4;
+    long millis  = 5_000;
+
+    @SneakyThrows
+    public void main(String[] args) {
+        val model = new Sequential().add(FC(784, 512), FC(512, 10));
+        val optimizer = Adam(1e-3);
+        val regularizer = L2Regularizer(1e-3);
+        val x = NArray(1, 784).randomize();
+        val delta = NArray(1, 10).randomize();
+        val hidden = NArray(1, 512).randomize();
+        val running = new AtomicBoolean(true);
+        val predictions = new AtomicLong();
+        val threads = new Thread[readers];
+        for (var t = 0; t < readers; t++) {
+            threads[t] = new Thread(() -> {
+                while (running.get()) {
+                    model.predict(x);
+                    predictions.incrementAndGet();
+                }
+            });
+            threads[t].start();
+        }
+        val fc1 = (FC) model.get(0), fc2 = (FC) model.get(1);
+        val deadline = System.currentTimeMillis() + millis;
+        var updates = 0L;
+        while (System.currentTimeMillis() < deadline) {
+            fc2.delta(hidden, null, delta);
+            fc1.delta(x, null, hidden);
+            fc1.update(optimizer, regularizer);
+            fc2.update(optimizer, regularizer);
+            model.publish();
+            updates++;
+        }
+        running.set(false);
+        for (val thread : threads) thread.join();
+        printf("%,d updates and %,d predictions on %d readers in %d ms, latest version %d\n", updates,
+            predictions.get(), readers, millis, model.version().getNumber());
+    }
+}
@@ -0,0 +1,32 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.util.function.Supplier;
+
+import hy.util.NArray;
+import hy.util.Sparse;
+import lombok.val;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class SparseBenchmark {
+
+    int repeats = 10;
+
+    public void main(String[] args) {
+        val words = NArray(64, 10000).fill((index, coords) -> Math.random() < 0.02 ? 1.0 : 0.0);
+        val sparse = words.toSparse();
+        val layer = FC(10000, 128);
+        val delta = NArray(64, 128).randomize();
+        printf("density %.3f, %d non-zeros\n", Sparse.density(sparse), Sparse.nonZeros(sparse));
+        report("dense FC forward", () -> layer.of(words, true));
+        report("sparse FC forward", () -> layer.of(sparse, true));
+        report("dense FC backward", () -> layer.delta(words, null, delta));
+        report("sparse FC backward", () -> layer.delta(sparse, null, delta));
+        report("toSparse [64,10000]", words::toSparse);
+    }
+
+    void report(String name, Supplier<Object> op) { Measure.report(name, 10, repeats, op::get); }
+}
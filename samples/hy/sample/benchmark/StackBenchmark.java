@@ -0,0 +1,34 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+
+import java.util.function.Supplier;
+
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class StackBenchmark {
+
+    int repeats = 50;
+
+    public void main(String[] args) {
+        val images = new NArray[64];
+        for (var i = 0; i < images.length; i++) images[i] = NArray(3, 32, 32).randomize();
+        report("element-wise stack [64,3,32,32]", () -> NArray(64, 3, 32, 32)
+                .fill((index, coords) -> images[coords[0]].get(coords[1], coords[2], coords[3])));
+        report("stack [64,3,32,32]", () -> NArray.stack(0, images));
+        report("concat(0) [192,32,32]", () -> NArray.concat(0, images));
+        report("concat(1) [3,2048,32]", () -> NArray.concat(1, images));
+
+        val dataset = NArray.stack(0, images);
+        val batch = new int[] { 5, 17, 42, 3, 63, 0, 31, 8 };
+        report("gather(0) [8,3,32,32]", () -> dataset.gather(0, batch));
+        report("split(0, 8) views", () -> dataset.split(0, 8)[7]);
+        report("unstack(0) views", () -> dataset.unstack(0)[63]);
+    }
+
+    void report(String name, Supplier<Object> op) { Measure.report(name, 10, repeats, op::get); }
+}
@@ -0,0 +1,64 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.lang.management.BufferPoolMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import hy.model.Model.TrainConfig;
+import hy.model.Sequential;
+import hy.util.NArray;
+import hy.util.StorageType;
+import lombok.val;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class StorageBenchmark {
+
+    int instances = 256;
+    int warmup    = 3;
+    int epochs    = 10;
+
+    public void main(String[] args) {
+        val x = new ArrayList<NArray>();
+        val y = new ArrayList<NArray>();
+        for (int i = 0; i < instances; i++) {
+            x.add(NArray(256).randomize());
+            y.add(NArray(10).fill(0.0).set(i % 10, 1.0));
+        }
+        for (val type : StorageType.values()) {
+            StorageType.setDefault(type);
+            val nn = Sequential() //
+                    .add(FC(256, 128), Tanh) //
+                    .add(FC(128, 64), Tanh) //
+                    .add(FC(64, 10), Softmax);
+            val config = config(x, y);
+            for (int i = 0; i < warmup; i++) nn.fitEpoch(config);
+            val start = System.nanoTime();
+            for (int i = 0; i < epochs; i++) nn.fitEpoch(config);
+            val seconds = (System.nanoTime() - start) * 1e-9;
+            printf("%-6s %10.1f steps/s  direct memory in use %,d bytes\n", type, instances * epochs / seconds,
+                directMemoryUsed());
+        }
+        StorageType.setDefault(StorageType.HEAP);
+    }
+
+    TrainConfig config(List<NArray> x, List<NArray> y) {
+        return TrainConfig() //
+                .inputs(x).targets(y) //
+                .batchSize(16) //
+                .loss(SoftmaxCrossEntropy) //
+                .batchLossCallback((batch, processed, total, lossType, loss, averageLoss) -> {}) //
+                .build();
+    }
+
+    long directMemoryUsed() {
+        return ManagementFactory.getPlatformMXBeans(BufferPoolMXBean.class).stream()//
+                .filter(pool -> pool.getName().equals("direct"))//
+                .mapToLong(BufferPoolMXBean::getMemoryUsed)//
+                .sum();
+    }
+}
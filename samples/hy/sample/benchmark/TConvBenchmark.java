@@ -0,0 +1,84 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.nio.DoubleBuffer;
+
+import hy.layer.feedforward.TConv;
+import hy.util.ConvEngine;
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class TConvBenchmark {
+
+    int[][] decoder   = { { 5, 5, 3, 3, 19 }, { 5, 5, 3, 1, 57 }, { 6, 5, 3, 1, 59 }, { 6, 6, 4, 2, 61 },
+        { 5, 6, 3, 1, 124 }, { 4, 5, 3, 2, 126 }, { 3, 4, 4, 1, 253 } };
+    int     repeats   = 5;
+    double  tolerance = 1e-9;
+
+    public void main(String[] args) {
+        var directTotal = 0.0;
+        var gemmTotal = 0.0;
+        for (val layer : decoder) {
+            val filters = layer[0], channels = layer[1], win = layer[2], stride = layer[3], size = layer[4];
+            val out = (size - 1) * stride + win;
+            val x = NArray(channels, size, size).randomize();
+            val delta = NArray(filters, out, out).randomize();
+            val direct = TConv(filters, channels, win, stride, 0).engine(ConvEngine.DIRECT);
+            val gemm = TConv(filters, channels, win, stride, 0).engine(ConvEngine.IM2COL);
+            gemm.readParameter(direct.parameterBuffer());
+
+            val error = check(direct, gemm, x, delta);
+            if (error > tolerance) throw new IllegalStateException(
+                    "GEMM result differs from the direct transposed convolution by " + error + " at " + size);
+
+            val forward = new double[] { millis(direct, x, null), millis(gemm, x, null) };
+            val backward = new double[] { millis(direct, x, delta), millis(gemm, x, delta) };
+            directTotal += forward[0] + backward[0];
+            gemmTotal += forward[1] + backward[1];
+            printf("TConv(%d, %d, %d, %d) %3d -> %3d  forward direct %8.3f gemm %8.3f ms  backward direct %8.3f "
+                    + "gemm %8.3f ms  (max error %.2e)\n", filters, channels, win, stride, size, out, forward[0],
+                forward[1], backward[0], backward[1], error);
+        }
+        printf("decoder step  direct %8.3f ms  gemm %8.3f ms  (%5.2fx)\n", directTotal, gemmTotal,
+            directTotal / gemmTotal);
+    }
+
+    double check(TConv expected, TConv actual, NArray x, NArray delta) {
+        var error = difference(expected.of(x, false), actual.of(x, false));
+        error = Math.max(error, difference(expected.delta(x, null, delta), actual.delta(x, null, delta)));
+        expected.update(SGD(1.0), null);
+        actual.update(SGD(1.0), null);
+        error = Math.max(error, difference(expected.parameterBuffer(), actual.parameterBuffer()));
+        return Math.max(error, difference(expected.of(x, false), actual.of(x, false)));
+    }
+
+    double difference(NArray a, NArray b) {
+        var max = 0.0;
+        for (var i = 0; i < a.size; i++) max = Math.max(max, Math.abs(a.get(i) - b.get(i)));
+        return max;
+    }
+
+    double difference(DoubleBuffer a, DoubleBuffer b) {
+        var max = 0.0;
+        while (a.hasRemaining()) max = Math.max(max, Math.abs(a.get() - b.get()));
+        return max;
+    }
+
+    double millis(TConv layer, NArray x, NArray delta) {
+        run(layer, x, delta);
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) run(layer, x, delta);
+        layer.clearGradients();
+        return (System.nanoTime() - start) * 1e-6 / repeats;
+    }
+
+    void run(TConv layer, NArray x, NArray delta) {
+        if (delta == null) layer.of(x, false);
+        else layer.delta(x, null, delta);
+    }
+}
@@ -0,0 +1,30 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+
+import java.util.function.Supplier;
+
+import hy.util.NArray;
+import lombok.val;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class TransposeBenchmark {
+
+    int repeats = 20;
+
+    public void main(String[] args) {
+        val matrix = NArray(2048, 2048).randomize();
+        val transposed = matrix.T();
+        report("element-wise T() [2048,2048]",
+            () -> NArray(2048, 2048).fill((index, coords) -> transposed.get(coords)));
+        report("blocked T() [2048,2048]", transposed::contiguous);
+
+        val activations = NArray(32, 64, 16, 16).randomize();
+        val nhwc = activations.permute(0, 2, 3, 1);
+        report("element-wise NCHW->NHWC", () -> NArray(nhwc.getShape()).fill((index, coords) -> nhwc.get(coords)));
+        report("blocked NCHW->NHWC", nhwc::contiguous);
+    }
+
+    void report(String name, Supplier<Object> op) { Measure.report(name, 10, repeats, op::get); }
+}
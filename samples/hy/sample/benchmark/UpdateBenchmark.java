@@ -0,0 +1,41 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import hy.optimizer.Optimizer;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class UpdateBenchmark {
+
+    int steps = 100;
+
+    public void main(String[] args) {
+        val optimizers = new Optimizer[] { SGD(1e-3), Momentum(1e-3), NAG(1e-3), RMSProp(1e-3), AdaGrad(1e-3),
+            Adam(1e-3) };
+        val regularizer = L2Regularizer(1e-3);
+        val x = NArray(20, 1805).randomize();
+        val delta = NArray(20, 1000).randomize();
+        for (val optimizer : optimizers) {
+            val layer = FC(1805, 1000);
+            var nanos = 0L;
+            var bytes = 0L;
+            for (var i = -3; i < steps; i++) {
+                layer.delta(x, null, delta);
+                val before = Measure.allocations();
+                val start = System.nanoTime();
+                layer.update(optimizer, regularizer);
+                if (i < 0) continue;
+                nanos += System.nanoTime() - start;
+                bytes += Measure.allocatedSince(before);
+            }
+            val millis = nanos * 1e-6 / steps;
+            bytes /= steps;
+            printf("%-10s %8.3f ms/update %,12d bytes/update (parameters: %,d bytes)\n",
+                optimizer.getClass().getSimpleName(), millis, bytes, layer.bytes());
+        }
+    }
+}
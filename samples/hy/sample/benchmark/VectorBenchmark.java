@@ -0,0 +1,58 @@
+package hy.sample.benchmark;
+
+import static io.vavr.API.printf;
+
+import java.util.Random;
+import java.util.function.Consumer;
+
+import hy.util.ScalarOps;
+import hy.util.VectorOps;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class VectorBenchmark {
+
+    int    length  = 1 << 20;
+    int    repeats = 50;
+    double sink;
+
+    public void main(String[] args) {
+        val random = new Random(0);
+        val a = random.doubles(length).toArray();
+        val b = random.doubles(length, 1.0, 2.0).toArray();
+        val c = random.doubles(length).toArray();
+        val out = new double[length];
+        val scalar = new ScalarOps();
+        val simd = VectorOps.INSTANCE;
+        printf("backend: %s (run with --add-modules jdk.incubator.vector to enable SIMD)\n", simd.name());
+
+        compare("add", 3, scalar, simd, ops -> ops.add(a, 0, b, 0, out, 0, length));
+        compare("subtract", 3, scalar, simd, ops -> ops.subtract(a, 0, b, 0, out, 0, length));
+        compare("multiply", 3, scalar, simd, ops -> ops.multiply(a, 0, b, 0, out, 0, length));
+        compare("divide", 3, scalar, simd, ops -> ops.divide(a, 0, b, 0, out, 0, length));
+        compare("scale", 2, scalar, simd, ops -> ops.scale(a, 0, 0.5, out, 0, length));
+        compare("fma", 4, scalar, simd, ops -> ops.fma(a, 0, b, 0, c, 0, out, 0, length));
+        compare("exp", 2, scalar, simd, ops -> ops.exp(a, 0, out, 0, length));
+        compare("sigmoid", 2, scalar, simd, ops -> ops.sigmoid(a, 0, out, 0, length));
+        compare("tanh", 2, scalar, simd, ops -> ops.tanh(a, 0, out, 0, length));
+        compare("sum", 1, scalar, simd, ops -> sink += ops.sum(a, 0, length));
+        compare("max", 1, scalar, simd, ops -> sink += ops.max(a, 0, length));
+    }
+
+    void compare(String name, int arrays, VectorOps scalar, VectorOps simd, Consumer<VectorOps> op) {
+        val scalarSeconds = time(scalar, op);
+        val simdSeconds = time(simd, op);
+        val bytes = (double) arrays * length * Double.BYTES * repeats;
+        printf("%-10s scalar %7.2f GB/s  %s %7.2f GB/s  (%.2fx)\n", name, bytes / scalarSeconds * 1e-9,
+            simd.name(), bytes / simdSeconds * 1e-9, scalarSeconds / simdSeconds);
+    }
+
+    double time(VectorOps ops, Consumer<VectorOps> op) {
+        for (var i = 0; i < repeats; i++) op.accept(ops);
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) op.accept(ops);
+        return (System.nanoTime() - start) * 1e-9;
+    }
+}
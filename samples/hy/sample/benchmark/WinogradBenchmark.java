@@ -0,0 +1,82 @@
+package hy.sample.benchmark;
+
+import static hy.API.*;
+import static io.vavr.API.printf;
+
+import java.nio.DoubleBuffer;
+
+import hy.layer.feedforward.Conv;
+import hy.util.ConvEngine;
+import hy.util.NArray;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class WinogradBenchmark {
+
+    int[][] layers    = { { 4, 3, 256, 0 }, { 5, 4, 254, 0 }, { 6, 5, 126, 0 }, { 6, 6, 124, 0 }, { 5, 6, 61, 0 },
+        { 5, 5, 59, 0 }, { 8, 8, 64, 1 } };
+    int     repeats   = 3;
+    double  tolerance = 1e-9;
+
+    public void main(String[] args) {
+        for (val layer : layers) {
+            val filters = layer[0], channels = layer[1], size = layer[2], padding = layer[3];
+            val out = size - 2 + 2 * padding;
+            val x = NArray(channels, size, size).randomize();
+            val delta = NArray(filters, out, out).randomize();
+            val direct = Conv(filters, channels, 3, padding).engine(ConvEngine.DIRECT);
+            val lowered = Conv(filters, channels, 3, padding).engine(ConvEngine.IM2COL);
+            val winograd = Conv(filters, channels, 3, padding).engine(ConvEngine.WINOGRAD);
+            lowered.readParameter(direct.parameterBuffer());
+            winograd.readParameter(direct.parameterBuffer());
+
+            val error = check(direct, winograd, x, delta);
+            if (error > tolerance) throw new IllegalStateException(
+                    "Winograd result differs from the direct convolution by " + error + " at " + layer[1] + "x" + size);
+
+            val flops = 2.0 * filters * channels * 9 * out * out;
+            printf("%d -> %d @ %3d  forward  direct %7.3f  im2col %7.3f  winograd %7.3f GFLOP/s\n", channels, filters,
+                size, gflops(flops, direct, x, null), gflops(flops, lowered, x, null),
+                gflops(flops, winograd, x, null));
+            printf("%d -> %d @ %3d  backward direct %7.3f  im2col %7.3f  winograd %7.3f GFLOP/s  (max error %.2e)\n",
+                channels, filters, size, gflops(2 * flops, direct, x, delta), gflops(2 * flops, lowered, x, delta),
+                gflops(2 * flops, winograd, x, delta), error);
+        }
+    }
+
+    double check(Conv expected, Conv actual, NArray x, NArray delta) {
+        var error = difference(expected.of(x, false), actual.of(x, false));
+        error = Math.max(error, difference(expected.delta(x, null, delta), actual.delta(x, null, delta)));
+        expected.update(SGD(1.0), null);
+        actual.update(SGD(1.0), null);
+        error = Math.max(error, difference(expected.parameterBuffer(), actual.parameterBuffer()));
+        return Math.max(error, difference(expected.of(x, false), actual.of(x, false)));
+    }
+
+    double difference(NArray a, NArray b) {
+        var max = 0.0;
+        for (var i = 0; i < a.size; i++) max = Math.max(max, Math.abs(a.get(i) - b.get(i)));
+        return max;
+    }
+
+    double difference(DoubleBuffer a, DoubleBuffer b) {
+        var max = 0.0;
+        while (a.hasRemaining()) max = Math.max(max, Math.abs(a.get() - b.get()));
+        return max;
+    }
+
+    double gflops(double flops, Conv layer, NArray x, NArray delta) {
+        run(layer, x, delta);
+        val start = System.nanoTime();
+        for (var i = 0; i < repeats; i++) run(layer, x, delta);
+        layer.clearGradients();
+        return flops * repeats / (System.nanoTime() - start);
+    }
+
+    void run(Conv layer, NArray x, NArray delta) {
+        if (delta == null) layer.of(x, false);
+        else layer.delta(x, null, delta);
+    }
+}
@@ -18,15 +18,14 @@ import static io.vavr.API.println;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import hy.model.Model.EpochLossCallback;
 import hy.model.Sequential;
 import hy.util.Image;
 import hy.util.NArray;
-import io.vavr.Tuple2;
 import io.vavr.collection.Array;
 import lombok.val;
+import lombok.var;
 import lombok.experimental.UtilityClass;
 
 @UtilityClass
@@ -125,23 +124,18 @@ public class CNN256 {
     }
 
     double accuracy(List<NArray> x, List<NArray> y) {
-        val modCount = new AtomicInteger();
-        val accuracy = Array.ofAll(x).zip(y)//
-                .map(instance -> {
-                    val a = labelFrom(instance._2);
-                    val p = labelFrom(cnn.predict(instance._1));
-                    printf("\r%-3s", ".".repeat(modCount.getAndUpdate(mod -> (++mod) % 4)));
-                    // println("label : " + a + ", prediction : " + p);
-                    return p.equals(a) ? 1 : 0;
-                }).average().getOrElse(0.0) * 100.0;
+        val n = Math.min(x.size(), y.size());
+        var correct = 0;
+        for (int i = 0; i < n; i++) {
+            val a = y.get(i).indexOfMax();
+            val p = cnn.predict(x.get(i)).indexOfMax();
+            printf("\r%-3s", ".".repeat(i % 4));
+            // println("label : " + labelFrom(a) + ", prediction : " + labelFrom(p));
+            if (p == a) correct++;
+        }
         printf("\r");
-        return accuracy;
+        return n > 0 ? correct * 100.0 / n : 0.0;
     }
 
-    String labelFrom(NArray logits) {
-        return Array.ofAll(logits).zipWithIndex()//
-                .<Double>maxBy(Tuple2::_1)//
-                .map(pi -> categories[pi._2].getName())//
-                .get();
-    }
+    String labelFrom(int index) { return categories[index].getName(); }
 }
@@ -0,0 +1,155 @@
+package hy.util;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+import lombok.val;
+import lombok.var;
+
+public class SimdOps extends ScalarOps {
+
+    static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    @Override
+    public String name() { return "simd-" + SPECIES.vectorBitSize(); }
+
+    @Override
+    public void add(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                .add(DoubleVector.fromArray(SPECIES, b, bOffset + i)).intoArray(out, outOffset + i);
+        super.add(a, aOffset + i, b, bOffset + i, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void subtract(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                .sub(DoubleVector.fromArray(SPECIES, b, bOffset + i)).intoArray(out, outOffset + i);
+        super.subtract(a, aOffset + i, b, bOffset + i, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                .mul(DoubleVector.fromArray(SPECIES, b, bOffset + i)).intoArray(out, outOffset + i);
+        super.multiply(a, aOffset + i, b, bOffset + i, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void divide(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                .div(DoubleVector.fromArray(SPECIES, b, bOffset + i)).intoArray(out, outOffset + i);
+        super.divide(a, aOffset + i, b, bOffset + i, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void shift(double[] a, int aOffset, double value, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).add(value).intoArray(out, outOffset + i);
+        super.shift(a, aOffset + i, value, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void scale(double[] a, int aOffset, double factor, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).mul(factor).intoArray(out, outOffset + i);
+        super.scale(a, aOffset + i, factor, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void divide(double[] a, int aOffset, double divisor, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length())
+            DoubleVector.fromArray(SPECIES, a, aOffset + i).div(divisor).intoArray(out, outOffset + i);
+        super.divide(a, aOffset + i, divisor, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, double[] out, int outOffset,
+        int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) DoubleVector.fromArray(SPECIES, y, yOffset + i)
+                .add(DoubleVector.fromArray(SPECIES, x, xOffset + i).mul(alpha)).intoArray(out, outOffset + i);
+        super.axpy(alpha, x, xOffset + i, y, yOffset + i, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void fma(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, double[] out,
+        int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                .fma(DoubleVector.fromArray(SPECIES, b, bOffset + i), DoubleVector.fromArray(SPECIES, c, cOffset + i))
+                .intoArray(out, outOffset + i);
+        super.fma(a, aOffset + i, b, bOffset + i, c, cOffset + i, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void exp(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                .lanewise(VectorOperators.EXP).intoArray(out, outOffset + i);
+        super.exp(a, aOffset + i, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void sigmoid(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        val one = DoubleVector.broadcast(SPECIES, 1.0);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) one
+                .div(DoubleVector.fromArray(SPECIES, a, aOffset + i).neg().lanewise(VectorOperators.EXP).add(1.0))
+                .intoArray(out, outOffset + i);
+        super.sigmoid(a, aOffset + i, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public void tanh(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) DoubleVector.fromArray(SPECIES, a, aOffset + i)
+                .lanewise(VectorOperators.TANH).intoArray(out, outOffset + i);
+        super.tanh(a, aOffset + i, out, outOffset + i, length - i);
+    }
+
+    @Override
+    public double sum(double[] a, int offset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var acc = DoubleVector.zero(SPECIES);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) acc = acc.add(DoubleVector.fromArray(SPECIES, a, offset + i));
+        return acc.reduceLanes(VectorOperators.ADD) + super.sum(a, offset + i, length - i);
+    }
+
+    @Override
+    public double max(double[] a, int offset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var acc = DoubleVector.broadcast(SPECIES, Double.NEGATIVE_INFINITY);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) acc = acc.max(DoubleVector.fromArray(SPECIES, a, offset + i));
+        return Math.max(acc.reduceLanes(VectorOperators.MAX), super.max(a, offset + i, length - i));
+    }
+
+    @Override
+    public double min(double[] a, int offset, int length) {
+        val bound = SPECIES.loopBound(length);
+        var acc = DoubleVector.broadcast(SPECIES, Double.POSITIVE_INFINITY);
+        var i = 0;
+        for (; i < bound; i += SPECIES.length()) acc = acc.min(DoubleVector.fromArray(SPECIES, a, offset + i));
+        return Math.min(acc.reduceLanes(VectorOperators.MIN), super.min(a, offset + i, length - i));
+    }
+}
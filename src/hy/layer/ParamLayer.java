@@ -4,6 +4,8 @@ import java.nio.DoubleBuffer;
 
 import hy.optimizer.Optimizer;
 import hy.regularizer.Regularizer;
+import hy.util.NArray;
+import hy.util.Precision;
 import lombok.val;
 
 public interface ParamLayer extends Layer {
@@ -12,11 +14,12 @@ public interface ParamLayer extends Layer {
     public int bytes();
     public DoubleBuffer parameterBuffer();
     public ParamLayer readParameter(DoubleBuffer buffer);
+    public ParamLayer precision(Precision precision);
+
+    public default ParamLayer snapshot() { return this; }
 
     public default ParamStatistics paramStatistics() {
-        val stats = new ParamStatistics();
         val buf = parameterBuffer();
-        while (buf.hasRemaining()) stats.accept(buf.get());
-        return stats;
+        return new ParamStatistics().accept(NArray.wrap(buf, buf.remaining()));
     }
 }
@@ -3,6 +3,8 @@ package hy.layer;
 import java.util.function.DoubleConsumer;
 
 import hy.util.Epsilon;
+import hy.util.NArray;
+import hy.util.Reduction;
 import lombok.AccessLevel;
 import lombok.experimental.FieldDefaults;
 
@@ -39,6 +41,19 @@ public class ParamStatistics implements DoubleConsumer {
         return this;
     }
 
+    public ParamStatistics accept(NArray values) {
+        double epsilon = Epsilon.get();
+        ParamStatistics stats = new ParamStatistics();
+        stats.count = values.size;
+        stats.zerosCount = (long) Reduction.reduce(values, 0, (n, v) -> Math.abs(v) <= epsilon ? n + 1 : n,
+            Double::sum);
+        stats.sum = Reduction.sum(values);
+        stats.simpleSum = stats.sum;
+        stats.min = Reduction.reduce(values, Double.POSITIVE_INFINITY, Math::min, Math::min);
+        stats.max = Reduction.reduce(values, Double.NEGATIVE_INFINITY, Math::max, Math::max);
+        return accept(stats);
+    }
+
     private void sumWithCompensation(double value) {
         double tmp = value - sumCompensation;
         double velvel = sum + tmp;
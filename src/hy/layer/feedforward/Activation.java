@@ -30,13 +30,12 @@ public class Activation {
     public final FeedForwardLayer sigmoid     = new FeedForwardLayer() {
                                                   @Override
                                                   public NArray of(NArray input,
-                                                      boolean isTraining) { return input
-                                                              .map(x -> 1.0 / (1.0 + exp(-x))); }
+                                                      boolean isTraining) { return input.sigmoid(); }
 
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
                                                       NArray delta) {
-                                                      return output.map(y -> y * (1.0 - y)) * delta;
+                                                      return (output.lazy().map(y -> y * (1.0 - y)) * delta).eval();
                                                   }
 
                                                   @Override
@@ -53,8 +52,8 @@ public class Activation {
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
                                                       NArray delta) {
-                                                      return output.map(y -> y > 0.0 && y < 1.0 ? 0.2 : 0.0)
-                                                             * delta;
+                                                      return (output.lazy().map(y -> y > 0.0 && y < 1.0 ? 0.2 : 0.0)
+                                                             * delta).eval();
                                                   }
 
                                                   @Override
@@ -65,7 +64,7 @@ public class Activation {
     public final FeedForwardLayer tanh        = new FeedForwardLayer() {
                                                   @Override
                                                   public NArray of(NArray input,
-                                                      boolean isTraining) { return input.map(Math::tanh); }
+                                                      boolean isTraining) { return input.tanh(); }
 
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
@@ -87,8 +86,8 @@ public class Activation {
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
                                                       NArray delta) {
-                                                      return input.bimap((x, y) -> -2.0 * x * y, output)
-                                                             * delta;
+                                                      return (input.lazy().bimap((x, y) -> -2.0 * x * y, output)
+                                                             * delta).eval();
                                                   }
 
                                                   @Override
@@ -104,7 +103,8 @@ public class Activation {
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
                                                       NArray delta) {
-                                                      return output.map(y -> y > 0.0 ? 1.0 : 0.0) * delta;
+                                                      return (output.lazy().map(y -> y > 0.0 ? 1.0 : 0.0) * delta)
+                                                              .eval();
                                                   }
 
                                                   @Override
@@ -120,8 +120,8 @@ public class Activation {
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
                                                       NArray delta) {
-                                                      return output.map(
-                                                          y -> (y > 0.0) && (y < 6.0) ? 1.0 : 0.0) * delta;
+                                                      return (output.lazy().map(
+                                                          y -> (y > 0.0) && (y < 6.0) ? 1.0 : 0.0) * delta).eval();
                                                   }
 
                                                   @Override
@@ -137,8 +137,8 @@ public class Activation {
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
                                                       NArray delta) {
-                                                      return output.map(
-                                                          y -> (y > 0.0) && (y < 3.0) ? 1.0 : 0.0) * delta;
+                                                      return (output.lazy().map(
+                                                          y -> (y > 0.0) && (y < 3.0) ? 1.0 : 0.0) * delta).eval();
                                                   }
 
                                                   @Override
@@ -154,7 +154,8 @@ public class Activation {
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
                                                       NArray delta) {
-                                                      return output.map(y -> y > 0.0 ? 1.0 : 0.01) * delta;
+                                                      return (output.lazy().map(y -> y > 0.0 ? 1.0 : 0.01) * delta)
+                                                              .eval();
                                                   }
 
                                                   @Override
@@ -170,8 +171,8 @@ public class Activation {
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
                                                       NArray delta) {
-                                                      return output.map(y -> y > 0 ? 1.0 : 1.0 * exp(y))
-                                                             * delta;
+                                                      return (output.lazy().map(y -> y > 0 ? 1.0 : 1.0 * exp(y))
+                                                             * delta).eval();
                                                   }
 
                                                   @Override
@@ -191,8 +192,8 @@ public class Activation {
                                                   @Override
                                                   public NArray delta(NArray input, NArray output,
                                                       NArray delta) {
-                                                      return output.map(
-                                                          y -> y > 0 ? 1.0 : scale * alpha * exp(y)) * delta;
+                                                      return (output.lazy().map(
+                                                          y -> y > 0 ? 1.0 : scale * alpha * exp(y)) * delta).eval();
                                                   }
 
                                                   @Override
@@ -202,10 +203,9 @@ public class Activation {
     public final FeedForwardLayer softmax     = new FeedForwardLayer() {
                                                   @Override
                                                   public NArray of(NArray input, boolean isTraining) {
-                                                      val max = input.reduceLast(0, Math::max);
+                                                      val max = input.max(true, -1);
                                                       val exps = input.bimap((x, m) -> exp(x - m), max);
-                                                      val sums = exps.reduceLast(0, Double::sum);
-                                                      return exps / sums;
+                                                      return exps.divInPlace(exps.sum(true, -1));
                                                   }
 
                                                   @Override
@@ -228,7 +228,7 @@ public class Activation {
 
             @Override
             public NArray delta(NArray input, NArray output, NArray delta) {
-                return output.map(y -> y > 0.0 ? 1.0 : alpha) * delta;
+                return (output.lazy().map(y -> y > 0.0 ? 1.0 : alpha) * delta).eval();
             }
 
             @Override
@@ -245,7 +245,7 @@ public class Activation {
 
             @Override
             public NArray delta(NArray input, NArray output, NArray delta) {
-                return output.map(y -> y > 0 ? 1.0 : alpha * exp(y)) * delta;
+                return (output.lazy().map(y -> y > 0 ? 1.0 : alpha * exp(y)) * delta).eval();
             }
 
             @Override
@@ -1,10 +1,12 @@
 package hy.layer.feedforward;
 
 import hy.util.NArray;
+import hy.util.Odometer;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.val;
+import lombok.var;
 import lombok.experimental.FieldDefaults;
 
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
@@ -36,17 +38,16 @@ public class AvgPool implements FeedForwardLayer {
         val outShape = inShape.clone();
         outShape[dims - 2] = pooled(inShape[dims - 2], winWidth, strideX);
         outShape[dims - 1] = pooled(inShape[dims - 1], winHeight, strideY);
-        val out = new NArray(outShape).fill(outCoords -> {
+        val inHeight = inShape[dims - 1], inPlane = inShape[dims - 2] * inHeight;
+        val outPlane = outShape[dims - 2] * outShape[dims - 1];
+        val out = new NArray(outShape).fill((index, outCoords) -> {
             val i = outCoords[dims - 2] * strideX;
             val j = outCoords[dims - 1] * strideY;
-            val inCoords = outCoords.clone();
+            val inBase = index / outPlane * inPlane;
             var sum = 0.0;
             for (var rx = 0; rx < winWidth; rx++) {
-                inCoords[dims - 2] = i + rx;
-                for (int ry = 0; ry < winHeight; ry++) {
-                    inCoords[dims - 1] = j + ry;
-                    sum += input[inCoords];
-                }
+                val row = inBase + (i + rx) * inHeight + j;
+                for (int ry = 0; ry < winHeight; ry++) sum += input[row + ry];
             }
             return sum / winVolume;
         });
@@ -58,19 +59,19 @@ public class AvgPool implements FeedForwardLayer {
         val inShape = input.getShape();
         val dims = inShape.length;
         val dX = NArray.like(input);
-        delta.coordinates().forEach(outCoords -> {
-            val i = outCoords[dims - 2] * strideX;
-            val j = outCoords[dims - 1] * strideY;
-            val inCoords = outCoords.clone();
-            val deltaValue = delta[outCoords] / winVolume;
+        val inHeight = inShape[dims - 1], inPlane = inShape[dims - 2] * inHeight;
+        val outPlane = delta.dim(dims - 2) * delta.dim(dims - 1);
+        val it = new Odometer(delta.getShape());
+        for (var index = 0; index < delta.size; index++, it.next()) {
+            val i = it.coord(dims - 2) * strideX;
+            val j = it.coord(dims - 1) * strideY;
+            val inBase = index / outPlane * inPlane;
+            val deltaValue = delta[index] / winVolume;
             for (var rx = 0; rx < winWidth; rx++) {
-                inCoords[dims - 2] = i + rx;
-                for (int ry = 0; ry < winHeight; ry++) {
-                    inCoords[dims - 1] = j + ry;
-                    dX[inCoords] = dX[inCoords] + deltaValue;
-                }
+                val row = inBase + (i + rx) * inHeight + j;
+                for (int ry = 0; ry < winHeight; ry++) dX[row + ry] = dX[row + ry] + deltaValue;
             }
-        });
+        }
         return dX;
     }
 
@@ -1,6 +1,5 @@
 package hy.layer.feedforward;
 
-import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 import java.util.Map;
 import java.util.Objects;
@@ -10,17 +9,25 @@ import java.util.stream.IntStream;
 
 import hy.optimizer.Optimizer;
 import hy.regularizer.Regularizer;
+import hy.util.ConvEngine;
+import hy.util.DirectConv;
+import hy.util.FftConv;
+import hy.util.Im2Col;
 import hy.util.NArray;
 import hy.util.Padding;
+import hy.util.Precision;
+import hy.util.Winograd;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.val;
 import lombok.var;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
-public class Conv implements ParamFeedForwardLayer {
+public class Conv implements ParamFeedForwardLayer, Cloneable {
 
     int                      filterCount;
     int                      channels;
@@ -31,17 +38,21 @@ public class Conv implements ParamFeedForwardLayer {
     int                      paddingX;
     int                      paddingY;
 
-    NArray                   W;
-    NArray                   b;
+    @NonFinal NArray         W;
+    @NonFinal NArray         b;
 
-    NArray                   dW;
-    NArray                   db;
+    @NonFinal NArray         dW;
+    @NonFinal NArray         db;
 
     Map<Optimizer, NArray[]> pW;
     Map<Optimizer, NArray[]> pb;
 
     AtomicLong               changes;
 
+    @NonFinal ConvEngine     engine = ConvEngine.AUTO;
+    @NonFinal Winograd.Filter transformed;
+    @NonFinal FftConv.Filter  spectra;
+
     @Builder
     public Conv(int filterCount, int channels, int winWidth, int winHeight, int strideX, int strideY, int paddingX,
         int paddingY) {
@@ -118,28 +129,36 @@ public class Conv implements ParamFeedForwardLayer {
         val dims = input.dims;
         if (dims < 3) throw new IllegalArgumentException("Input dimensions should be atleast 3. Got " + dims);
         val inShape = input.getShape();
+        if (inShape[dims - 3] != channels)
+            throw new IllegalArgumentException("Expected " + channels + " input channels. Got " + inShape[dims - 3]);
         val outShape = inShape.clone();
         outShape[dims - 3] = filterCount;
         outShape[dims - 2] = convolved(inShape[dims - 2], winWidth, strideX, paddingX);
         outShape[dims - 1] = convolved(inShape[dims - 1], winHeight, strideY, paddingY);
-        val out = new NArray(outShape).fill(outCoords -> {
+        val kernel = resolved();
+        if (kernel == ConvEngine.WINOGRAD) return Winograd.forward(input, transformed(), b, paddingX, paddingY);
+        if (kernel == ConvEngine.FFT)
+            return FftConv.forward(input, spectra(), b, strideX, strideY, paddingX, paddingY);
+        if (kernel == ConvEngine.IM2COL) return Im2Col.forward(input, W, b, strideX, strideY, paddingX, paddingY);
+        val inWidth = inShape[dims - 2], inHeight = inShape[dims - 1];
+        val inPlane = inWidth * inHeight, inVolume = channels * inPlane;
+        val outVolume = filterCount * outShape[dims - 2] * outShape[dims - 1];
+        val winVolume = winWidth * winHeight, filterVolume = channels * winVolume;
+        val out = new NArray(outShape).fill((index, outCoords) -> {
             val k = outCoords[dims - 3];
             val i = outCoords[dims - 2] * strideX;
             val j = outCoords[dims - 1] * strideY;
-            val inCoords = outCoords.clone();
+            val inBase = index / outVolume * inVolume;
             var sum = 0.0;
             for (var c = 0; c < channels; c++) {
+                val inChannel = inBase + c * inPlane, wChannel = k * filterVolume + c * winVolume;
                 for (var rx = 0; rx < winWidth; rx++) {
                     val x = i - paddingX + rx;
-                    if (x < 0 || x >= inShape[dims - 2]) continue;
+                    if (x < 0 || x >= inWidth) continue;
                     for (int ry = 0; ry < winHeight; ry++) {
                         val y = j - paddingY + ry;
-                        if (y < 0 || y >= inShape[dims - 1]) continue;
-                        val kcrxry = new int[] { k, c, rx, ry };
-                        inCoords[dims - 3] = c;
-                        inCoords[dims - 2] = x;
-                        inCoords[dims - 1] = y;
-                        sum = sum + input[inCoords] * W[kcrxry];
+                        if (y < 0 || y >= inHeight) continue;
+                        sum = sum + input[inChannel + x * inHeight + y] * W[wChannel + rx * winHeight + ry];
                     }
                 }
             }
@@ -150,42 +169,23 @@ public class Conv implements ParamFeedForwardLayer {
 
     @Override
     public NArray delta(@NonNull NArray input, NArray output, @NonNull NArray delta) {
-        val dX = NArray.like(input);
-        val inShape = input.getShape();
-        val dims = inShape.length;
-        delta.coordinates().forEach(outCoords -> {
-            val k = outCoords[dims - 3];
-            val i = outCoords[dims - 2] * strideX;
-            val j = outCoords[dims - 1] * strideY;
-            val inCoords = outCoords.clone();
-            val deltaValue = delta[outCoords];
-            for (var c = 0; c < channels; c++) {
-                for (var rx = 0; rx < winWidth; rx++) {
-                    val x = i - paddingX + rx;
-                    if (x < 0 || x >= inShape[dims - 2]) continue;
-                    for (int ry = 0; ry < winHeight; ry++) {
-                        val y = j - paddingY + ry;
-                        if (y < 0 || y >= inShape[dims - 1]) continue;
-                        val kcrxry = new int[] { k, c, rx, ry };
-                        inCoords[dims - 3] = c;
-                        inCoords[dims - 2] = x;
-                        inCoords[dims - 1] = y;
-                        dX[inCoords] = dX[inCoords] + W[kcrxry] * deltaValue;
-                        dW[kcrxry] = dW[kcrxry] + input[inCoords] * deltaValue;
-                    }
-                }
-            }
-            db[k] = db[k] + delta[outCoords];
-        });
+        val kernel = resolved();
+        val dX = kernel == ConvEngine.WINOGRAD
+                ? Winograd.backward(input, transformed(), delta, dW, db, paddingX, paddingY)
+                : kernel == ConvEngine.FFT
+                        ? FftConv.backward(input, spectra(), delta, dW, db, strideX, strideY, paddingX, paddingY)
+                        : kernel == ConvEngine.IM2COL
+                                ? Im2Col.backward(input, W, delta, dW, db, strideX, strideY, paddingX, paddingY)
+                                : DirectConv.backward(input, W, delta, dW, db, strideX, strideY, paddingX, paddingY);
         changes.incrementAndGet();
         return dX;
     }
 
     @Override
     public Conv update(@NonNull Optimizer optimizer, Regularizer regularizer) {
-        var dW = this.dW / changes.get();
-        var db = this.db / changes.get();
-        if (Objects.nonNull(regularizer)) dW.copy(dW + regularizer.gradient(W));
+        dW.divInPlace(changes.get());
+        db.divInPlace(changes.get());
+        if (Objects.nonNull(regularizer)) regularizer.addGradient(W, dW);
         if (optimizer.paramCount() > 0) {
             val paramW = pW.computeIfAbsent(optimizer, //
                 $ -> IntStream.range(0, optimizer.paramCount())//
@@ -195,35 +195,77 @@ public class Conv implements ParamFeedForwardLayer {
                 $ -> IntStream.range(0, optimizer.paramCount())//
                         .mapToObj(i -> NArray.like(b)).toArray(NArray[]::new)//
             );
-            W.copy(W + optimizer.update(dW, paramW));
-            b.copy(b + optimizer.update(db, paramB));
+            W = W.add(optimizer.updateInto(dW, dW, paramW));
+            b = b.add(optimizer.updateInto(db, db, paramB));
         } else {
-            W.copy(W + optimizer.update(dW, (NArray[]) null));
-            b.copy(b + optimizer.update(db, (NArray[]) null));
+            W = W.add(optimizer.updateInto(dW, dW, (NArray[]) null));
+            b = b.add(optimizer.updateInto(db, db, (NArray[]) null));
         }
         clearGradients();
         return this;
     }
 
+    public Conv engine(@NonNull ConvEngine engine) {
+        if (engine == ConvEngine.WINOGRAD && !Winograd.supports(winWidth, winHeight, strideX, strideY))
+            throw new IllegalArgumentException("Winograd needs 3x3 filters with stride 1");
+        this.engine = engine;
+        return this;
+    }
+
+    public ConvEngine engine() { return engine; }
+
+    private ConvEngine resolved() {
+        if (engine != ConvEngine.AUTO) return engine;
+        if (Winograd.supports(winWidth, winHeight, strideX, strideY)) return ConvEngine.WINOGRAD;
+        return FftConv.preferred(winWidth, winHeight) ? ConvEngine.FFT : ConvEngine.IM2COL;
+    }
+
+    private Winograd.Filter transformed() {
+        val cached = transformed;
+        if (cached != null && cached.isOf(W)) return cached;
+        return transformed = Winograd.transform(W);
+    }
+
+    private FftConv.Filter spectra() {
+        val cached = spectra;
+        if (cached != null && cached.isOf(W)) return cached;
+        return spectra = FftConv.prepare(W);
+    }
+
     public void clearGradients() {
         dW.fill(0.0);
         db.fill(0.0);
         changes.set(0);
     }
 
+    @Override
+    public Conv precision(@NonNull Precision precision) {
+        W = W.to(precision);
+        b = b.to(precision);
+        dW = dW.to(precision);
+        db = db.to(precision);
+        pW.clear();
+        pb.clear();
+        return this;
+    }
+
+    @Override
+    @SneakyThrows(CloneNotSupportedException.class)
+    public Conv snapshot() { return (Conv) clone(); }
+
     @Override
     public int bytes() { return (W.size + b.size) * Double.BYTES; }
 
     @Override
     public DoubleBuffer parameterBuffer() {
-        val buffer = ByteBuffer.allocateDirect((W.size + b.size) * Double.BYTES).asDoubleBuffer();
+        val buffer = DoubleBuffer.allocate(W.size + b.size);
         return buffer.put(W.buffer()).put(b.buffer()).rewind();
     }
 
     @Override
     public Conv readParameter(DoubleBuffer buffer) {
-        W.fill(buffer);
-        b.fill(buffer);
+        W = NArray.like(W).fill(buffer);
+        b = NArray.like(b).fill(buffer);
         return this;
     }
 
@@ -1,6 +1,5 @@
 package hy.layer.feedforward;
 
-import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 import java.util.Map;
 import java.util.Objects;
@@ -10,17 +9,23 @@ import java.util.stream.IntStream;
 
 import hy.optimizer.Optimizer;
 import hy.regularizer.Regularizer;
+import hy.util.ConvEngine;
+import hy.util.DirectConv;
+import hy.util.FftConv;
 import hy.util.NArray;
 import hy.util.Padding;
+import hy.util.Precision;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.val;
 import lombok.var;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
-public class Conv1D implements ParamFeedForwardLayer {
+public class Conv1D implements ParamFeedForwardLayer, Cloneable {
 
     int                      filterCount;
     int                      channels;
@@ -28,17 +33,20 @@ public class Conv1D implements ParamFeedForwardLayer {
     int                      stride;
     int                      padding;
 
-    NArray                   W;
-    NArray                   b;
+    @NonFinal NArray         W;
+    @NonFinal NArray         b;
 
-    NArray                   dW;
-    NArray                   db;
+    @NonFinal NArray         dW;
+    @NonFinal NArray         db;
 
     Map<Optimizer, NArray[]> pW;
     Map<Optimizer, NArray[]> pb;
 
     AtomicLong               changes;
 
+    @NonFinal ConvEngine     engine = ConvEngine.AUTO;
+    @NonFinal FftConv.Filter spectra;
+
     @Builder
     public Conv1D(int filterCount, int channels, int winSize, int stride, int padding) {
         this.filterCount = filterCount < 1 ? 1 : filterCount;
@@ -94,22 +102,26 @@ public class Conv1D implements ParamFeedForwardLayer {
         val dims = input.dims;
         if (dims < 2) throw new IllegalArgumentException("Input dimensions should be atleast 2. Got " + dims);
         val inShape = input.getShape();
+        if (inShape[dims - 2] != channels)
+            throw new IllegalArgumentException("Expected " + channels + " input channels. Got " + inShape[dims - 2]);
         val outShape = inShape.clone();
         outShape[dims - 2] = filterCount;
         outShape[dims - 1] = convolved(inShape[dims - 1], winSize, stride, padding);
-        val out = new NArray(outShape).fill(outCoords -> {
+        if (resolved() == ConvEngine.FFT) return FftConv.forward(input, spectra(), b, stride, padding);
+        val inWidth = inShape[dims - 1], inVolume = channels * inWidth;
+        val outVolume = filterCount * outShape[dims - 1];
+        val filterVolume = channels * winSize;
+        val out = new NArray(outShape).fill((index, outCoords) -> {
             val k = outCoords[dims - 2];
             val i = outCoords[dims - 1] * stride;
-            val inCoords = outCoords.clone();
+            val inBase = index / outVolume * inVolume;
             var sum = 0.0;
             for (var c = 0; c < channels; c++) {
+                val inChannel = inBase + c * inWidth, wChannel = k * filterVolume + c * winSize;
                 for (var rx = 0; rx < winSize; rx++) {
                     val x = i - padding + rx;
-                    if (x < 0 || x >= inShape[dims - 1]) continue;
-                    val kcrx = new int[] { k, c, rx };
-                    inCoords[dims - 2] = c;
-                    inCoords[dims - 1] = x;
-                    sum = sum + input[inCoords] * W[kcrx];
+                    if (x < 0 || x >= inWidth) continue;
+                    sum = sum + input[inChannel + x] * W[wChannel + rx];
                 }
             }
             return sum + b[k];
@@ -119,36 +131,17 @@ public class Conv1D implements ParamFeedForwardLayer {
 
     @Override
     public NArray delta(@NonNull NArray input, NArray output, @NonNull NArray delta) {
-        val dX = NArray.like(input);
-        val inShape = input.getShape();
-        val dims = inShape.length;
-        delta.coordinates().forEach(outCoords -> {
-            val k = outCoords[dims - 2];
-            val i = outCoords[dims - 1] * stride;
-            val inCoords = outCoords.clone();
-            val deltaValue = delta[outCoords];
-            for (var c = 0; c < channels; c++) {
-                for (var rx = 0; rx < winSize; rx++) {
-                    val x = i - padding + rx;
-                    if (x < 0 || x >= inShape[dims - 1]) continue;
-                    val kcrx = new int[] { k, c, rx };
-                    inCoords[dims - 2] = c;
-                    inCoords[dims - 1] = x;
-                    dX[inCoords] = dX[inCoords] + W[kcrx] * deltaValue;
-                    dW[kcrx] = dW[kcrx] + input[inCoords] * deltaValue;
-                }
-            }
-            db[k] = db[k] + delta[outCoords];
-        });
+        val dX = resolved() == ConvEngine.FFT ? FftConv.backward(input, spectra(), delta, dW, db, stride, padding)
+                : DirectConv.backward(input, W, delta, dW, db, stride, padding);
         changes.incrementAndGet();
         return dX;
     }
 
     @Override
     public Conv1D update(@NonNull Optimizer optimizer, Regularizer regularizer) {
-        var dW = this.dW / changes.get();
-        var db = this.db / changes.get();
-        if (Objects.nonNull(regularizer)) dW.copy(dW + regularizer.gradient(W));
+        dW.divInPlace(changes.get());
+        db.divInPlace(changes.get());
+        if (Objects.nonNull(regularizer)) regularizer.addGradient(W, dW);
         if (optimizer.paramCount() > 0) {
             val paramW = pW.computeIfAbsent(optimizer, //
                 $ -> IntStream.range(0, optimizer.paramCount())//
@@ -158,35 +151,70 @@ public class Conv1D implements ParamFeedForwardLayer {
                 $ -> IntStream.range(0, optimizer.paramCount())//
                         .mapToObj(i -> NArray.like(b)).toArray(NArray[]::new)//
             );
-            W.copy(W + optimizer.update(dW, paramW));
-            b.copy(b + optimizer.update(db, paramB));
+            W = W.add(optimizer.updateInto(dW, dW, paramW));
+            b = b.add(optimizer.updateInto(db, db, paramB));
         } else {
-            W.copy(W + optimizer.update(dW, (NArray[]) null));
-            b.copy(b + optimizer.update(db, (NArray[]) null));
+            W = W.add(optimizer.updateInto(dW, dW, (NArray[]) null));
+            b = b.add(optimizer.updateInto(db, db, (NArray[]) null));
         }
         clearGradients();
         return this;
     }
 
+    public Conv1D engine(@NonNull ConvEngine engine) {
+        if (engine == ConvEngine.IM2COL || engine == ConvEngine.WINOGRAD)
+            throw new IllegalArgumentException("Conv1D doesn't support the " + engine + " engine");
+        this.engine = engine;
+        return this;
+    }
+
+    public ConvEngine engine() { return engine; }
+
+    private ConvEngine resolved() {
+        if (engine == ConvEngine.AUTO) return FftConv.preferred(winSize) ? ConvEngine.FFT : ConvEngine.DIRECT;
+        return engine;
+    }
+
+    private FftConv.Filter spectra() {
+        val cached = spectra;
+        if (cached != null && cached.isOf(W)) return cached;
+        return spectra = FftConv.prepare(W);
+    }
+
     public void clearGradients() {
         dW.fill(0.0);
         db.fill(0.0);
         changes.set(0);
     }
 
+    @Override
+    public Conv1D precision(@NonNull Precision precision) {
+        W = W.to(precision);
+        b = b.to(precision);
+        dW = dW.to(precision);
+        db = db.to(precision);
+        pW.clear();
+        pb.clear();
+        return this;
+    }
+
+    @Override
+    @SneakyThrows(CloneNotSupportedException.class)
+    public Conv1D snapshot() { return (Conv1D) clone(); }
+
     @Override
     public int bytes() { return (W.size + b.size) * Double.BYTES; }
 
     @Override
     public DoubleBuffer parameterBuffer() {
-        val buffer = ByteBuffer.allocateDirect((W.size + b.size) * Double.BYTES).asDoubleBuffer();
+        val buffer = DoubleBuffer.allocate(W.size + b.size);
         return buffer.put(W.buffer()).put(b.buffer()).rewind();
     }
 
     @Override
     public Conv1D readParameter(DoubleBuffer buffer) {
-        W.fill(buffer);
-        b.fill(buffer);
+        W = NArray.like(W).fill(buffer);
+        b = NArray.like(b).fill(buffer);
         return this;
     }
 
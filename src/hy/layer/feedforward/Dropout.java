@@ -1,9 +1,11 @@
 package hy.layer.feedforward;
 
 import hy.util.NArray;
+import hy.util.Rng;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.Value;
+import lombok.val;
 
 @Value
 public class Dropout implements FeedForwardLayer {
@@ -19,14 +21,15 @@ public class Dropout implements FeedForwardLayer {
 
 	@Override
 	public NArray of(@NonNull NArray input, boolean isTraining) {
-		if (isTraining) return input.map(x -> Math.random() < rate ? 0.0 : scale * x);
-		return input;
+		if (!isTraining) return input;
+		val rng = Rng.next();
+		return NArray.like(input).fill((index, coords) -> rng.uniform(index) < rate ? 0.0 : scale * input[index]);
 	}
 
 	@Override
 	public NArray delta(@NonNull NArray input, @NonNull NArray output, @NonNull NArray delta) {
 		return NArray.like(input)
-				.fill(coords -> output[coords] != 0.0 || input[coords] == 0.0 ? scale * delta[coords] : 0.0);
+				.fill((index, coords) -> output[index] != 0.0 || input[index] == 0.0 ? scale * delta[index] : 0.0);
 	}
 
 	@Override
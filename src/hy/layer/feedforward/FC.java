@@ -2,7 +2,6 @@ package hy.layer.feedforward;
 
 import static java.lang.System.arraycopy;
 
-import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 import java.util.Arrays;
 import java.util.Map;
@@ -14,21 +13,25 @@ import java.util.stream.IntStream;
 import hy.optimizer.Optimizer;
 import hy.regularizer.Regularizer;
 import hy.util.NArray;
+import hy.util.Precision;
+import hy.util.Sparse;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.val;
 import lombok.var;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
-public class FC implements ParamFeedForwardLayer {
+public class FC implements ParamFeedForwardLayer, Cloneable {
 
-    NArray                   W;
-    NArray                   b;
+    @NonFinal NArray         W;
+    @NonFinal NArray         b;
 
-    NArray                   dW;
-    NArray                   db;
+    @NonFinal NArray         dW;
+    @NonFinal NArray         db;
 
     Map<Optimizer, NArray[]> pW;
     Map<Optimizer, NArray[]> pb;
@@ -54,31 +57,24 @@ public class FC implements ParamFeedForwardLayer {
 
     @Override
     public NArray delta(@NonNull NArray input, NArray output, @NonNull NArray delta) {
-        val dX = NArray.like(input);
         val I = input.lastDim(), J = W.size / I, Z = input.size / I;
-        for (var i = 0; i < I; i++) {
-            for (var j = 0; j < J; j++) {
-                val ij = new int[] { i, j };
-                val W_ij = W[i * J + j];
-                IntStream.range(0, Z)//
-                        .forEach(z -> {
-                            val in_zi = input[z * I + ij[0]];
-                            val delta_zj = delta[z * J + ij[1]];
-                            dX[z * I + ij[0]] = dX[z * I + ij[0]] + W_ij * delta_zj;
-                            dW[ij[0] * J + ij[1]] = dW[ij[0] * J + ij[1]] + in_zi * delta_zj;
-                            if (ij[0] == 0 && ij[1] == ij[0]) db[0] = db[0] + delta_zj;
-                        });
-            }
-        }
+        val x = input.reshaped(Z, I);
+        val d = delta.reshaped(Z, J);
+        val dX = d.dot(W.reshaped(I, J).T()).reshaped(input.getShape());
+        if (x.isSparse()) Sparse.transposeDot(x, d, dW.reshaped(I, J));
+        else dW.addInPlace(x.T().dot(d));
+        var bias = db[0];
+        for (var z = 0; z < Z; z++) bias += d[z * J];
+        db[0] = bias;
         changes.incrementAndGet();
         return dX;
     }
 
     @Override
     public FC update(@NonNull Optimizer optimizer, Regularizer regularizer) {
-        var dW = this.dW / changes.get();
-        var db = this.db / changes.get();
-        if (Objects.nonNull(regularizer)) dW.copy(dW + regularizer.gradient(W));
+        dW.divInPlace(changes.get());
+        db.divInPlace(changes.get());
+        if (Objects.nonNull(regularizer)) regularizer.addGradient(W, dW);
         if (optimizer.paramCount() > 0) {
             val paramW = pW.computeIfAbsent(optimizer, //
                 $ -> IntStream.range(0, optimizer.paramCount())//
@@ -88,11 +84,11 @@ public class FC implements ParamFeedForwardLayer {
                 $ -> IntStream.range(0, optimizer.paramCount())//
                         .mapToObj(i -> NArray.like(b)).toArray(NArray[]::new)//
             );
-            W.copy(W + optimizer.update(dW, paramW));
-            b.copy(b + optimizer.update(db, paramB));
+            W = W.add(optimizer.updateInto(dW, dW, paramW));
+            b = b.add(optimizer.updateInto(db, db, paramB));
         } else {
-            W.copy(W + optimizer.update(dW, (NArray[]) null));
-            b.copy(b + optimizer.update(db, (NArray[]) null));
+            W = W.add(optimizer.updateInto(dW, dW, (NArray[]) null));
+            b = b.add(optimizer.updateInto(db, db, (NArray[]) null));
         }
         clearGradients();
         return this;
@@ -104,19 +100,34 @@ public class FC implements ParamFeedForwardLayer {
         changes.set(0);
     }
 
+    @Override
+    public FC precision(@NonNull Precision precision) {
+        W = W.to(precision);
+        b = b.to(precision);
+        dW = dW.to(precision);
+        db = db.to(precision);
+        pW.clear();
+        pb.clear();
+        return this;
+    }
+
+    @Override
+    @SneakyThrows(CloneNotSupportedException.class)
+    public FC snapshot() { return (FC) clone(); }
+
     @Override
     public int bytes() { return (W.size + b.size) * Double.BYTES; }
 
     @Override
     public DoubleBuffer parameterBuffer() {
-        val buffer = ByteBuffer.allocateDirect((W.size + b.size) * Double.BYTES).asDoubleBuffer();
+        val buffer = DoubleBuffer.allocate(W.size + b.size);
         return buffer.put(W.buffer()).put(b.buffer()).rewind();
     }
 
     @Override
     public FC readParameter(DoubleBuffer buffer) {
-        W.fill(buffer);
-        b.fill(buffer);
+        W = NArray.like(W).fill(buffer);
+        b = NArray.like(b).fill(buffer);
         return this;
     }
 
@@ -1,10 +1,12 @@
 package hy.layer.feedforward;
 
 import hy.util.NArray;
+import hy.util.Odometer;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.NonNull;
 import lombok.val;
+import lombok.var;
 import lombok.experimental.FieldDefaults;
 
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
@@ -34,16 +36,17 @@ public class MaxPool implements FeedForwardLayer {
         val outShape = inShape.clone();
         outShape[dims - 2] = pooled(inShape[dims - 2], winWidth, strideX);
         outShape[dims - 1] = pooled(inShape[dims - 1], winHeight, strideY);
-        val out = new NArray(outShape).fill(outCoords -> {
+        val inHeight = inShape[dims - 1], inPlane = inShape[dims - 2] * inHeight;
+        val outPlane = outShape[dims - 2] * outShape[dims - 1];
+        val out = new NArray(outShape).fill((index, outCoords) -> {
             val i = outCoords[dims - 2] * strideX;
             val j = outCoords[dims - 1] * strideY;
-            val inCoords = outCoords.clone();
+            val inBase = index / outPlane * inPlane;
             var max = Double.MIN_VALUE;
             for (var rx = 0; rx < winWidth; rx++) {
-                inCoords[dims - 2] = i + rx;
+                val row = inBase + (i + rx) * inHeight + j;
                 for (int ry = 0; ry < winHeight; ry++) {
-                    inCoords[dims - 1] = j + ry;
-                    val value = input[inCoords];
+                    val value = input[row + ry];
                     if (value > max || max == Double.MIN_VALUE) max = value;
                 }
             }
@@ -57,21 +60,23 @@ public class MaxPool implements FeedForwardLayer {
         val inShape = input.getShape();
         val dims = inShape.length;
         val dX = NArray.like(input);
-        delta.coordinates().forEach(outCoords -> {
-            val i = outCoords[dims - 2] * strideX;
-            val j = outCoords[dims - 1] * strideY;
-            val inCoords = outCoords.clone();
-            val deltaValue = delta[outCoords];
-            val max = output[outCoords];
+        val inHeight = inShape[dims - 1], inPlane = inShape[dims - 2] * inHeight;
+        val outPlane = delta.dim(dims - 2) * delta.dim(dims - 1);
+        val it = new Odometer(delta.getShape());
+        for (var index = 0; index < delta.size; index++, it.next()) {
+            val i = it.coord(dims - 2) * strideX;
+            val j = it.coord(dims - 1) * strideY;
+            val inBase = index / outPlane * inPlane;
+            val deltaValue = delta[index];
+            val max = output[index];
             for (var rx = 0; rx < winWidth; rx++) {
-                inCoords[dims - 2] = i + rx;
+                val row = inBase + (i + rx) * inHeight + j;
                 for (int ry = 0; ry < winHeight; ry++) {
-                    inCoords[dims - 1] = j + ry;
-                    val value = input[inCoords];
-                    if (value == max) dX[inCoords] = dX[inCoords] + deltaValue;
+                    val inIndex = row + ry;
+                    if (input[inIndex] == max) dX[inIndex] = dX[inIndex] + deltaValue;
                 }
             }
-        });
+        }
         return dX;
     }
 
@@ -24,31 +24,24 @@ public class Sampling implements FeedForwardLayer {
         val outShape = Arrays.copyOf(inShape, outDims);
         if (inShape[outDims] != 2)
             throw new IllegalArgumentException("Sampling layer expects last dimension to be of cardinality 2.");
-        val out = new NArray(outShape).fill(outCoords -> {
-            val meanCoords = Arrays.copyOf(outCoords, outDims);
-            val stdCoords = Arrays.copyOf(outCoords, outDims);
-            stdCoords[outDims] = 1;
-            return input[meanCoords] + Math.exp(input[stdCoords]) * distribution.poll();
-        });
+        val out = new NArray(outShape)
+                .fill((index, outCoords) -> input[2 * index] + Math.exp(input[2 * index + 1]) * distribution.poll());
         return out;
     }
 
     // Regularization term : -0.5*mean(1+mu-sqr(sigma)0exp(sigma))
     @Override
     public NArray delta(@NonNull NArray input, NArray output, @NonNull NArray delta) {
-        val inDims = input.dims, outDims = inDims - 1;
-        val dX = NArray.like(input).fill(inCoords -> {
-            val outCoords = Arrays.copyOf(inCoords, outDims);
-            if (inCoords[outDims] == 1) {
-                val meanCoords = inCoords.clone();
-                meanCoords[outDims] = 0;
-                val mean = input[meanCoords];
-                val std = input[inCoords];
+        val dX = NArray.like(input).fill((index, inCoords) -> {
+            val outIndex = index / 2;
+            if (index % 2 == 1) {
+                val mean = input[index - 1];
+                val std = input[index];
                 val expStd = Math.exp(std);
-                val epsilonExpStd = (output[outCoords] - mean);
-                return epsilonExpStd * delta[outCoords]/* regularization */ - 0.5 + 0.5 * expStd;
+                val epsilonExpStd = (output[outIndex] - mean);
+                return epsilonExpStd * delta[outIndex]/* regularization */ - 0.5 + 0.5 * expStd;
             }
-            return delta[outCoords]/* regularization */ + input[inCoords];
+            return delta[outIndex]/* regularization */ + input[index];
         });
         return dX;
     }
@@ -1,6 +1,5 @@
 package hy.layer.feedforward;
 
-import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
 import java.util.Map;
 import java.util.Objects;
@@ -10,18 +9,24 @@ import java.util.stream.IntStream;
 
 import hy.optimizer.Optimizer;
 import hy.regularizer.Regularizer;
+import hy.util.ConvEngine;
+import hy.util.DirectConv;
+import hy.util.Im2Col;
 import hy.util.NArray;
 import hy.util.Padding;
+import hy.util.Precision;
 import io.vavr.API;
 import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.NonNull;
+import lombok.SneakyThrows;
 import lombok.val;
 import lombok.var;
 import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
 
 @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
-public class TConv implements ParamFeedForwardLayer {
+public class TConv implements ParamFeedForwardLayer, Cloneable {
 
     int                      filterCount;
     int                      channels;
@@ -32,17 +37,19 @@ public class TConv implements ParamFeedForwardLayer {
     int                      trimX;
     int                      trimY;
 
-    NArray                   W;
-    NArray                   b;
+    @NonFinal NArray         W;
+    @NonFinal NArray         b;
 
-    NArray                   dW;
-    NArray                   db;
+    @NonFinal NArray         dW;
+    @NonFinal NArray         db;
 
     Map<Optimizer, NArray[]> pW;
     Map<Optimizer, NArray[]> pb;
 
     AtomicLong               changes;
 
+    @NonFinal ConvEngine     engine = ConvEngine.AUTO;
+
     @Builder
     public TConv(int filterCount, int channels, int winWidth, int winHeight, int strideX, int strideY, int trimX,
         int trimY) {
@@ -119,28 +126,33 @@ public class TConv implements ParamFeedForwardLayer {
         val dims = input.dims;
         if (dims < 3) throw new IllegalArgumentException("Input dimensions should be atleast 3. Got " + dims);
         val inShape = input.getShape();
+        if (inShape[dims - 3] != channels)
+            throw new IllegalArgumentException("Expected " + channels + " input channels. Got " + inShape[dims - 3]);
+        if (resolved() == ConvEngine.IM2COL)
+            return Im2Col.transposedForward(input, W, b, strideX, strideY, trimX, trimY);
         val outShape = inShape.clone();
         outShape[dims - 3] = filterCount;
         outShape[dims - 2] = transConvolved(inShape[dims - 2], winWidth, strideX, trimX);
         outShape[dims - 1] = transConvolved(inShape[dims - 1], winHeight, strideY, trimY);
-        val out = new NArray(outShape).fill(outCoords -> {
+        val inWidth = inShape[dims - 2], inHeight = inShape[dims - 1];
+        val inPlane = inWidth * inHeight, inVolume = channels * inPlane;
+        val outVolume = filterCount * outShape[dims - 2] * outShape[dims - 1];
+        val winVolume = winWidth * winHeight, filterVolume = channels * winVolume;
+        val out = new NArray(outShape).fill((index, outCoords) -> {
             val k = outCoords[dims - 3];
             val i = outCoords[dims - 2] / strideX;
             val j = outCoords[dims - 1] / strideY;
-            val inCoords = outCoords.clone();
+            val inBase = index / outVolume * inVolume;
             var sum = 0.0;
             for (var c = 0; c < channels; c++) {
+                val inChannel = inBase + c * inPlane, wChannel = k * filterVolume + c * winVolume;
                 for (var rx = 0; rx < winWidth; rx++) {
                     val x = i + trimX - rx;
-                    if (x < 0 || x >= inShape[dims - 2]) continue;
+                    if (x < 0 || x >= inWidth) continue;
                     for (int ry = 0; ry < winHeight; ry++) {
                         val y = j + trimY - ry;
-                        if (y < 0 || y >= inShape[dims - 1]) continue;
-                        val kcrxry = new int[] { k, c, rx, ry };
-                        inCoords[dims - 3] = c;
-                        inCoords[dims - 2] = x;
-                        inCoords[dims - 1] = y;
-                        sum = sum + input[inCoords] * W[kcrxry];
+                        if (y < 0 || y >= inHeight) continue;
+                        sum = sum + input[inChannel + x * inHeight + y] * W[wChannel + rx * winHeight + ry];
                     }
                 }
             }
@@ -151,42 +163,18 @@ public class TConv implements ParamFeedForwardLayer {
 
     @Override
     public NArray delta(@NonNull NArray input, NArray output, @NonNull NArray delta) {
-        val dX = NArray.like(input);
-        val inShape = input.getShape();
-        val dims = inShape.length;
-        delta.coordinates().forEach(outCoords -> {
-            val k = outCoords[dims - 3];
-            val i = outCoords[dims - 2] / strideX;
-            val j = outCoords[dims - 1] / strideY;
-            val inCoords = outCoords.clone();
-            val deltaValue = delta[outCoords];
-            for (var c = 0; c < channels; c++) {
-                for (var rx = 0; rx < winWidth; rx++) {
-                    val x = i + trimX - rx;
-                    if (x < 0 || x >= inShape[dims - 2]) continue;
-                    for (int ry = 0; ry < winHeight; ry++) {
-                        val y = j + trimY - ry;
-                        if (y < 0 || y >= inShape[dims - 1]) continue;
-                        val kcrxry = new int[] { k, c, rx, ry };
-                        inCoords[dims - 3] = c;
-                        inCoords[dims - 2] = x;
-                        inCoords[dims - 1] = y;
-                        dX[inCoords] = dX[inCoords] + W[kcrxry] * deltaValue;
-                        dW[kcrxry] = dW[kcrxry] + input[inCoords] * deltaValue;
-                    }
-                }
-            }
-            db[k] = db[k] + delta[outCoords];
-        });
+        val dX = resolved() == ConvEngine.IM2COL
+                ? Im2Col.transposedBackward(input, W, delta, dW, db, strideX, strideY, trimX, trimY)
+                : DirectConv.transposedBackward(input, W, delta, dW, db, strideX, strideY, trimX, trimY);
         changes.incrementAndGet();
         return dX;
     }
 
     @Override
     public TConv update(@NonNull Optimizer optimizer, Regularizer regularizer) {
-        var dW = this.dW / changes.get();
-        var db = this.db / changes.get();
-        if (Objects.nonNull(regularizer)) dW.copy(dW + regularizer.gradient(W));
+        dW.divInPlace(changes.get());
+        db.divInPlace(changes.get());
+        if (Objects.nonNull(regularizer)) regularizer.addGradient(W, dW);
         if (optimizer.paramCount() > 0) {
             val paramW = pW.computeIfAbsent(optimizer, //
                 $ -> IntStream.range(0, optimizer.paramCount())//
@@ -196,35 +184,61 @@ public class TConv implements ParamFeedForwardLayer {
                 $ -> IntStream.range(0, optimizer.paramCount())//
                         .mapToObj(i -> NArray.like(b)).toArray(NArray[]::new)//
             );
-            W.copy(W + optimizer.update(dW, paramW));
-            b.copy(b + optimizer.update(db, paramB));
+            W = W.add(optimizer.updateInto(dW, dW, paramW));
+            b = b.add(optimizer.updateInto(db, db, paramB));
         } else {
-            W.copy(W + optimizer.update(dW, (NArray[]) null));
-            b.copy(b + optimizer.update(db, (NArray[]) null));
+            W = W.add(optimizer.updateInto(dW, dW, (NArray[]) null));
+            b = b.add(optimizer.updateInto(db, db, (NArray[]) null));
         }
         clearGradients();
         return this;
     }
 
+    public TConv engine(@NonNull ConvEngine engine) {
+        if (engine == ConvEngine.FFT || engine == ConvEngine.WINOGRAD)
+            throw new IllegalArgumentException("TConv doesn't support the " + engine + " engine");
+        this.engine = engine;
+        return this;
+    }
+
+    public ConvEngine engine() { return engine; }
+
+    private ConvEngine resolved() { return engine == ConvEngine.DIRECT ? ConvEngine.DIRECT : ConvEngine.IM2COL; }
+
     public void clearGradients() {
         dW.fill(0.0);
         db.fill(0.0);
         changes.set(0);
     }
 
+    @Override
+    public TConv precision(@NonNull Precision precision) {
+        W = W.to(precision);
+        b = b.to(precision);
+        dW = dW.to(precision);
+        db = db.to(precision);
+        pW.clear();
+        pb.clear();
+        return this;
+    }
+
+    @Override
+    @SneakyThrows(CloneNotSupportedException.class)
+    public TConv snapshot() { return (TConv) clone(); }
+
     @Override
     public int bytes() { return (W.size + b.size) * Double.BYTES; }
 
     @Override
     public DoubleBuffer parameterBuffer() {
-        val buffer = ByteBuffer.allocateDirect((W.size + b.size) * Double.BYTES).asDoubleBuffer();
+        val buffer = DoubleBuffer.allocate(W.size + b.size);
         return buffer.put(W.buffer()).put(b.buffer()).rewind();
     }
 
     @Override
     public TConv readParameter(DoubleBuffer buffer) {
-        W.fill(buffer);
-        b.fill(buffer);
+        W = NArray.like(W).fill(buffer);
+        b = NArray.like(b).fill(buffer);
         return this;
     }
 
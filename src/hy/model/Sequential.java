@@ -1,13 +1,20 @@
 package hy.model;
 
 import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.file.Files;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 
 import hy.layer.Layer;
 import hy.layer.ParamLayer;
@@ -16,10 +23,17 @@ import hy.layer.feedforward.Dropout;
 import hy.layer.feedforward.Flatten;
 import hy.layer.feedforward.Reshape;
 import hy.layer.feedforward.Scaling;
+import hy.loss.Loss;
+import hy.util.Arena;
+import hy.util.BufferPool;
+import hy.util.ExecutionContext;
 import hy.util.NArray;
+import hy.util.Precision;
+import hy.util.Rng;
 import hy.util.StreamUtil;
 import lombok.NonNull;
 import lombok.Synchronized;
+import lombok.Value;
 import lombok.val;
 import lombok.var;
 import lombok.experimental.ExtensionMethod;
@@ -29,50 +43,102 @@ import lombok.extern.java.Log;
 @ExtensionMethod({ StreamUtil.class })
 public class Sequential implements Model, Iterable<Layer> {
 
-    private LinkedList<Layer> layers = new LinkedList<>();
+    private LinkedList<Layer>        layers    = new LinkedList<>();
+    private Precision                precision = Precision.getDefault();
+    private ExecutionContext         context;
+    private boolean                  pooling   = true;
+    private AtomicReference<Version> published = new AtomicReference<>();
 
     public Layer get(int index) { return layers.get(index); }
 
     @Synchronized("layers")
     public Sequential add(@NonNull Layer layer) {
-        layers.add(layer);
-        return this;
+        layers.add(adopt(layer));
+        return unpublish();
     }
 
     @Synchronized("layers")
     public Sequential add(@NonNull Layer... layers) {
-        this.layers.addAll(List.of(layers));
-        return this;
+        for (val layer : layers) this.layers.add(adopt(layer));
+        return unpublish();
     }
 
     @Synchronized("layers")
     public Sequential add(@NonNull Iterable<? extends Layer> layers) {
-        layers.forEach(this.layers::add);
+        layers.forEach(layer -> this.layers.add(adopt(layer)));
+        return unpublish();
+    }
+
+    @Synchronized("layers")
+    public Sequential precision(@NonNull Precision precision) {
+        this.precision = precision;
+        layers.forEach(this::adopt);
+        return unpublish();
+    }
+
+    public Precision precision() { return precision; }
+
+    public Sequential executionContext(ExecutionContext context) {
+        this.context = context;
+        return this;
+    }
+
+    public ExecutionContext executionContext() { return context != null ? context : ExecutionContext.getDefault(); }
+
+    public Sequential pooling(boolean pooling) {
+        this.pooling = pooling;
         return this;
     }
 
+    public boolean pooling() { return pooling; }
+
+    public Version version() {
+        val version = published.get();
+        return version != null ? version : publish();
+    }
+
+    @Synchronized("layers")
+    public Version publish() {
+        val snapshot = new ArrayList<Layer>(layers.size());
+        for (val layer : layers) snapshot.add(layer instanceof ParamLayer ? ((ParamLayer) layer).snapshot() : layer);
+        val previous = published.get();
+        val version = new Version(previous != null ? previous.number + 1 : 0, Collections.unmodifiableList(snapshot));
+        published.set(version);
+        return version;
+    }
+
+    private Sequential unpublish() {
+        published.set(null);
+        return this;
+    }
+
+    private Layer adopt(Layer layer) {
+        if (layer instanceof ParamLayer) ((ParamLayer) layer).precision(precision);
+        return layer;
+    }
+
     @Synchronized("layers")
     public Sequential dropout(double rate) {
         this.layers.add(new Dropout(rate));
-        return this;
+        return unpublish();
     }
 
     @Synchronized("layers")
     public Sequential scale(double factor) {
         this.layers.add(new Scaling(factor));
-        return this;
+        return unpublish();
     }
 
     @Synchronized("layers")
     public Sequential flatten() {
         layers.add(new Flatten());
-        return this;
+        return unpublish();
     }
 
     @Synchronized("layers")
     public Sequential reshape(@NonNull int... newShape) {
         layers.add(new Reshape(0, newShape));
-        return this;
+        return unpublish();
     }
 
     @Override
@@ -91,10 +157,14 @@ public class Sequential implements Model, Iterable<Layer> {
     }
 
     @Override
+    @SuppressWarnings("try")
     public NArray predict(@NonNull NArray input) {
-        var prediction = input;
-        for (val layer : layers) prediction = layer.of(prediction, false);
-        return prediction;
+        val version = version();
+        try (val scope = Precision.scope(precision); val execution = ExecutionContext.scope(executionContext())) {
+            var prediction = input;
+            for (val layer : version.layers) prediction = layer.of(prediction, false);
+            return prediction;
+        }
     }
 
     @Override
@@ -110,21 +180,25 @@ public class Sequential implements Model, Iterable<Layer> {
         return this;
     }
 
+    @SuppressWarnings("try")
     public double fitEpoch(@NonNull TrainConfig config) {
+        try (val scope = Precision.scope(precision); val execution = ExecutionContext.scope(executionContext())) {
+            return fitEpochScoped(config);
+        }
+    }
+
+    private double fitEpochScoped(TrainConfig config) {
         val layers = this.layers.stream().toList();
         val pLayers = layers.stream().filter(ParamLayer.class).toList();
-        val data = config.shuffle ? config.trainData().shuffle() : config.trainData();
+        val data = config.shuffle ? config.trainData().shuffle(Rng.next().asRandom()) : config.trainData();
         val lossFn = config.loss, lossType = lossFn.toString();
         val batchSize = config.batchSize;
         var totalLoss = 0.0, i = 0L, bi = 0;
         for (val instance : data) {
             val input = instance._1, target = instance._2;
-            val results = trainingPrediction(layers, input);
-            val prediction = results.getLast();
-            val loss = lossFn.of(prediction, target).reduce(0, Double::sum);
+            val loss = pooling ? pooledStep(layers, input, target, lossFn) : step(layers, input, target, lossFn);
 
             totalLoss += loss;
-            backprop(layers, results, lossFn.gradient(prediction, target));
 
             if ((bi = (int) (++i % batchSize)) == 0) update(config, pLayers);
             val b = (long) Math.ceil((double) i / (double) batchSize);
@@ -132,9 +206,28 @@ public class Sequential implements Model, Iterable<Layer> {
             config.batchLossCallback.accept(b, bi == 0 ? batchSize : bi, batchSize, lossType, loss, totalLoss / i);
         }
         if (bi != 0) update(config, pLayers);
+        if (BufferPool.DEBUG && pooling) {
+            val leaks = BufferPool.shared().leaks();
+            if (leaks > 0) log.warning(leaks + " pooled buffers were not returned after the epoch");
+        }
         return totalLoss / i;
     }
 
+    @SuppressWarnings("try")
+    private double pooledStep(LinkedList<Layer> layers, NArray input, NArray target, Loss lossFn) {
+        try (val arena = Arena.open()) {
+            return step(layers, input, target, lossFn);
+        }
+    }
+
+    private double step(LinkedList<Layer> layers, NArray input, NArray target, Loss lossFn) {
+        val results = trainingPrediction(layers, input);
+        val prediction = results.getLast();
+        val loss = lossFn.of(prediction, target).sum();
+        backprop(layers, results, lossFn.gradient(prediction, target));
+        return loss;
+    }
+
     private LinkedList<NArray> trainingPrediction(List<Layer> layers, @NonNull NArray input) {
         val results = new LinkedList<NArray>();
         var result = input;
@@ -164,6 +257,7 @@ public class Sequential implements Model, Iterable<Layer> {
             i++;
         }
         optimizer.advance();
+        publish();
     }
 
     @Override
@@ -171,9 +265,18 @@ public class Sequential implements Model, Iterable<Layer> {
     public Sequential save(@NonNull String path) {
         try {
             val pLayers = layers.stream().filter(ParamLayer.class).toList();
-            val size = pLayers.stream().mapToInt(ParamLayer::bytes).sum();
-            val buf = ByteBuffer.allocate(size), dbuf = buf.asDoubleBuffer();
-            pLayers.forEach(layer -> dbuf.put(layer.parameterBuffer()));
+            val count = pLayers.stream().mapToInt(ParamLayer::bytes).sum() / Double.BYTES;
+            val buf = ByteBuffer.allocate(count * precision.bytes);
+            if (precision == Precision.FLOAT) {
+                val fbuf = buf.asFloatBuffer();
+                pLayers.forEach(layer -> {
+                    val params = layer.parameterBuffer();
+                    while (params.hasRemaining()) fbuf.put((float) params.get());
+                });
+            } else {
+                val dbuf = buf.asDoubleBuffer();
+                pLayers.forEach(layer -> dbuf.put(layer.parameterBuffer()));
+            }
             Files.write(Paths.get(path), buf.flip().array());
             log.fine(String.format("Sucessfully saved model to '%s'", path));
         } catch (Exception e) {
@@ -186,8 +289,14 @@ public class Sequential implements Model, Iterable<Layer> {
     @Synchronized("layers")
     public Sequential load(@NonNull String path) {
         try {
-            val buf = ByteBuffer.wrap(Files.readAllBytes(Paths.get(path))).asDoubleBuffer();
-            layers.stream().filter(ParamLayer.class).forEach(layer -> layer.readParameter(buf));
+            try (FileChannel channel = FileChannel.open(Paths.get(path), StandardOpenOption.READ)) {
+                val count = layers.stream().filter(ParamLayer.class).mapToInt(ParamLayer::bytes).sum() / Double.BYTES;
+                val mapped = channel.map(MapMode.READ_ONLY, 0, channel.size());
+                val buf = channel.size() == (long) count * Float.BYTES ? widen(mapped.asFloatBuffer())
+                        : mapped.asDoubleBuffer();
+                layers.stream().filter(ParamLayer.class).forEach(layer -> layer.readParameter(buf));
+            }
+            unpublish();
             log.fine(String.format("Sucessfully loaded model from '%s'", path));
         } catch (Exception e) {
             log.warning(String.format("Failed to load model from '%s' : %s", path, e.toString()));
@@ -195,6 +304,12 @@ public class Sequential implements Model, Iterable<Layer> {
         return this;
     }
 
+    private DoubleBuffer widen(FloatBuffer floats) {
+        val doubles = DoubleBuffer.allocate(floats.remaining());
+        while (floats.hasRemaining()) doubles.put(floats.get());
+        return doubles.flip();
+    }
+
     @Override
     @Synchronized("layers")
     public String toString() {
@@ -236,19 +351,25 @@ public class Sequential implements Model, Iterable<Layer> {
     @Synchronized("layers")
     public Sequential remove(int index) {
         layers.remove(index);
-        return this;
+        return unpublish();
     }
 
     @Synchronized("layers")
     public Sequential remove(Layer o) {
         layers.remove(o);
-        return this;
+        return unpublish();
     }
 
     @Synchronized("layers")
     public Sequential clear() {
         layers.clear();
-        return this;
+        return unpublish();
+    }
+
+    @Value
+    public static class Version {
+        long        number;
+        List<Layer> layers;
     }
 
 }
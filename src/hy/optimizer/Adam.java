@@ -71,11 +71,11 @@ public class Adam extends GradOptimizer {
 	}
 
 	@Override
-	public NArray update(NArray grad, NArray... params) {
+	public NArray updateInto(NArray out, NArray grad, NArray... params) {
 		val epsilon = Epsilon.get(), lr = direction == DESCEND ? -learningRate : learningRate;
-		params[0].copy(params[0].bimap((m, g) -> m * beta1 + g * (1.0 - beta1), grad));
-		params[1].copy(params[1].bimap((v, g) -> v * beta2 + g * g * (1.0 - beta2), grad));
-		return params[0].bimap( (m, v) -> lr * (m / (1 - betaT[0])) / (Math.sqrt(v / (1.0 - betaT[1])) + epsilon),
+		params[0].bimapInto(params[0], (m, g) -> m * beta1 + g * (1.0 - beta1), grad);
+		params[1].bimapInto(params[1], (v, g) -> v * beta2 + g * g * (1.0 - beta2), grad);
+		return params[0].bimapInto(out,  (m, v) -> lr * (m / (1 - betaT[0])) / (Math.sqrt(v / (1.0 - betaT[1])) + epsilon),
 								params[1]);
 	}
 
@@ -50,11 +50,10 @@ public class Momentum extends GradOptimizer {
 	public void advance() {}
 
 	@Override
-	public NArray update(NArray grad, NArray... params) {
-		val prevv = params[0];
-		params[0].copy(params[0].bimap((v, g) -> v * mu - g * learningRate, grad));
-		val delta = prevv.bimap((pv, v) -> pv * mu - v * (1.0 + mu), params[0]);
-		return direction == DESCEND ? -delta : delta;
+	public NArray updateInto(NArray out, NArray grad, NArray... params) {
+		val sign = direction == DESCEND ? -1.0 : 1.0;
+		params[0].bimapInto(params[0], (v, g) -> v * mu - g * learningRate, grad);
+		return params[0].mapInto(out, v -> sign * (v * mu - v * (1.0 + mu)));
 	}
 
 }
@@ -50,9 +50,9 @@ public class NAG extends GradOptimizer {
 	public void advance() {}
 
 	@Override
-	public NArray update(NArray grad, NArray... params) {
-		params[0].copy(params[0].bimap((v, g) -> v * mu - g * learningRate, grad));
-		return direction == DESCEND ? params[0] : -params[0];
+	public NArray updateInto(NArray out, NArray grad, NArray... params) {
+		params[0].bimapInto(params[0], (v, g) -> v * mu - g * learningRate, grad);
+		return direction == DESCEND ? out.copy(params[0]) : params[0].mapInto(out, v -> -v);
 	}
 
 }
@@ -5,5 +5,6 @@ import hy.util.NArray;
 public interface Optimizer {
 	public int paramCount();
 	public void advance();
-	public NArray update(NArray grad, NArray... params);
+	public default NArray update(NArray grad, NArray... params) { return updateInto(NArray.like(grad), grad, params); }
+	public NArray updateInto(NArray out, NArray grad, NArray... params);
 }
@@ -52,10 +52,10 @@ public class RMSProp extends GradOptimizer {
 	public void advance() {}
 
 	@Override
-	public NArray update(NArray grad, NArray... params) {
+	public NArray updateInto(NArray out, NArray grad, NArray... params) {
 		val epsilon = Epsilon.get(), lr = direction == DESCEND ? -learningRate : learningRate;
-		params[0].copy(params[0].bimap((v, g) -> v * mu + g * g * (1.0 - mu), grad));
-		return params[0].bimap((v, g) -> lr * g / (Math.sqrt(v) + epsilon), grad);
+		params[0].bimapInto(params[0], (v, g) -> v * mu + g * g * (1.0 - mu), grad);
+		return params[0].bimapInto(out, (v, g) -> lr * g / (Math.sqrt(v) + epsilon), grad);
 	}
 
 }
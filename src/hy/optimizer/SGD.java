@@ -22,9 +22,9 @@ public class SGD extends GradOptimizer {
 	public void advance() {}
 
 	@Override
-	public NArray update(NArray grad, NArray... params) {
+	public NArray updateInto(NArray out, NArray grad, NArray... params) {
 		val lr = direction == DESCEND ? -learningRate : learningRate;
-		return lr * grad;
+		return out.copy(grad).mulInPlace(lr);
 	}
 
 }
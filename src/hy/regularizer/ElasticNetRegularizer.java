@@ -31,4 +31,9 @@ public class ElasticNetRegularizer implements Regularizer {
 	@Override
 	public NArray gradient(NArray arr) { return arr.map(x -> L1_Lambda * Math.signum(x) + L2_Lambda * x); }
 
+	@Override
+	public NArray addGradient(NArray arr, NArray grad) {
+		return grad.bimapInto(grad, (g, x) -> g + (L1_Lambda * Math.signum(x) + L2_Lambda * x), arr);
+	}
+
 }
@@ -22,4 +22,9 @@ public class L1Regularizer implements Regularizer {
 	@Override
 	public NArray gradient(NArray arr) { return arr.map(x -> lambda * Math.signum(x)); }
 
+	@Override
+	public NArray addGradient(NArray arr, NArray grad) {
+		return grad.bimapInto(grad, (g, x) -> g + lambda * Math.signum(x), arr);
+	}
+
 }
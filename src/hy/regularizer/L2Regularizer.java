@@ -22,4 +22,7 @@ public class L2Regularizer implements Regularizer {
 	@Override
 	public NArray gradient(NArray arr) { return lambda * arr; }
 
+	@Override
+	public NArray addGradient(NArray arr, NArray grad) { return grad.axpy(lambda, arr); }
+
 }
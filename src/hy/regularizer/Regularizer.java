@@ -4,4 +4,5 @@ import hy.util.NArray;
 
 public interface Regularizer {
 	public NArray gradient(NArray arr);
+	public default NArray addGradient(NArray arr, NArray grad) { return grad.addInPlace(gradient(arr)); }
 }
@@ -0,0 +1,66 @@
+package hy.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class Arena implements AutoCloseable {
+
+    private static final ThreadLocal<Arena> current = new ThreadLocal<>();
+
+    BufferPool                              pool;
+    Arena                                   previous;
+    List<double[]>                          doubles = new ArrayList<>();
+    List<float[]>                           floats  = new ArrayList<>();
+    @NonFinal long                          bytes;
+    @NonFinal boolean                       closed;
+
+    private Arena(BufferPool pool, Arena previous) {
+        this.pool = pool;
+        this.previous = previous;
+    }
+
+    public static Arena open() { return open(BufferPool.shared()); }
+
+    public static Arena open(@NonNull BufferPool pool) {
+        val arena = new Arena(pool, current.get());
+        current.set(arena);
+        return arena;
+    }
+
+    static Arena current() { return current.get(); }
+
+    public long bytes() { return bytes; }
+
+    Storage allocate(int length, Precision precision) {
+        if (precision == Precision.FLOAT) {
+            val array = pool.takeFloats(length);
+            floats.add(array);
+            bytes += 4L * length;
+            return new FloatStorage(array);
+        }
+        val array = pool.takeDoubles(length);
+        doubles.add(array);
+        bytes += 8L * length;
+        return new HeapStorage(array);
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        if (current.get() != this) throw new IllegalStateException("Arenas must be closed in the reverse order of opening");
+        closed = true;
+        doubles.forEach(pool::give);
+        floats.forEach(pool::give);
+        doubles.clear();
+        floats.clear();
+        if (previous == null) current.remove();
+        else current.set(previous);
+    }
+}
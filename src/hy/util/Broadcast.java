@@ -0,0 +1,103 @@
+package hy.util;
+
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Broadcast {
+
+    public NArray apply(@NonNull NArray a, @NonNull NArray b, @NonNull DoubleBinaryOperator op) {
+        val shape = NArray.broadcast(a.shape, b.shape);
+        return apply(a, b, op, new NArray(shape));
+    }
+
+    public NArray apply(@NonNull NArray a, @NonNull NArray b, @NonNull DoubleBinaryOperator op, @NonNull NArray out) {
+        val shape = NArray.broadcast(a.shape, b.shape);
+        val size = Arrays.stream(shape).reduce(1, Math::multiplyExact);
+        if (out.size != size) throw new IllegalArgumentException(
+                "Output of size " + out.size + " can't hold the " + size + " elements of the result");
+        if (b.size == 1 && b.dims <= a.dims && a.size == size) return a.bimapInto(out, op, b.get(0));
+        val direct = out.heapContiguous();
+        val target = direct ? out : new NArray(StorageType.HEAP, Precision.DOUBLE, shape);
+        val left = a.onHeap(), right = b.onHeap();
+        run(shape, left.heapArray(), left.offset, alignedStrides(left, shape), right.heapArray(), right.offset,
+            alignedStrides(right, shape), target.heapArray(), target.offset, op);
+        return direct ? out : out.copy(target);
+    }
+
+    int[] alignedStrides(NArray array, int[] shape) {
+        val n = shape.length;
+        val shift = n - array.dims;
+        val strides = new int[n];
+        for (var i = shift; i < n; i++) strides[i] = array.shape[i - shift] == 1 ? 0 : array.strides[i - shift];
+        return strides;
+    }
+
+    private void run(int[] shape, double[] x, int xOffset, int[] xStrides, double[] y, int yOffset, int[] yStrides,
+        double[] out, int outOffset, DoubleBinaryOperator op) {
+        val n = shape.length;
+        val dims = new int[n];
+        val sx = new int[n];
+        val sy = new int[n];
+        val so = new int[n];
+        var m = 0;
+        var block = 1;
+        for (var i = n - 1; i >= 0; i--) {
+            if (shape[i] == 1) continue;
+            if (m > 0 && mergeable(sx, xStrides[i], m, dims) && mergeable(sy, yStrides[i], m, dims)) {
+                dims[m - 1] *= shape[i];
+            } else {
+                dims[m] = shape[i];
+                sx[m] = xStrides[i];
+                sy[m] = yStrides[i];
+                so[m] = block;
+                m++;
+            }
+            block *= shape[i];
+        }
+        if (m == 0) {
+            out[outOffset] = op.applyAsDouble(x[xOffset], y[yOffset]);
+            return;
+        }
+        val inner = dims[0];
+        val ix = sx[0];
+        val iy = sy[0];
+        val outer = reverse(dims, 1, m);
+        val tracked = new int[][] { reverse(sx, 1, m), reverse(sy, 1, m), reverse(so, 1, m) };
+        val rows = block / inner;
+        Parallel.forRange(rows, Math.max(1, Parallel.grain() / inner), (from, to) -> {
+            val it = new Odometer(outer, tracked).seek(from);
+            for (var r = from; r < to; r++, it.next()) {
+                val px = xOffset + it.position(0);
+                val py = yOffset + it.position(1);
+                val po = outOffset + it.position(2);
+                if (iy == 0) {
+                    val v = y[py];
+                    for (var j = 0; j < inner; j++) out[po + j] = op.applyAsDouble(x[px + j * ix], v);
+                } else if (ix == 0) {
+                    val u = x[px];
+                    for (var j = 0; j < inner; j++) out[po + j] = op.applyAsDouble(u, y[py + j * iy]);
+                } else if (ix == 1 && iy == 1) {
+                    for (var j = 0; j < inner; j++) out[po + j] = op.applyAsDouble(x[px + j], y[py + j]);
+                } else {
+                    for (var j = 0; j < inner; j++) out[po + j] = op.applyAsDouble(x[px + j * ix], y[py + j * iy]);
+                }
+            }
+        });
+    }
+
+    private boolean mergeable(int[] strides, int stride, int m, int[] dims) {
+        return stride == strides[m - 1] * dims[m - 1];
+    }
+
+    private int[] reverse(int[] values, int from, int to) {
+        val reversed = new int[to - from];
+        for (var i = from; i < to; i++) reversed[to - 1 - i] = values[i];
+        return reversed;
+    }
+}
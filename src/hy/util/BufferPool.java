@@ -0,0 +1,129 @@
+package hy.util;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.Value;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+import lombok.extern.java.Log;
+
+@Log
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class BufferPool {
+
+    public static final boolean                                 DEBUG    = Boolean.getBoolean("hy.pool.debug");
+
+    private static final BufferPool                             shared   = new BufferPool(
+            Long.getLong("hy.pool.bytes", Runtime.getRuntime().maxMemory() / 4));
+
+    long                                                        capacity;
+    ConcurrentHashMap<Integer, ConcurrentLinkedDeque<double[]>> doubles  = new ConcurrentHashMap<>();
+    ConcurrentHashMap<Integer, ConcurrentLinkedDeque<float[]>>  floats   = new ConcurrentHashMap<>();
+    Map<Object, Throwable>                                      leases   = Collections
+            .synchronizedMap(new IdentityHashMap<>());
+    AtomicLong                                                  requests = new AtomicLong();
+    AtomicLong                                                  hits     = new AtomicLong();
+    AtomicLong                                                  inUse    = new AtomicLong();
+    AtomicLong                                                  peak     = new AtomicLong();
+    AtomicLong                                                  retained = new AtomicLong();
+
+    public BufferPool(long capacity) {
+        if (capacity < 0) throw new IllegalArgumentException("Capacity must not be negative. Found " + capacity);
+        this.capacity = capacity;
+    }
+
+    public static BufferPool shared() { return shared; }
+
+    public double[] takeDoubles(int length) {
+        val array = slot(doubles, length).pollFirst();
+        if (array != null) {
+            retained.addAndGet(-8L * length);
+            Arrays.fill(array, 0.0);
+        }
+        return lease(array != null ? array : new double[length], 8L * length, array != null);
+    }
+
+    public float[] takeFloats(int length) {
+        val array = slot(floats, length).pollFirst();
+        if (array != null) {
+            retained.addAndGet(-4L * length);
+            Arrays.fill(array, 0f);
+        }
+        return lease(array != null ? array : new float[length], 4L * length, array != null);
+    }
+
+    public void give(@NonNull double[] array) {
+        if (DEBUG) Arrays.fill(array, Double.NaN);
+        if (release(array, 8L * array.length)) slot(doubles, array.length).offerFirst(array);
+    }
+
+    public void give(@NonNull float[] array) {
+        if (DEBUG) Arrays.fill(array, Float.NaN);
+        if (release(array, 4L * array.length)) slot(floats, array.length).offerFirst(array);
+    }
+
+    public void clear() {
+        doubles.clear();
+        floats.clear();
+        retained.set(0);
+    }
+
+    public int leaks() {
+        synchronized (leases) {
+            leases.values().forEach(site -> log.log(Level.WARNING, "Pooled buffer was never returned", site));
+            return leases.size();
+        }
+    }
+
+    public Statistics statistics() {
+        return new Statistics(requests.get(), hits.get(), inUse.get(), peak.get(), retained.get());
+    }
+
+    private <T> ConcurrentLinkedDeque<T> slot(ConcurrentHashMap<Integer, ConcurrentLinkedDeque<T>> slots, int length) {
+        return slots.computeIfAbsent(length, $ -> new ConcurrentLinkedDeque<>());
+    }
+
+    private <T> T lease(T array, long bytes, boolean hit) {
+        requests.incrementAndGet();
+        if (hit) hits.incrementAndGet();
+        val used = inUse.addAndGet(bytes);
+        peak.accumulateAndGet(used, Math::max);
+        if (DEBUG) leases.put(array, new Throwable());
+        return array;
+    }
+
+    private boolean release(Object array, long bytes) {
+        if (DEBUG && leases.remove(array) == null) throw new IllegalStateException(
+                "Buffer returned to the pool twice or was never taken from it");
+        inUse.addAndGet(-bytes);
+        if (retained.addAndGet(bytes) <= capacity) return true;
+        retained.addAndGet(-bytes);
+        return false;
+    }
+
+    @Value
+    public static class Statistics {
+        long requests;
+        long hits;
+        long bytesInUse;
+        long peakBytes;
+        long retainedBytes;
+
+        public double hitRate() { return requests > 0 ? (double) hits / requests : 0.0; }
+
+        @Override
+        public String toString() {
+            return String.format("BufferPool{requests=%d, hitRate=%.1f%%, inUse=%,d bytes, peak=%,d bytes, "
+                    + "retained=%,d bytes}", requests, hitRate() * 100.0, bytesInUse, peakBytes, retainedBytes);
+        }
+    }
+}
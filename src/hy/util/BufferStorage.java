@@ -0,0 +1,58 @@
+package hy.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class BufferStorage implements Storage {
+
+    DoubleBuffer data;
+
+    public BufferStorage(int length) {
+        this.data = ByteBuffer//
+                .allocateDirect(Math.multiplyExact(length, Double.BYTES))//
+                .order(ByteOrder.nativeOrder())//
+                .asDoubleBuffer();
+    }
+
+    public BufferStorage(@NonNull DoubleBuffer data) { this.data = data.slice(); }
+
+    @Override
+    public int length() { return data.capacity(); }
+
+    @Override
+    public double get(int index) { return data.get(index); }
+
+    @Override
+    public void set(int index, double value) { data.put(index, value); }
+
+    @Override
+    public boolean isDirect() { return data.isDirect(); }
+
+    @Override
+    public DoubleBuffer buffer(int index, int length) { return data.slice(index, length); }
+
+    @Override
+    public void put(int index, double[] src, int offset, int length) {
+        data.slice(index, length).put(src, offset, length);
+    }
+
+    @Override
+    public void put(int index, DoubleBuffer src, int length) {
+        val chunk = src.slice(src.position(), length);
+        data.slice(index, length).put(chunk);
+        src.position(src.position() + length);
+    }
+
+    @Override
+    public void put(int index, Storage src, int srcIndex, int length) {
+        data.slice(index, length).put(src.buffer(srcIndex, length));
+    }
+
+}
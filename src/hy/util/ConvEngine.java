@@ -0,0 +1,5 @@
+package hy.util;
+
+public enum ConvEngine {
+    AUTO, DIRECT, IM2COL, WINOGRAD, FFT
+}
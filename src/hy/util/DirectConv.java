@@ -0,0 +1,215 @@
+package hy.util;
+
+import java.util.Arrays;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class DirectConv {
+
+    final int SHARD_WORK           = 1 << 16;
+    final int SHARDS_PER_PROCESSOR = 4;
+
+    public NArray backward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray delta, @NonNull NArray dW,
+        @NonNull NArray db, int stride, int padding) {
+        return backward(new Layout(input, weights, delta, 1, stride, 0, padding, false), input, weights, delta, dW, db);
+    }
+
+    public NArray backward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray delta, @NonNull NArray dW,
+        @NonNull NArray db, int strideX, int strideY, int paddingX, int paddingY) {
+        val g = new Layout(input, weights, delta, strideX, strideY, paddingX, paddingY, false);
+        return backward(g, input, weights, delta, dW, db);
+    }
+
+    public NArray transposedBackward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray delta,
+        @NonNull NArray dW, @NonNull NArray db, int stride, int trim) {
+        val g = new Layout(input, weights, delta, 1, stride, 0, trim, true);
+        return backward(g, input, weights, pool(g, delta.contiguous().onHeap()), dW, db);
+    }
+
+    public NArray transposedBackward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray delta,
+        @NonNull NArray dW, @NonNull NArray db, int strideX, int strideY, int trimX, int trimY) {
+        val g = new Layout(input, weights, delta, strideX, strideY, trimX, trimY, true);
+        return backward(g, input, weights, pool(g, delta.contiguous().onHeap()), dW, db);
+    }
+
+    private NArray backward(Layout g, NArray input, NArray weights, NArray delta, NArray dW, NArray db) {
+        val x = input.contiguous().onHeap();
+        val w = weights.contiguous().onHeap();
+        val d = delta.contiguous().onHeap();
+        val result = new NArray(input.shape);
+        val dX = result.heapContiguous() ? result.heapArray() : new double[result.size];
+        val dXBase = result.heapContiguous() ? result.offset : 0;
+        gatherInputs(g, w.heapArray(), w.offset, d.heapArray(), d.offset, dX, dXBase);
+        val gradW = new double[g.filters * g.filterVolume];
+        val gradB = new double[g.filters];
+        accumulateShards(g, x.heapArray(), x.offset, d.heapArray(), d.offset, gradW, gradB);
+        dW.addInPlace(new NArray(StorageType.HEAP, Precision.DOUBLE, dW.shape).fill(gradW));
+        db.addInPlace(new NArray(StorageType.HEAP, Precision.DOUBLE, db.shape).fill(gradB));
+        if (!result.heapContiguous()) result.storage.put(0, dX, 0, result.size);
+        return result;
+    }
+
+    private void gatherInputs(Layout g, double[] w, int wOffset, double[] d, int dOffset, double[] dX, int dXBase) {
+        val rows = g.batch * g.channels * g.inWidth;
+        val work = g.inHeight * g.filters * g.winWidth * g.winHeight;
+        Parallel.forRange(rows, Math.max(1, Parallel.grain() / Math.max(1, work)), (from, to) -> {
+            for (var row = from; row < to; row++) {
+                val n = row / (g.channels * g.inWidth), c = row / g.inWidth % g.channels, x = row % g.inWidth;
+                val line = dXBase + row * g.inHeight;
+                for (var k = 0; k < g.filters; k++) {
+                    val plane = dOffset + (n * g.filters + k) * g.outPlane;
+                    val filter = wOffset + (k * g.channels + c) * g.winWidth * g.winHeight;
+                    for (var rx = 0; rx < g.winWidth; rx++) {
+                        val ox = g.outer(x, rx, g.strideX, g.paddingX, g.outWidth);
+                        if (ox < 0) continue;
+                        val source = plane + ox * g.outHeight, taps = filter + rx * g.winHeight;
+                        for (var ry = 0; ry < g.winHeight; ry++) {
+                            val weight = w[taps + ry];
+                            val step = g.step(g.strideY), shift = g.shift(ry, g.paddingY);
+                            val last = g.last(shift, step, g.inHeight, g.outHeight);
+                            for (var oy = g.first(shift, step); oy < last; oy++)
+                                dX[line + oy * step + shift] += d[source + oy] * weight;
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private void accumulateShards(Layout g, double[] in, int inOffset, double[] d, int dOffset, double[] gradW,
+        double[] gradB) {
+        val shard = g.filterVolume + 1;
+        val perFilter = g.batch * g.tiles;
+        val tasks = g.filters * perFilter;
+        val chunks = Math.min(tasks, SHARDS_PER_PROCESSOR * ExecutionContext.availableProcessors());
+        val firstFilter = new int[chunks];
+        val shards = new double[chunks][];
+        Parallel.forRange(chunks, 1, (from, to) -> {
+            for (var chunk = from; chunk < to; chunk++) {
+                val start = (int) ((long) tasks * chunk / chunks), end = (int) ((long) tasks * (chunk + 1) / chunks);
+                val first = start / perFilter;
+                val local = new double[((end - 1) / perFilter - first + 1) * shard];
+                for (var task = start; task < end; task++)
+                    accumulateTask(g, task, in, inOffset, d, dOffset, local, (task / perFilter - first) * shard);
+                firstFilter[chunk] = first;
+                shards[chunk] = local;
+            }
+        });
+        for (var chunk = 0; chunk < chunks; chunk++) {
+            val local = shards[chunk];
+            for (var i = 0; i < local.length / shard; i++) {
+                val k = firstFilter[chunk] + i;
+                for (var j = 0; j < g.filterVolume; j++) gradW[k * g.filterVolume + j] += local[i * shard + j];
+                gradB[k] += local[i * shard + g.filterVolume];
+            }
+        }
+    }
+
+    private void accumulateTask(Layout g, int task, double[] in, int inOffset, double[] d, int dOffset,
+        double[] local, int target) {
+        val k = task / (g.batch * g.tiles), n = task / g.tiles % g.batch, tile = task % g.tiles;
+        val plane = dOffset + (n * g.filters + k) * g.outPlane;
+        val tileX = tile / g.tilesY, tileY = tile % g.tilesY;
+        val top = tileY * g.tileHeight, bottom = Math.min(g.outHeight, top + g.tileHeight);
+        val last = Math.min(g.outWidth, (tileX + 1) * g.tileWidth);
+        for (var ox = tileX * g.tileWidth; ox < last; ox++) {
+            val line = plane + ox * g.outHeight;
+            for (var oy = top; oy < bottom; oy++) local[target + g.filterVolume] += d[line + oy];
+            for (var c = 0; c < g.channels; c++) {
+                val source = inOffset + (n * g.channels + c) * g.inPlane;
+                for (var rx = 0; rx < g.winWidth; rx++) {
+                    val x = g.inner(ox, rx, g.strideX, g.paddingX);
+                    if (x < 0 || x >= g.inWidth) continue;
+                    val row = source + x * g.inHeight;
+                    val taps = target + (c * g.winWidth + rx) * g.winHeight;
+                    for (var ry = 0; ry < g.winHeight; ry++) {
+                        val step = g.step(g.strideY), shift = g.shift(ry, g.paddingY);
+                        val end = Math.min(bottom, g.last(shift, step, g.inHeight, g.outHeight));
+                        var sum = 0.0;
+                        for (var oy = Math.max(top, g.first(shift, step)); oy < end; oy++)
+                            sum += d[line + oy] * in[row + oy * step + shift];
+                        local[taps + ry] += sum;
+                    }
+                }
+            }
+        }
+    }
+
+    private NArray pool(Layout g, NArray delta) {
+        if (g.strideX == 1 && g.strideY == 1) return delta;
+        val pooled = new NArray(StorageType.HEAP, Precision.DOUBLE, g.batch * g.filters, g.outWidth, g.outHeight);
+        Im2Col.pool(delta.heapArray(), delta.offset, g.batch * g.filters, g.stridedWidth, g.stridedHeight, g.strideX,
+            g.strideY, pooled.heapArray(), 0);
+        return pooled;
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Layout {
+
+        int     batch, channels, filters, inWidth, inHeight, inPlane;
+        int     winWidth, winHeight, filterVolume, strideX, strideY, paddingX, paddingY;
+        int     outWidth, outHeight, outPlane, stridedWidth, stridedHeight;
+        int     tileWidth, tileHeight, tilesX, tilesY, tiles;
+        boolean transposed;
+
+        Layout(NArray input, NArray weights, NArray delta, int strideX, int strideY, int paddingX, int paddingY,
+            boolean transposed) {
+            val planar = weights.dims == 4;
+            val dims = input.dims, spatial = planar ? 2 : 1;
+            if (dims < spatial + 1) throw new IllegalArgumentException(
+                    "Input dimensions should be atleast " + (spatial + 1) + ". Got " + dims);
+            channels = input.shape[dims - spatial - 1];
+            if (weights.shape[1] != channels) throw new IllegalArgumentException(
+                    "Expected " + weights.shape[1] + " input channels. Got " + channels);
+            filters = weights.shape[0];
+            inWidth = planar ? input.shape[dims - 2] : 1;
+            inHeight = input.shape[dims - 1];
+            inPlane = inWidth * inHeight;
+            batch = input.size / (channels * inPlane);
+            winWidth = planar ? weights.shape[2] : 1;
+            winHeight = weights.shape[weights.dims - 1];
+            filterVolume = channels * winWidth * winHeight;
+            this.strideX = strideX;
+            this.strideY = strideY;
+            this.paddingX = paddingX;
+            this.paddingY = paddingY;
+            this.transposed = transposed;
+            stridedWidth = planar ? delta.shape[delta.dims - 2] : 1;
+            stridedHeight = delta.shape[delta.dims - 1];
+            outWidth = transposed ? (stridedWidth + strideX - 1) / strideX : stridedWidth;
+            outHeight = transposed ? (stridedHeight + strideY - 1) / strideY : stridedHeight;
+            outPlane = outWidth * outHeight;
+            if (delta.size != batch * filters * stridedWidth * stridedHeight) throw new IllegalArgumentException(
+                    "Delta of shape " + Arrays.toString(delta.shape) + " doesn't match the input batch");
+            tileWidth = Math.max(1, Math.min(outWidth, SHARD_WORK / Math.max(1, outHeight * filterVolume)));
+            tileHeight = planar ? outHeight : Math.max(1, Math.min(outHeight, SHARD_WORK / Math.max(1, filterVolume)));
+            tilesX = (outWidth + tileWidth - 1) / tileWidth;
+            tilesY = (outHeight + tileHeight - 1) / tileHeight;
+            tiles = tilesX * tilesY;
+        }
+
+        int inner(int o, int r, int stride, int padding) { return o * step(stride) + shift(r, padding); }
+
+        int outer(int i, int r, int stride, int padding, int size) {
+            val scaled = i - shift(r, padding);
+            val o = Math.floorDiv(scaled, step(stride));
+            return scaled >= 0 && o * step(stride) == scaled && o < size ? o : -1;
+        }
+
+        int step(int stride) { return transposed ? 1 : stride; }
+
+        int shift(int r, int padding) { return transposed ? padding - r : r - padding; }
+
+        int first(int shift, int step) { return Math.max(0, Math.floorDiv(-shift + step - 1, step)); }
+
+        int last(int shift, int step, int inSize, int outSize) {
+            return Math.min(outSize, Math.floorDiv(inSize - shift + step - 1, step));
+        }
+    }
+}
@@ -0,0 +1,300 @@
+package hy.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Einsum {
+
+    final int                               CACHE  = 256;
+    final String                            LABELS = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ";
+    final ConcurrentHashMap<String, Plan>   plans  = new ConcurrentHashMap<>();
+
+    public NArray einsum(@NonNull String equation, @NonNull NArray... operands) {
+        val arrow = equation.indexOf("->");
+        val inputs = (arrow < 0 ? equation : equation.substring(0, arrow)).replace(" ", "").split(",", -1);
+        val output = arrow < 0 ? implicitOutput(inputs) : equation.substring(arrow + 2).replace(" ", "");
+        if (inputs.length != operands.length) throw new IllegalArgumentException(
+                "Equation " + equation + " expects " + inputs.length + " operands. Found " + operands.length);
+        for (val labels : inputs) validate(equation, labels);
+        validate(equation, output);
+        for (val label : output.toCharArray()) if (output.indexOf(label) != output.lastIndexOf(label)
+                || Arrays.stream(inputs).noneMatch(labels -> labels.indexOf(label) >= 0))
+            throw new IllegalArgumentException("Output label '" + label + "' of " + equation
+                    + " must appear exactly once in the output and at least once in the inputs");
+        if (operands.length == 1) return plan(inputs[0], null, output, operands[0], null).run(operands[0], null);
+        var result = operands[0];
+        var labels = inputs[0];
+        for (var i = 1; i < operands.length; i++) {
+            val keep = i == operands.length - 1 ? output : intermediate(labels, inputs, i, output);
+            result = plan(labels, inputs[i], keep, result, operands[i]).run(result, operands[i]);
+            labels = keep;
+        }
+        return result;
+    }
+
+    public NArray tensordot(@NonNull NArray a, @NonNull NArray b, int axes) {
+        if (axes < 0 || axes > a.dims || axes > b.dims) throw new IllegalArgumentException(
+                "Can't contract " + axes + " axes of " + Arrays.toString(a.shape) + " and " + Arrays.toString(b.shape));
+        val left = new int[axes];
+        val right = new int[axes];
+        for (var i = 0; i < axes; i++) {
+            left[i] = a.dims - axes + i;
+            right[i] = i;
+        }
+        return tensordot(a, b, left, right);
+    }
+
+    public NArray tensordot(@NonNull NArray a, @NonNull NArray b, @NonNull int[] axesA, @NonNull int[] axesB) {
+        if (axesA.length != axesB.length) throw new IllegalArgumentException(
+                "Contracted axes must pair up. Found " + Arrays.toString(axesA) + " and " + Arrays.toString(axesB));
+        if (a.dims + b.dims > LABELS.length()) throw new IllegalArgumentException(
+                "tensordot supports at most " + LABELS.length() + " axes in total");
+        val left = new char[a.dims];
+        val right = new char[b.dims];
+        for (var i = 0; i < a.dims; i++) left[i] = LABELS.charAt(i);
+        for (var i = 0; i < axesA.length; i++) {
+            val axisA = Objects.checkIndex(axesA[i] < 0 ? axesA[i] + a.dims : axesA[i], a.dims);
+            val axisB = Objects.checkIndex(axesB[i] < 0 ? axesB[i] + b.dims : axesB[i], b.dims);
+            if (right[axisB] != 0) throw new IllegalArgumentException("Axis " + axisB + " is contracted twice");
+            right[axisB] = left[axisA];
+        }
+        val out = new StringBuilder();
+        val contracted = new String(right);
+        for (val label : left) if (contracted.indexOf(label) < 0) out.append(label);
+        var next = a.dims;
+        for (var i = 0; i < b.dims; i++) if (right[i] == 0) {
+            right[i] = LABELS.charAt(next++);
+            out.append(right[i]);
+        }
+        return einsum(new String(left) + "," + new String(right) + "->" + out, a, b);
+    }
+
+    private String implicitOutput(String[] inputs) {
+        val all = String.join("", inputs);
+        val out = new StringBuilder();
+        all.chars().sorted().distinct().filter(c -> all.indexOf(c) == all.lastIndexOf(c))
+                .forEach(c -> out.append((char) c));
+        return out.toString();
+    }
+
+    private void validate(String equation, String labels) {
+        for (val label : labels.toCharArray()) if (LABELS.indexOf(label) < 0) throw new IllegalArgumentException(
+                "Unsupported label '" + label + "' in " + equation + ". Only letters are allowed");
+    }
+
+    private String intermediate(String labels, String[] inputs, int next, String output) {
+        val later = new StringBuilder(output);
+        for (var j = next + 1; j < inputs.length; j++) later.append(inputs[j]);
+        val keep = new StringBuilder();
+        for (val label : (labels + inputs[next]).toCharArray()) {
+            val text = String.valueOf(label);
+            if (later.indexOf(text) >= 0 && keep.indexOf(text) < 0) keep.append(label);
+        }
+        return keep.toString();
+    }
+
+    private Plan plan(String left, String right, String output, NArray a, NArray b) {
+        val key = left + "," + right + "->" + output + Arrays.toString(a.shape)
+                + (b == null ? "" : Arrays.toString(b.shape));
+        val cached = plans.get(key);
+        if (cached != null) return cached;
+        if (plans.size() >= CACHE) plans.clear();
+        val plan = new Plan(left, right, output, a, b);
+        plans.put(key, plan);
+        return plan;
+    }
+
+    private int[] indicesOf(String labels, String of) {
+        val indices = new int[of.length()];
+        for (var i = 0; i < indices.length; i++) indices[i] = labels.indexOf(of.charAt(i));
+        return indices;
+    }
+
+    private boolean distinct(String labels) { return labels.chars().distinct().count() == labels.length(); }
+
+    private boolean containsAll(String labels, String of) {
+        for (val label : of.toCharArray()) if (labels.indexOf(label) < 0) return false;
+        return true;
+    }
+
+    private int[] shapeOf(int[] sizes) { return sizes.length == 0 ? new int[] { 1 } : sizes; }
+
+    private int[] groupStrides(NArray view, int... groups) {
+        val strides = new int[groups.length - 1];
+        for (var g = 0; g < strides.length; g++) {
+            var stride = 0;
+            var span = -1;
+            for (var d = groups[g + 1] - 1; d >= groups[g]; d--) {
+                if (view.shape[d] == 1) continue;
+                if (span < 0) stride = view.strides[d];
+                else if (view.strides[d] != span) return null;
+                span = view.strides[d] * view.shape[d];
+            }
+            strides[g] = stride;
+        }
+        return strides;
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Plan {
+
+        boolean gemm;
+        int[]   permutation;
+        int[]   outShape;
+        int[]   permA;
+        int[]   permB;
+        int[]   groupsA;
+        int[]   groupsB;
+        int[]   outPerm;
+        int     batch;
+        int     m;
+        int     n;
+        int     k;
+        int[]   loopShape;
+        int[][] loopAxes;
+        int     sumSize;
+
+        Plan(String left, String right, String output, NArray a, NArray b) {
+            val labels = right == null ? new String[] { left } : new String[] { left, right };
+            val operands = right == null ? new NArray[] { a } : new NArray[] { a, b };
+            val all = new StringBuilder(output);
+            for (val l : labels) for (val label : l.toCharArray()) if (all.indexOf(String.valueOf(label)) < 0)
+                all.append(label);
+            val loop = all.toString();
+            this.loopShape = new int[loop.length()];
+            Arrays.fill(loopShape, -1);
+            for (var o = 0; o < operands.length; o++) {
+                if (labels[o].length() != operands[o].dims) throw new IllegalArgumentException("Operand of shape "
+                        + Arrays.toString(operands[o].shape) + " doesn't match labels '" + labels[o] + "'");
+                for (var d = 0; d < labels[o].length(); d++) {
+                    val at = loop.indexOf(labels[o].charAt(d));
+                    if (loopShape[at] >= 0 && loopShape[at] != operands[o].shape[d])
+                        throw new IllegalArgumentException("Label '" + loop.charAt(at) + "' has conflicting sizes "
+                                + loopShape[at] + " and " + operands[o].shape[d]);
+                    loopShape[at] = operands[o].shape[d];
+                }
+            }
+            this.loopAxes = new int[operands.length][];
+            for (var o = 0; o < operands.length; o++) loopAxes[o] = indicesOf(loop, labels[o]);
+            this.outShape = shapeOf(Arrays.copyOf(loopShape, output.length()));
+            var sumSize = 1;
+            for (var i = output.length(); i < loop.length(); i++) sumSize = Math.multiplyExact(sumSize, loopShape[i]);
+            this.sumSize = sumSize;
+            this.permutation = right == null && distinct(left) && left.length() == output.length()
+                    ? indicesOf(left, output) : null;
+            this.gemm = right != null && distinct(left) && distinct(right) && containsAll(right + output, left)
+                    && containsAll(left + output, right);
+            if (!gemm) {
+                permA = permB = groupsA = groupsB = outPerm = null;
+                batch = m = n = k = 0;
+                return;
+            }
+            val batchLabels = new StringBuilder();
+            val leftLabels = new StringBuilder();
+            val rightLabels = new StringBuilder();
+            val contracted = new StringBuilder();
+            for (val label : output.toCharArray()) {
+                val inLeft = left.indexOf(label) >= 0;
+                val inRight = right.indexOf(label) >= 0;
+                (inLeft && inRight ? batchLabels : inLeft ? leftLabels : rightLabels).append(label);
+            }
+            for (val label : left.toCharArray()) if (output.indexOf(label) < 0) contracted.append(label);
+            val batchL = batchLabels.toString();
+            val leftL = leftLabels.toString();
+            val rightL = rightLabels.toString();
+            val contractL = contracted.toString();
+            this.permA = indicesOf(left, batchL + leftL + contractL);
+            this.permB = indicesOf(right, batchL + contractL + rightL);
+            this.groupsA = new int[] { 0, batchL.length(), batchL.length() + leftL.length(), left.length() };
+            this.groupsB = new int[] { 0, batchL.length(), batchL.length() + contractL.length(), right.length() };
+            this.batch = size(loop, batchL);
+            this.m = size(loop, leftL);
+            this.n = size(loop, rightL);
+            this.k = size(loop, contractL);
+            this.outPerm = indicesOf(batchL + leftL + rightL, output);
+        }
+
+        private int size(String loop, String labels) {
+            var size = 1;
+            for (val label : labels.toCharArray()) size = Math.multiplyExact(size, loopShape[loop.indexOf(label)]);
+            return size;
+        }
+
+        NArray run(NArray a, NArray b) {
+            if (permutation != null) return a.permute(permutation).clone();
+            return gemm ? gemm(a, b) : fused(a, b);
+        }
+
+        private NArray gemm(NArray a, NArray b) {
+            var va = a.permute(permA).onHeap();
+            var sa = groupStrides(va, groupsA);
+            if (sa == null) {
+                va = va.contiguous().onHeap();
+                sa = groupStrides(va, groupsA);
+            }
+            var vb = b.permute(permB).onHeap();
+            var sb = groupStrides(vb, groupsB);
+            if (sb == null) {
+                vb = vb.contiguous().onHeap();
+                sb = groupStrides(vb, groupsB);
+            }
+            val left = va, right = vb, strideA = sa, strideB = sb;
+            val c = new double[Math.multiplyExact(batch, Math.multiplyExact(m, n))];
+            val work = Math.max(1L, (long) m * n * k);
+            Parallel.forRange(batch, (int) Math.max(1, Parallel.grain() / work), (from, to) -> {
+                for (var p = from; p < to; p++)
+                    Gemm.gemm(m, n, k, left.heapArray(), left.offset + p * strideA[0], strideA[1], strideA[2],
+                        right.heapArray(), right.offset + p * strideB[0], strideB[1], strideB[2], c, p * m * n, n,
+                        false);
+            });
+            val result = new NArray(outShape.length == outPerm.length ? permuted(outShape, outPerm) : outShape);
+            result.storage.put(0, c, 0, c.length);
+            if (outPerm.length < 2 || isIdentity(outPerm)) return result;
+            return result.permute(outPerm).clone();
+        }
+
+        private NArray fused(NArray a, NArray b) {
+            val operands = b == null ? new NArray[] { a.onHeap() } : new NArray[] { a.onHeap(), b.onHeap() };
+            val strides = new int[operands.length][loopShape.length];
+            for (var o = 0; o < operands.length; o++)
+                for (var d = 0; d < loopAxes[o].length; d++) strides[o][loopAxes[o][d]] += operands[o].strides[d];
+            val result = new NArray(StorageType.HEAP, Precision.DOUBLE, outShape);
+            val out = result.heapArray();
+            val size = Arrays.stream(outShape).reduce(1, Math::multiplyExact);
+            Parallel.forRange(size, Math.max(1, Parallel.grain() / sumSize), (from, to) -> {
+                val it = new Odometer(loopShape, strides).seek(from * sumSize);
+                for (var o = from; o < to; o++) {
+                    var sum = 0.0;
+                    for (var s = 0; s < sumSize; s++, it.next()) {
+                        var product = 1.0;
+                        for (var i = 0; i < operands.length; i++)
+                            product *= operands[i].heapArray()[operands[i].offset + it.position(i)];
+                        sum += product;
+                    }
+                    out[result.offset + o] = sum;
+                }
+            });
+            return Precision.getDefault() == Precision.DOUBLE ? result : result.to(Precision.getDefault());
+        }
+
+        private int[] permuted(int[] shape, int[] perm) {
+            val out = new int[perm.length];
+            for (var i = 0; i < perm.length; i++) out[perm[i]] = shape[i];
+            return out;
+        }
+
+        private boolean isIdentity(int[] perm) {
+            for (var i = 0; i < perm.length; i++) if (perm[i] != i) return false;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package hy.util;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class ExecutionContext {
+
+    public static final int                            DEFAULT_GRAIN  = 1 << 13;
+
+    private static final AtomicInteger                 pools          = new AtomicInteger();
+    private static final ThreadLocal<ExecutionContext> scoped         = new ThreadLocal<>();
+    private static volatile ExecutionContext           defaultContext = fromProperties();
+
+    public int                                         parallelism;
+    public int                                         grain;
+    ForkJoinPool                                       pool;
+    boolean                                            dedicated;
+
+    private ExecutionContext(int parallelism, int grain, ForkJoinPool pool, boolean dedicated) {
+        if (parallelism < 1) throw new IllegalArgumentException("Parallelism must be positive. Found " + parallelism);
+        if (grain < 1) throw new IllegalArgumentException("Grain must be positive. Found " + grain);
+        this.parallelism = parallelism;
+        this.grain = grain;
+        this.pool = pool;
+        this.dedicated = dedicated;
+    }
+
+    public static ExecutionContext sequential() { return new ExecutionContext(1, Integer.MAX_VALUE, null, false); }
+
+    public static ExecutionContext common(int grain) {
+        return new ExecutionContext(ForkJoinPool.getCommonPoolParallelism(), grain, ForkJoinPool.commonPool(), false);
+    }
+
+    public static ExecutionContext dedicated(int parallelism, int grain) {
+        if (parallelism <= 1) return new ExecutionContext(parallelism, grain, null, false);
+        val id = pools.incrementAndGet();
+        val pool = new ForkJoinPool(parallelism, p -> {
+            val worker = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+            worker.setName("hy-" + id + "-worker-" + worker.getPoolIndex());
+            worker.setDaemon(true);
+            return worker;
+        }, null, false);
+        return new ExecutionContext(parallelism, grain, pool, true);
+    }
+
+    public static ExecutionContext getDefault() {
+        val context = scoped.get();
+        return context != null ? context : defaultContext;
+    }
+
+    public static void setDefault(@NonNull ExecutionContext context) { defaultContext = context; }
+
+    public static Scope scope(@NonNull ExecutionContext context) {
+        val scope = new Scope(scoped.get());
+        scoped.set(context);
+        return scope;
+    }
+
+    public static int availableProcessors() {
+        val processors = Runtime.getRuntime().availableProcessors();
+        val quota = cpuQuota();
+        return quota > 0 ? Math.max(1, Math.min(processors, (int) Math.ceil(quota))) : processors;
+    }
+
+    public boolean isSequential() { return pool == null; }
+
+    public void shutdown() {
+        if (dedicated) pool.shutdown();
+    }
+
+    void invoke(@NonNull ForkJoinTask<?> task) {
+        val thread = Thread.currentThread();
+        if (thread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) thread).getPool() == pool) task.invoke();
+        else pool.invoke(task);
+    }
+
+    private static ExecutionContext fromProperties() {
+        val grain = Integer.getInteger("hy.grain", DEFAULT_GRAIN);
+        val threads = Integer.getInteger("hy.threads", 0);
+        if (threads > 0) return dedicated(threads, grain);
+        val processors = availableProcessors();
+        if (processors <= 1) return new ExecutionContext(1, grain, null, false);
+        if (Boolean.parseBoolean(System.getProperty("hy.pool.dedicated", "false"))) return dedicated(processors, grain);
+        if (processors >= ForkJoinPool.getCommonPoolParallelism()) return common(grain);
+        return dedicated(processors, grain);
+    }
+
+    private static double cpuQuota() {
+        try {
+            val v2 = Paths.get("/sys/fs/cgroup/cpu.max");
+            if (Files.isReadable(v2)) {
+                val fields = Files.readString(v2).trim().split("\\s+");
+                if (fields.length == 2 && !"max".equals(fields[0]))
+                    return Double.parseDouble(fields[0]) / Double.parseDouble(fields[1]);
+                return -1;
+            }
+            val quota = read(Paths.get("/sys/fs/cgroup/cpu/cpu.cfs_quota_us"));
+            val period = read(Paths.get("/sys/fs/cgroup/cpu/cpu.cfs_period_us"));
+            return quota > 0 && period > 0 ? quota / period : -1;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static double read(Path path) throws IOException {
+        return Files.isReadable(path) ? Double.parseDouble(Files.readString(path).trim()) : -1;
+    }
+
+    @Override
+    public String toString() {
+        return "ExecutionContext(parallelism=" + parallelism + ", grain=" + grain + ", pool="
+                + (pool == null ? "none" : dedicated ? "dedicated" : "common") + ")";
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private final ExecutionContext previous;
+
+        private Scope(ExecutionContext previous) { this.previous = previous; }
+
+        @Override
+        public void close() {
+            if (previous == null) scoped.remove();
+            else scoped.set(previous);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package hy.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.DoubleBinaryOperator;
+import java.util.function.DoubleUnaryOperator;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public abstract class Expr {
+
+    static final int BLOCK = 512;
+
+    public int       size;
+    int[]            shape;
+
+    Expr(int[] shape) {
+        this.shape = shape;
+        this.size = Arrays.stream(shape).reduce(1, Math::multiplyExact);
+    }
+
+    public static Expr of(@NonNull NArray array) { return new Leaf(array); }
+
+    public int[] getShape() { return shape.clone(); }
+
+    public Expr map(@NonNull DoubleUnaryOperator op) { return new Unary(this, op); }
+
+    public Expr bimap(@NonNull DoubleBinaryOperator op, @NonNull Expr arg2) {
+        if (arg2.size != size) return of(eval().bimap(op, arg2.eval()));
+        return new Binary(this, arg2, op);
+    }
+
+    public Expr bimap(@NonNull DoubleBinaryOperator op, @NonNull NArray arg2) { return bimap(op, of(arg2)); }
+
+    public Expr bimap(@NonNull DoubleBinaryOperator op, double arg2) { return map(x -> op.applyAsDouble(x, arg2)); }
+
+    public Expr bimapRev(@NonNull DoubleBinaryOperator op, double arg2) {
+        return map(x -> op.applyAsDouble(arg2, x));
+    }
+
+    public Expr negate() { return map(x -> -x); }
+
+    public Expr add(Expr arg2) { return bimap(Double::sum, arg2); }
+
+    public Expr add(NArray arg2) { return bimap(Double::sum, arg2); }
+
+    public Expr add(double arg2) { return bimap(Double::sum, arg2); }
+
+    public Expr addRev(double arg2) { return bimapRev(Double::sum, arg2); }
+
+    public Expr subtract(Expr arg2) { return bimap((a, b) -> a - b, arg2); }
+
+    public Expr subtract(NArray arg2) { return bimap((a, b) -> a - b, arg2); }
+
+    public Expr subtract(double arg2) { return bimap((a, b) -> a - b, arg2); }
+
+    public Expr subtractRev(double arg2) { return bimapRev((a, b) -> a - b, arg2); }
+
+    public Expr multiply(Expr arg2) { return bimap((a, b) -> a * b, arg2); }
+
+    public Expr multiply(NArray arg2) { return bimap((a, b) -> a * b, arg2); }
+
+    public Expr multiply(double arg2) { return bimap((a, b) -> a * b, arg2); }
+
+    public Expr multiplyRev(double arg2) { return bimapRev((a, b) -> a * b, arg2); }
+
+    public Expr divide(Expr arg2) { return bimap((a, b) -> a / b, arg2); }
+
+    public Expr divide(NArray arg2) { return bimap((a, b) -> a / b, arg2); }
+
+    public Expr divide(double arg2) { return bimap((a, b) -> a / b, arg2); }
+
+    public Expr divideRev(double arg2) { return bimapRev((a, b) -> a / b, arg2); }
+
+    public NArray eval() { return evalInto(new NArray(shape)); }
+
+    public NArray evalInto(@NonNull NArray out) {
+        if (out.size != size) throw new IllegalArgumentException(
+                "Output of size " + out.size + " can't hold the " + size + " elements of the expression");
+        Parallel.forRange(size, grain(), (from, to) -> {
+            val scratch = new Scratch();
+            val buffer = scratch.take();
+            for (var block = from; block < to; block += BLOCK) {
+                val length = Math.min(BLOCK, to - block);
+                eval(block, length, buffer, scratch);
+                if (out.contiguous) out.storage.put(out.offset + block, buffer, 0, length);
+                else for (var i = 0; i < length; i++) out[block + i] = buffer[i];
+            }
+        });
+        return out;
+    }
+
+    public double sum() {
+        return Parallel.reduceRange(size, grain(), 0, (from, to) -> {
+            val scratch = new Scratch();
+            val buffer = scratch.take();
+            var sum = 0.0;
+            for (var block = from; block < to; block += BLOCK) {
+                val length = Math.min(BLOCK, to - block);
+                eval(block, length, buffer, scratch);
+                sum += VectorOps.INSTANCE.sum(buffer, 0, length);
+            }
+            return sum;
+        }, Double::sum);
+    }
+
+    public double average() { return sum() / size; }
+
+    public double max() { return reduce(Double.NEGATIVE_INFINITY, Math::max); }
+
+    public double min() { return reduce(Double.POSITIVE_INFINITY, Math::min); }
+
+    public double reduce(double identity, @NonNull DoubleBinaryOperator op) {
+        return Parallel.reduceRange(size, grain(), identity, (from, to) -> {
+            val scratch = new Scratch();
+            val buffer = scratch.take();
+            var acc = identity;
+            for (var block = from; block < to; block += BLOCK) {
+                val length = Math.min(BLOCK, to - block);
+                eval(block, length, buffer, scratch);
+                for (var i = 0; i < length; i++) acc = op.applyAsDouble(acc, buffer[i]);
+            }
+            return acc;
+        }, op);
+    }
+
+    abstract void eval(int from, int length, double[] out, Scratch scratch);
+
+    private static int grain() { return Math.max(BLOCK, Parallel.grain()); }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Leaf extends Expr {
+
+        NArray array;
+
+        Leaf(NArray array) {
+            super(array.getShape());
+            this.array = array;
+        }
+
+        @Override
+        void eval(int from, int length, double[] out, Scratch scratch) {
+            if (array.heapContiguous()) System.arraycopy(array.heapArray(), array.offset + from, out, 0, length);
+            else for (var i = 0; i < length; i++) out[i] = array[from + i];
+        }
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Unary extends Expr {
+
+        Expr                operand;
+        DoubleUnaryOperator op;
+
+        Unary(Expr operand, DoubleUnaryOperator op) {
+            super(operand.shape);
+            this.operand = operand;
+            this.op = op;
+        }
+
+        @Override
+        void eval(int from, int length, double[] out, Scratch scratch) {
+            operand.eval(from, length, out, scratch);
+            for (var i = 0; i < length; i++) out[i] = op.applyAsDouble(out[i]);
+        }
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Binary extends Expr {
+
+        Expr                 left;
+        Expr                 right;
+        DoubleBinaryOperator op;
+
+        Binary(Expr left, Expr right, DoubleBinaryOperator op) {
+            super(Arrays.equals(left.shape, right.shape) ? left.shape : new int[] { left.size });
+            this.left = left;
+            this.right = right;
+            this.op = op;
+        }
+
+        @Override
+        void eval(int from, int length, double[] out, Scratch scratch) {
+            left.eval(from, length, out, scratch);
+            val operand = scratch.take();
+            right.eval(from, length, operand, scratch);
+            for (var i = 0; i < length; i++) out[i] = op.applyAsDouble(out[i], operand[i]);
+            scratch.release();
+        }
+    }
+
+    private static class Scratch {
+
+        List<double[]> buffers = new ArrayList<>();
+        int            depth;
+
+        double[] take() {
+            if (depth == buffers.size()) buffers.add(new double[BLOCK]);
+            return buffers.get(depth++);
+        }
+
+        void release() { depth--; }
+    }
+}
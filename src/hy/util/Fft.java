@@ -0,0 +1,130 @@
+package hy.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Fft {
+
+    final int MIN = 8;
+
+    final ConcurrentHashMap<Integer, Plan> plans   = new ConcurrentHashMap<>();
+    final ThreadLocal<double[]>            scratch = new ThreadLocal<>();
+
+    public int size(int length) { return Math.max(MIN, Integer.highestOneBit(Math.max(1, length - 1)) << 1); }
+
+    public int bins(int n) { return n / 2 + 1; }
+
+    public void forward(int n, @NonNull double[] x, int offset, int length, @NonNull double[] spectrum, int at) {
+        val plan = plan(n);
+        val m = plan.m;
+        val z = Im2Col.borrow(scratch, n);
+        try {
+            val copied = Math.min(length, n);
+            System.arraycopy(x, offset, z, 0, copied);
+            for (var i = copied; i < n; i++) z[i] = 0.0;
+            transform(plan, z, false);
+            for (var k = 0; k <= m; k++) {
+                val a = k % m, b = (m - k) % m;
+                val re = z[2 * a], im = z[2 * a + 1], cre = z[2 * b], cim = -z[2 * b + 1];
+                val evenRe = 0.5 * (re + cre), evenIm = 0.5 * (im + cim);
+                val oddRe = 0.5 * (im - cim), oddIm = -0.5 * (re - cre);
+                val wr = plan.real[2 * k], wi = plan.real[2 * k + 1];
+                spectrum[at + 2 * k] = evenRe + wr * oddRe - wi * oddIm;
+                spectrum[at + 2 * k + 1] = evenIm + wr * oddIm + wi * oddRe;
+            }
+        } finally {
+            Im2Col.release(scratch, z);
+        }
+    }
+
+    public void inverse(int n, @NonNull double[] spectrum, int at, @NonNull double[] x, int offset, int length) {
+        val plan = plan(n);
+        val m = plan.m;
+        val z = Im2Col.borrow(scratch, n);
+        try {
+            for (var k = 0; k < m; k++) {
+                val re = spectrum[at + 2 * k], im = spectrum[at + 2 * k + 1];
+                val cre = spectrum[at + 2 * (m - k)], cim = -spectrum[at + 2 * (m - k) + 1];
+                val evenRe = 0.5 * (re + cre), evenIm = 0.5 * (im + cim);
+                val diffRe = 0.5 * (re - cre), diffIm = 0.5 * (im - cim);
+                val wr = plan.real[2 * k], wi = -plan.real[2 * k + 1];
+                val oddRe = diffRe * wr - diffIm * wi, oddIm = diffRe * wi + diffIm * wr;
+                z[2 * k] = evenRe - oddIm;
+                z[2 * k + 1] = evenIm + oddRe;
+            }
+            transform(plan, z, true);
+            val scale = 1.0 / m;
+            for (var i = 0; i < length; i++) x[offset + i] = z[i] * scale;
+        } finally {
+            Im2Col.release(scratch, z);
+        }
+    }
+
+    private void transform(Plan plan, double[] z, boolean inverse) {
+        val m = plan.m;
+        val reverse = plan.reverse;
+        for (var i = 0; i < m; i++) {
+            val j = reverse[i];
+            if (j <= i) continue;
+            val re = z[2 * i], im = z[2 * i + 1];
+            z[2 * i] = z[2 * j];
+            z[2 * i + 1] = z[2 * j + 1];
+            z[2 * j] = re;
+            z[2 * j + 1] = im;
+        }
+        val sign = inverse ? 1.0 : -1.0;
+        for (var length = 2; length <= m; length <<= 1) {
+            val half = length >> 1, step = m / length;
+            for (var start = 0; start < m; start += length) {
+                for (var j = 0; j < half; j++) {
+                    val wr = plan.cos[j * step], wi = sign * plan.sin[j * step];
+                    val p = 2 * (start + j), q = 2 * (start + j + half);
+                    val re = z[q] * wr - z[q + 1] * wi, im = z[q] * wi + z[q + 1] * wr;
+                    z[q] = z[p] - re;
+                    z[q + 1] = z[p + 1] - im;
+                    z[p] += re;
+                    z[p + 1] += im;
+                }
+            }
+        }
+    }
+
+    private Plan plan(int n) {
+        if (n < MIN || Integer.bitCount(n) != 1)
+            throw new IllegalArgumentException("FFT sizes have to be powers of two of atleast " + MIN + ". Got " + n);
+        return plans.computeIfAbsent(n, Plan::new);
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Plan {
+
+        int      m;
+        int[]    reverse;
+        double[] cos, sin, real;
+
+        Plan(int n) {
+            m = n / 2;
+            reverse = new int[m];
+            val bits = Integer.numberOfTrailingZeros(m);
+            for (var i = 0; i < m; i++) reverse[i] = bits == 0 ? 0 : Integer.reverse(i) >>> (32 - bits);
+            cos = new double[Math.max(1, m / 2)];
+            sin = new double[Math.max(1, m / 2)];
+            for (var t = 0; t < m / 2; t++) {
+                cos[t] = Math.cos(2 * Math.PI * t / m);
+                sin[t] = Math.sin(2 * Math.PI * t / m);
+            }
+            real = new double[2 * (m + 1)];
+            for (var k = 0; k <= m; k++) {
+                real[2 * k] = Math.cos(2 * Math.PI * k / n);
+                real[2 * k + 1] = -Math.sin(2 * Math.PI * k / n);
+            }
+        }
+    }
+}
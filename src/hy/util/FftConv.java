@@ -0,0 +1,278 @@
+package hy.util;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class FftConv {
+
+    public final int CROSSOVER_1D = Integer.getInteger("hy.fft.crossover1d", 32);
+    public final int CROSSOVER_2D = Integer.getInteger("hy.fft.crossover2d", 25);
+
+    final int BLOCK = 1024;
+
+    public boolean preferred(int winSize) { return winSize >= CROSSOVER_1D; }
+
+    public boolean preferred(int winWidth, int winHeight) { return winWidth * winHeight >= CROSSOVER_2D; }
+
+    public Filter prepare(@NonNull NArray weights) {
+        if (weights.dims != 3 && weights.dims != 4) throw new IllegalArgumentException(
+                "Expected 3D or 4D convolution weights. Got " + Arrays.toString(weights.shape));
+        return new Filter(weights);
+    }
+
+    public NArray forward(@NonNull NArray input, @NonNull Filter filter, @NonNull NArray bias, int stride,
+        int padding) {
+        return forward(new Layout(input, filter, 1, stride, 0, padding), input, filter, bias);
+    }
+
+    public NArray forward(@NonNull NArray input, @NonNull Filter filter, @NonNull NArray bias, int strideX,
+        int strideY, int paddingX, int paddingY) {
+        return forward(new Layout(input, filter, strideX, strideY, paddingX, paddingY), input, filter, bias);
+    }
+
+    public NArray backward(@NonNull NArray input, @NonNull Filter filter, @NonNull NArray delta, @NonNull NArray dW,
+        @NonNull NArray db, int stride, int padding) {
+        return backward(new Layout(input, filter, 1, stride, 0, padding), input, filter, delta, dW, db);
+    }
+
+    public NArray backward(@NonNull NArray input, @NonNull Filter filter, @NonNull NArray delta, @NonNull NArray dW,
+        @NonNull NArray db, int strideX, int strideY, int paddingX, int paddingY) {
+        return backward(new Layout(input, filter, strideX, strideY, paddingX, paddingY), input, filter, delta, dW, db);
+    }
+
+    private NArray forward(Layout g, NArray input, Filter filter, NArray bias) {
+        val in = input.contiguous().onHeap();
+        val b = bias.values().toArray();
+        val spectra = filter.spectra(g);
+        val result = new NArray(g.outShape(input));
+        val out = result.heapContiguous() ? result.heapArray() : new double[result.size];
+        val outBase = result.heapContiguous() ? result.offset : 0;
+        val bins = 2 * Fft.bins(g.n);
+        val padded = new double[g.channels * g.length];
+        val inputs = new double[g.channels * bins];
+        val products = new double[g.filters * bins];
+        val z = new double[g.filters * g.positions];
+        for (var s = 0; s < g.batch; s++) {
+            g.pad(in.heapArray(), in.offset + s * g.inVolume, padded);
+            for (var j0 = 0; j0 < g.positions; j0 += g.block) {
+                val start = j0, count = Math.min(g.block, g.positions - j0);
+                Parallel.forRange(g.channels, 1, (from, to) -> {
+                    for (var c = from; c < to; c++) Fft.forward(g.n, padded, c * g.length + start,
+                        Math.min(g.n, g.length - start), inputs, c * bins);
+                });
+                Parallel.forRange(g.filters, 1, (from, to) -> {
+                    for (var k = from; k < to; k++) {
+                        Arrays.fill(products, k * bins, (k + 1) * bins, 0.0);
+                        for (var c = 0; c < g.channels; c++)
+                            multiplyConjugate(inputs, c * bins, spectra, (k * g.channels + c) * bins, products,
+                                k * bins, bins);
+                        Fft.inverse(g.n, products, k * bins, z, k * g.positions + start, count);
+                    }
+                });
+            }
+            val outOffset = outBase + s * g.outVolume;
+            Parallel.forRange(g.filters, 1, (from, to) -> {
+                for (var k = from; k < to; k++) for (var ox = 0; ox < g.outWidth; ox++) {
+                    val line = outOffset + k * g.outPlane + ox * g.outHeight;
+                    val row = k * g.positions + ox * g.strideX * g.rowLength;
+                    for (var oy = 0; oy < g.outHeight; oy++) out[line + oy] = z[row + oy * g.strideY] + b[k];
+                }
+            });
+        }
+        if (!result.heapContiguous()) result.storage.put(0, out, 0, result.size);
+        return result;
+    }
+
+    private NArray backward(Layout g, NArray input, Filter filter, NArray delta, NArray dW, NArray db) {
+        if (delta.size != g.batch * g.outVolume) throw new IllegalArgumentException("Expected a delta of shape "
+                + Arrays.toString(g.outShape(input)) + ". Got " + Arrays.toString(delta.shape));
+        val in = input.contiguous().onHeap();
+        val d = delta.contiguous().onHeap();
+        val spectra = filter.spectra(g);
+        val result = new NArray(input.shape);
+        val dX = result.heapContiguous() ? result.heapArray() : new double[result.size];
+        val dXBase = result.heapContiguous() ? result.offset : 0;
+        val bins = 2 * Fft.bins(g.n);
+        val padded = new double[g.channels * g.length];
+        val gradPadded = new double[g.channels * g.length];
+        val dz = new double[g.filters * g.positions];
+        val inputs = new double[g.channels * bins];
+        val deltas = new double[g.filters * bins];
+        val gradSpectra = new double[g.filters * g.channels * bins];
+        val gradB = new double[g.filters];
+        for (var s = 0; s < g.batch; s++) {
+            val dBase = d.offset + s * g.outVolume;
+            g.pad(in.heapArray(), in.offset + s * g.inVolume, padded);
+            Arrays.fill(gradPadded, 0.0);
+            for (var k = 0; k < g.filters; k++) {
+                gradB[k] += VectorOps.INSTANCE.sum(d.heapArray(), dBase + k * g.outPlane, g.outPlane);
+                for (var ox = 0; ox < g.outWidth; ox++) {
+                    val line = dBase + k * g.outPlane + ox * g.outHeight;
+                    val row = k * g.positions + ox * g.strideX * g.rowLength;
+                    for (var oy = 0; oy < g.outHeight; oy++) dz[row + oy * g.strideY] = d.heapArray()[line + oy];
+                }
+            }
+            for (var j0 = 0; j0 < g.positions; j0 += g.block) {
+                val start = j0, count = Math.min(g.block, g.positions - j0);
+                val span = Math.min(g.n, g.length - start);
+                Parallel.forRange(g.channels + g.filters, 1, (from, to) -> {
+                    for (var i = from; i < to; i++) {
+                        if (i < g.channels) Fft.forward(g.n, padded, i * g.length + start, span, inputs, i * bins);
+                        else Fft.forward(g.n, dz, (i - g.channels) * g.positions + start, count, deltas,
+                            (i - g.channels) * bins);
+                    }
+                });
+                Parallel.forRange(g.channels, 1, (from, to) -> {
+                    val product = new double[bins];
+                    val segment = new double[g.n];
+                    for (var c = from; c < to; c++) {
+                        Arrays.fill(product, 0.0);
+                        for (var k = 0; k < g.filters; k++) {
+                            multiply(deltas, k * bins, spectra, (k * g.channels + c) * bins, product, 0, bins);
+                            multiplyConjugate(inputs, c * bins, deltas, k * bins, gradSpectra,
+                                (k * g.channels + c) * bins, bins);
+                        }
+                        Fft.inverse(g.n, product, 0, segment, 0, span);
+                        val target = c * g.length + start;
+                        for (var i = 0; i < span; i++) gradPadded[target + i] += segment[i];
+                    }
+                });
+            }
+            g.crop(gradPadded, dX, dXBase + s * g.inVolume);
+            Arrays.fill(dz, 0.0);
+        }
+        val gradW = new double[dW.size];
+        Parallel.forRange(g.filters * g.channels, 1, (from, to) -> {
+            val taps = new double[g.taps];
+            for (var f = from; f < to; f++) {
+                Fft.inverse(g.n, gradSpectra, f * bins, taps, 0, g.taps);
+                for (var rx = 0; rx < g.winWidth; rx++) for (var ry = 0; ry < g.winHeight; ry++)
+                    gradW[(f * g.winWidth + rx) * g.winHeight + ry] = taps[rx * g.rowLength + ry];
+            }
+        });
+        dW.addInPlace(new NArray(StorageType.HEAP, Precision.DOUBLE, dW.shape).fill(gradW));
+        db.addInPlace(new NArray(StorageType.HEAP, Precision.DOUBLE, db.shape).fill(gradB));
+        if (!result.heapContiguous()) result.storage.put(0, dX, 0, result.size);
+        return result;
+    }
+
+    private void multiply(double[] a, int ai, double[] b, int bi, double[] c, int ci, int length) {
+        for (var i = 0; i < length; i += 2) {
+            val ar = a[ai + i], aim = a[ai + i + 1], br = b[bi + i], bim = b[bi + i + 1];
+            c[ci + i] += ar * br - aim * bim;
+            c[ci + i + 1] += ar * bim + aim * br;
+        }
+    }
+
+    private void multiplyConjugate(double[] a, int ai, double[] b, int bi, double[] c, int ci, int length) {
+        for (var i = 0; i < length; i += 2) {
+            val ar = a[ai + i], aim = a[ai + i + 1], br = b[bi + i], bim = b[bi + i + 1];
+            c[ci + i] += ar * br + aim * bim;
+            c[ci + i + 1] += aim * br - ar * bim;
+        }
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    public static class Filter {
+
+        NArray                              source;
+        double[]                            weights;
+        ConcurrentHashMap<String, double[]> spectra = new ConcurrentHashMap<>();
+
+        private Filter(NArray source) {
+            this.source = source;
+            val w = source.contiguous().onHeap();
+            this.weights = Arrays.copyOfRange(w.heapArray(), w.offset, w.offset + w.size);
+        }
+
+        public boolean isOf(NArray weights) { return source == weights; }
+
+        double[] spectra(Layout g) {
+            return spectra.computeIfAbsent(g.n + ":" + g.rowLength, $ -> {
+                val bins = 2 * Fft.bins(g.n);
+                val count = g.filters * g.channels;
+                val result = new double[count * bins];
+                Parallel.forRange(count, 1, (from, to) -> {
+                    val taps = new double[g.taps];
+                    for (var f = from; f < to; f++) {
+                        for (var rx = 0; rx < g.winWidth; rx++) System.arraycopy(weights,
+                            (f * g.winWidth + rx) * g.winHeight, taps, rx * g.rowLength, g.winHeight);
+                        Fft.forward(g.n, taps, 0, g.taps, result, f * bins);
+                    }
+                });
+                return result;
+            });
+        }
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Layout {
+
+        int     batch, channels, filters, inWidth, inHeight, inVolume;
+        int     winWidth, winHeight, strideX, strideY, paddingX, paddingY;
+        int     outWidth, outHeight, outPlane, outVolume;
+        int     rowLength, length, taps, positions, n, block;
+        boolean planar;
+
+        Layout(NArray input, Filter filter, int strideX, int strideY, int paddingX, int paddingY) {
+            val w = filter.source;
+            planar = w.dims == 4;
+            val dims = input.dims, spatial = planar ? 2 : 1;
+            if (dims < spatial + 1) throw new IllegalArgumentException(
+                    "Input dimensions should be atleast " + (spatial + 1) + ". Got " + dims);
+            channels = input.shape[dims - spatial - 1];
+            if (w.shape[1] != channels)
+                throw new IllegalArgumentException("Expected " + w.shape[1] + " input channels. Got " + channels);
+            filters = w.shape[0];
+            inWidth = planar ? input.shape[dims - 2] : 1;
+            inHeight = input.shape[dims - 1];
+            winWidth = planar ? w.shape[2] : 1;
+            winHeight = w.shape[w.dims - 1];
+            this.strideX = strideX;
+            this.strideY = strideY;
+            this.paddingX = paddingX;
+            this.paddingY = paddingY;
+            outWidth = (inWidth - winWidth + 2 * paddingX) / strideX + 1;
+            outHeight = (inHeight - winHeight + 2 * paddingY) / strideY + 1;
+            outPlane = outWidth * outHeight;
+            outVolume = filters * outPlane;
+            inVolume = channels * inWidth * inHeight;
+            batch = input.size / inVolume;
+            rowLength = inHeight + 2 * paddingY;
+            length = (inWidth + 2 * paddingX) * rowLength;
+            taps = (winWidth - 1) * rowLength + winHeight;
+            positions = (outWidth - 1) * strideX * rowLength + (outHeight - 1) * strideY + 1;
+            n = Math.min(Fft.size(positions + taps - 1), Fft.size(Math.max(BLOCK, 4 * taps)));
+            block = n - taps + 1;
+        }
+
+        void pad(double[] in, int base, double[] padded) {
+            Arrays.fill(padded, 0.0);
+            for (var c = 0; c < channels; c++) for (var x = 0; x < inWidth; x++)
+                System.arraycopy(in, base + (c * inWidth + x) * inHeight, padded,
+                    c * length + (x + paddingX) * rowLength + paddingY, inHeight);
+        }
+
+        void crop(double[] padded, double[] out, int base) {
+            for (var c = 0; c < channels; c++) for (var x = 0; x < inWidth; x++)
+                System.arraycopy(padded, c * length + (x + paddingX) * rowLength + paddingY, out,
+                    base + (c * inWidth + x) * inHeight, inHeight);
+        }
+
+        int[] outShape(NArray input) {
+            val shape = input.getShape();
+            shape[shape.length - (planar ? 3 : 2)] = filters;
+            if (planar) shape[shape.length - 2] = outWidth;
+            shape[shape.length - 1] = outHeight;
+            return shape;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package hy.util;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class FloatBufferStorage implements Storage {
+
+    FloatBuffer data;
+
+    public FloatBufferStorage(int length) {
+        this.data = ByteBuffer//
+                .allocateDirect(Math.multiplyExact(length, Float.BYTES))//
+                .order(ByteOrder.nativeOrder())//
+                .asFloatBuffer();
+    }
+
+    public FloatBufferStorage(@NonNull FloatBuffer data) { this.data = data.slice(); }
+
+    @Override
+    public int length() { return data.capacity(); }
+
+    @Override
+    public double get(int index) { return data.get(index); }
+
+    @Override
+    public void set(int index, double value) { data.put(index, (float) value); }
+
+    @Override
+    public boolean isDirect() { return data.isDirect(); }
+
+    @Override
+    public Precision precision() { return Precision.FLOAT; }
+
+    @Override
+    public DoubleBuffer buffer(int index, int length) {
+        val copy = new double[length];
+        for (var i = 0; i < length; i++) copy[i] = data.get(index + i);
+        return DoubleBuffer.wrap(copy);
+    }
+
+    public FloatBuffer floatBuffer(int index, int length) { return data.slice(index, length); }
+
+    @Override
+    public void put(int index, Storage src, int srcIndex, int length) {
+        if (src instanceof FloatBufferStorage)
+            data.slice(index, length).put(((FloatBufferStorage) src).floatBuffer(srcIndex, length));
+        else Storage.super.put(index, src, srcIndex, length);
+    }
+
+}
@@ -0,0 +1,54 @@
+package hy.util;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class FloatStorage implements Storage {
+
+    float[] data;
+
+    public FloatStorage(int length) { this.data = new float[length]; }
+
+    public FloatStorage(@NonNull float[] data) { this.data = data; }
+
+    public float[] array() { return data; }
+
+    @Override
+    public int length() { return data.length; }
+
+    @Override
+    public double get(int index) { return data[index]; }
+
+    @Override
+    public void set(int index, double value) { data[index] = (float) value; }
+
+    @Override
+    public boolean isDirect() { return false; }
+
+    @Override
+    public Precision precision() { return Precision.FLOAT; }
+
+    @Override
+    public DoubleBuffer buffer(int index, int length) {
+        val copy = new double[length];
+        for (var i = 0; i < length; i++) copy[i] = data[index + i];
+        return DoubleBuffer.wrap(copy);
+    }
+
+    @Override
+    public void fill(int from, int to, double value) { Arrays.fill(data, from, to, (float) value); }
+
+    @Override
+    public void put(int index, Storage src, int srcIndex, int length) {
+        if (src instanceof FloatStorage) System.arraycopy(((FloatStorage) src).data, srcIndex, data, index, length);
+        else Storage.super.put(index, src, srcIndex, length);
+    }
+
+}
@@ -0,0 +1,140 @@
+package hy.util;
+
+import java.util.Arrays;
+
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Gemm {
+
+    final int MR    = 4;
+    final int NR    = 4;
+    final int MC    = 64;
+    final int NC    = 512;
+    final int KC    = 256;
+    final int SMALL = 32 * 32 * 32;
+
+    final ThreadLocal<double[]> packedA = ThreadLocal.withInitial(() -> new double[MC * KC]);
+    final ThreadLocal<double[]> packedB = ThreadLocal.withInitial(() -> new double[KC * NC]);
+
+    public void gemm(int m, int n, int k, double[] a, int aOffset, int aRowStride, int aColStride, double[] b,
+        int bOffset, int bRowStride, int bColStride, double[] c, int cOffset, int ldc, boolean accumulate) {
+        if (m == 0 || n == 0) return;
+        if (!accumulate) for (var i = 0; i < m; i++) Arrays.fill(c, cOffset + i * ldc, cOffset + i * ldc + n, 0.0);
+        if (k == 0) return;
+        if ((long) m * n * k <= SMALL) {
+            naive(0, m, 0, n, k, a, aOffset, aRowStride, aColStride, b, bOffset, bRowStride, bColStride, c, cOffset,
+                ldc);
+            return;
+        }
+        if (m < MR) {
+            Parallel.forRange((n + NR - 1) / NR, 1, (from, to) -> naive(0, m, from * NR, Math.min(n, to * NR), k, a,
+                aOffset, aRowStride, aColStride, b, bOffset, bRowStride, bColStride, c, cOffset, ldc));
+            return;
+        }
+        val mTiles = (m + MC - 1) / MC;
+        val parallelism = ExecutionContext.getDefault().parallelism;
+        val nTarget = Math.max(1, (parallelism + mTiles - 1) / mTiles);
+        val nc = Math.min(NC, roundUp((n + nTarget - 1) / nTarget, NR));
+        val nTiles = (n + nc - 1) / nc;
+        Parallel.forRange(mTiles * nTiles, 1, (from, to) -> {
+            for (var tile = from; tile < to; tile++) {
+                val ic = tile / nTiles * MC;
+                val jc = tile % nTiles * nc;
+                val mb = Math.min(MC, m - ic);
+                val nb = Math.min(nc, n - jc);
+                val pa = packedA.get();
+                val pb = packedB.get();
+                for (var pc = 0; pc < k; pc += KC) {
+                    val kb = Math.min(KC, k - pc);
+                    packA(mb, kb, a, aOffset + ic * aRowStride + pc * aColStride, aRowStride, aColStride, pa);
+                    packB(kb, nb, b, bOffset + pc * bRowStride + jc * bColStride, bRowStride, bColStride, pb);
+                    for (var jr = 0; jr < nb; jr += NR) {
+                        for (var ir = 0; ir < mb; ir += MR) {
+                            kernel(kb, pa, ir * kb, pb, jr * kb, c, cOffset + (ic + ir) * ldc + jc + jr, ldc,
+                                Math.min(MR, mb - ir), Math.min(NR, nb - jr));
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private void packA(int mb, int kb, double[] a, int offset, int rowStride, int colStride, double[] packed) {
+        var dst = 0;
+        for (var ir = 0; ir < mb; ir += MR) {
+            val rows = Math.min(MR, mb - ir);
+            for (var p = 0; p < kb; p++) {
+                val src = offset + ir * rowStride + p * colStride;
+                for (var r = 0; r < MR; r++) packed[dst++] = r < rows ? a[src + r * rowStride] : 0.0;
+            }
+        }
+    }
+
+    private void packB(int kb, int nb, double[] b, int offset, int rowStride, int colStride, double[] packed) {
+        var dst = 0;
+        for (var jr = 0; jr < nb; jr += NR) {
+            val cols = Math.min(NR, nb - jr);
+            for (var p = 0; p < kb; p++) {
+                val src = offset + p * rowStride + jr * colStride;
+                for (var r = 0; r < NR; r++) packed[dst++] = r < cols ? b[src + r * colStride] : 0.0;
+            }
+        }
+    }
+
+    private void kernel(int kb, double[] a, int ai, double[] b, int bi, double[] c, int ci, int ldc, int rows,
+        int cols) {
+        double c00 = 0, c01 = 0, c02 = 0, c03 = 0;
+        double c10 = 0, c11 = 0, c12 = 0, c13 = 0;
+        double c20 = 0, c21 = 0, c22 = 0, c23 = 0;
+        double c30 = 0, c31 = 0, c32 = 0, c33 = 0;
+        for (var p = 0; p < kb; p++, ai += MR, bi += NR) {
+            double a0 = a[ai], a1 = a[ai + 1], a2 = a[ai + 2], a3 = a[ai + 3];
+            double b0 = b[bi], b1 = b[bi + 1], b2 = b[bi + 2], b3 = b[bi + 3];
+            c00 += a0 * b0;
+            c01 += a0 * b1;
+            c02 += a0 * b2;
+            c03 += a0 * b3;
+            c10 += a1 * b0;
+            c11 += a1 * b1;
+            c12 += a1 * b2;
+            c13 += a1 * b3;
+            c20 += a2 * b0;
+            c21 += a2 * b1;
+            c22 += a2 * b2;
+            c23 += a2 * b3;
+            c30 += a3 * b0;
+            c31 += a3 * b1;
+            c32 += a3 * b2;
+            c33 += a3 * b3;
+        }
+        store(c, ci, cols, c00, c01, c02, c03);
+        if (rows > 1) store(c, ci + ldc, cols, c10, c11, c12, c13);
+        if (rows > 2) store(c, ci + 2 * ldc, cols, c20, c21, c22, c23);
+        if (rows > 3) store(c, ci + 3 * ldc, cols, c30, c31, c32, c33);
+    }
+
+    private void store(double[] c, int ci, int cols, double v0, double v1, double v2, double v3) {
+        c[ci] += v0;
+        if (cols > 1) c[ci + 1] += v1;
+        if (cols > 2) c[ci + 2] += v2;
+        if (cols > 3) c[ci + 3] += v3;
+    }
+
+    private void naive(int i0, int i1, int j0, int j1, int k, double[] a, int aOffset, int aRowStride,
+        int aColStride, double[] b, int bOffset, int bRowStride, int bColStride, double[] c, int cOffset, int ldc) {
+        for (var i = i0; i < i1; i++) {
+            val ci = cOffset + i * ldc;
+            for (var p = 0; p < k; p++) {
+                val aip = a[aOffset + i * aRowStride + p * aColStride];
+                if (aip == 0.0) continue;
+                val bp = bOffset + p * bRowStride;
+                for (var j = j0; j < j1; j++) c[ci + j] += aip * b[bp + j * bColStride];
+            }
+        }
+    }
+
+    private int roundUp(int value, int multiple) { return (value + multiple - 1) / multiple * multiple; }
+}
@@ -0,0 +1,53 @@
+package hy.util;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class HeapStorage implements Storage {
+
+    double[] data;
+
+    public HeapStorage(int length) { this.data = new double[length]; }
+
+    public HeapStorage(@NonNull double[] data) { this.data = data; }
+
+    public double[] array() { return data; }
+
+    @Override
+    public int length() { return data.length; }
+
+    @Override
+    public double get(int index) { return data[index]; }
+
+    @Override
+    public void set(int index, double value) { data[index] = value; }
+
+    @Override
+    public boolean isDirect() { return false; }
+
+    @Override
+    public DoubleBuffer buffer(int index, int length) { return DoubleBuffer.wrap(data, index, length).slice(); }
+
+    @Override
+    public void fill(int from, int to, double value) { Arrays.fill(data, from, to, value); }
+
+    @Override
+    public void put(int index, double[] src, int offset, int length) {
+        System.arraycopy(src, offset, data, index, length);
+    }
+
+    @Override
+    public void put(int index, DoubleBuffer src, int length) { src.get(data, index, length); }
+
+    @Override
+    public void put(int index, Storage src, int srcIndex, int length) {
+        if (src instanceof HeapStorage) System.arraycopy(((HeapStorage) src).data, srcIndex, data, index, length);
+        else src.buffer(srcIndex, length).get(data, index, length);
+    }
+
+}
@@ -0,0 +1,430 @@
+package hy.util;
+
+import java.util.Arrays;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Im2Col {
+
+    final int LIMIT = 1 << 20;
+
+    final ThreadLocal<double[]> patches   = new ThreadLocal<>();
+    final ThreadLocal<double[]> gradients = new ThreadLocal<>();
+    final ThreadLocal<double[]> grids     = new ThreadLocal<>();
+
+    public NArray forward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray bias, int strideX,
+        int strideY, int paddingX, int paddingY) {
+        val g = Geometry.of(input, weights, strideX, strideY, paddingX, paddingY);
+        val in = input.contiguous().onHeap();
+        val w = weights.contiguous().onHeap();
+        val result = new NArray(g.outShape(input));
+        val out = result.heapContiguous() ? result.heapArray() : new double[result.size];
+        val outBase = result.heapContiguous() ? result.offset : 0;
+        val span = g.span();
+        val col = g.pointwise ? null : borrow(patches, g.rows * span);
+        try {
+            for (var n = 0; n < g.batch; n++) {
+                val inBase = in.offset + n * g.inVolume, outOffset = outBase + n * g.outVolume;
+                for (var k = 0; k < g.filters; k++)
+                    Arrays.fill(out, outOffset + k * g.outPlane, outOffset + (k + 1) * g.outPlane, bias.get(k));
+                for (var p0 = 0; p0 < g.outPlane; p0 += span) {
+                    val width = Math.min(span, g.outPlane - p0);
+                    if (g.pointwise) Gemm.gemm(g.filters, width, g.rows, w.heapArray(), w.offset, g.rows, 1,
+                        in.heapArray(), inBase + p0, g.inPlane, 1, out, outOffset + p0, g.outPlane, true);
+                    else {
+                        im2col(g, in.heapArray(), inBase, p0, width, col);
+                        Gemm.gemm(g.filters, width, g.rows, w.heapArray(), w.offset, g.rows, 1, col, 0, width, 1, out,
+                            outOffset + p0, g.outPlane, true);
+                    }
+                }
+            }
+        } finally {
+            release(patches, col);
+        }
+        if (!result.heapContiguous()) result.storage.put(0, out, 0, result.size);
+        return result;
+    }
+
+    public NArray backward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray delta, @NonNull NArray dW,
+        @NonNull NArray db, int strideX, int strideY, int paddingX, int paddingY) {
+        val g = Geometry.of(input, weights, strideX, strideY, paddingX, paddingY);
+        if (delta.size != g.batch * g.outVolume) throw new IllegalArgumentException("Expected a delta of shape "
+                + Arrays.toString(g.outShape(input)) + ". Got " + Arrays.toString(delta.shape));
+        val in = input.contiguous().onHeap();
+        val w = weights.contiguous().onHeap();
+        val d = delta.contiguous().onHeap();
+        val gradW = accumulator(dW);
+        val gradB = accumulator(db);
+        val result = new NArray(input.shape);
+        val dX = result.heapContiguous() ? result.heapArray() : new double[result.size];
+        val dXBase = result.heapContiguous() ? result.offset : 0;
+        val span = g.span();
+        val col = g.pointwise ? null : borrow(patches, g.rows * span);
+        val dCol = g.pointwise ? null : borrow(gradients, g.rows * span);
+        try {
+            for (var n = 0; n < g.batch; n++) {
+                val inBase = in.offset + n * g.inVolume, dXOffset = dXBase + n * g.inVolume;
+                val dBase = d.offset + n * g.outVolume;
+                for (var k = 0; k < g.filters; k++) {
+                    val row = dBase + k * g.outPlane;
+                    val sum = VectorOps.INSTANCE.sum(d.heapArray(), row, g.outPlane);
+                    gradB.heapArray()[gradB.offset + k] += sum;
+                }
+                for (var p0 = 0; p0 < g.outPlane; p0 += span) {
+                    val width = Math.min(span, g.outPlane - p0);
+                    if (g.pointwise) {
+                        Gemm.gemm(g.filters, g.rows, width, d.heapArray(), dBase + p0, g.outPlane, 1, in.heapArray(),
+                            inBase + p0, 1, g.inPlane, gradW.heapArray(), gradW.offset, g.rows, true);
+                        Gemm.gemm(g.rows, width, g.filters, w.heapArray(), w.offset, 1, g.rows, d.heapArray(),
+                            dBase + p0, g.outPlane, 1, dX, dXOffset + p0, g.inPlane, true);
+                    } else {
+                        im2col(g, in.heapArray(), inBase, p0, width, col);
+                        Gemm.gemm(g.filters, g.rows, width, d.heapArray(), dBase + p0, g.outPlane, 1, col, 0, 1, width,
+                            gradW.heapArray(), gradW.offset, g.rows, true);
+                        Gemm.gemm(g.rows, width, g.filters, w.heapArray(), w.offset, 1, g.rows, d.heapArray(),
+                            dBase + p0, g.outPlane, 1, dCol, 0, width, false);
+                        col2im(g, dCol, p0, width, dX, dXOffset);
+                    }
+                }
+            }
+        } finally {
+            release(patches, col);
+            release(gradients, dCol);
+        }
+        if (gradW != dW) dW.addInPlace(gradW);
+        if (gradB != db) db.addInPlace(gradB);
+        if (!result.heapContiguous()) result.storage.put(0, dX, 0, result.size);
+        return result;
+    }
+
+    public NArray transposedForward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray bias, int stride,
+        int trim) {
+        return transposedForward(new Transposed(input, weights, 1, stride, 0, trim), input, weights, bias);
+    }
+
+    public NArray transposedForward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray bias,
+        int strideX, int strideY, int trimX, int trimY) {
+        val t = new Transposed(input, weights, strideX, strideY, trimX, trimY);
+        return transposedForward(t, input, weights, bias);
+    }
+
+    public NArray transposedBackward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray delta,
+        @NonNull NArray dW, @NonNull NArray db, int stride, int trim) {
+        val t = new Transposed(input, weights, 1, stride, 0, trim);
+        return transposedBackward(t, input, weights, delta, dW, db);
+    }
+
+    public NArray transposedBackward(@NonNull NArray input, @NonNull NArray weights, @NonNull NArray delta,
+        @NonNull NArray dW, @NonNull NArray db, int strideX, int strideY, int trimX, int trimY) {
+        val t = new Transposed(input, weights, strideX, strideY, trimX, trimY);
+        return transposedBackward(t, input, weights, delta, dW, db);
+    }
+
+    private NArray transposedForward(Transposed t, NArray input, NArray weights, NArray bias) {
+        val g = t.grid;
+        val in = input.contiguous().onHeap();
+        val w = t.pack(weights.contiguous().onHeap());
+        val result = new NArray(t.outShape(input));
+        val out = result.heapContiguous() ? result.heapArray() : new double[result.size];
+        val outBase = result.heapContiguous() ? result.offset : 0;
+        val span = g.span();
+        val col = g.pointwise ? null : borrow(patches, g.rows * span);
+        val grid = t.upsampled() ? borrow(grids, g.inVolume) : null;
+        try {
+            for (var n = 0; n < g.batch; n++) {
+                val inBase = in.offset + n * g.outVolume, outOffset = outBase + n * t.outVolume;
+                val target = grid == null ? out : grid;
+                val targetBase = grid == null ? outOffset : 0;
+                for (var k = 0; k < g.channels; k++) Arrays.fill(target, targetBase + k * g.inPlane,
+                    targetBase + (k + 1) * g.inPlane, grid == null ? bias.get(k) : 0.0);
+                for (var p0 = 0; p0 < g.outPlane; p0 += span) {
+                    val width = Math.min(span, g.outPlane - p0);
+                    if (g.pointwise) Gemm.gemm(g.rows, width, g.filters, w, 0, g.filters, 1, in.heapArray(),
+                        inBase + p0, g.outPlane, 1, target, targetBase + p0, g.inPlane, true);
+                    else {
+                        Gemm.gemm(g.rows, width, g.filters, w, 0, g.filters, 1, in.heapArray(), inBase + p0,
+                            g.outPlane, 1, col, 0, width, false);
+                        col2im(g, col, p0, width, target, targetBase);
+                    }
+                }
+                if (grid != null) t.expand(grid, bias, out, outOffset);
+            }
+        } finally {
+            release(patches, col);
+            release(grids, grid);
+        }
+        if (!result.heapContiguous()) result.storage.put(0, out, 0, result.size);
+        return result;
+    }
+
+    private NArray transposedBackward(Transposed t, NArray input, NArray weights, NArray delta, NArray dW,
+        NArray db) {
+        val g = t.grid;
+        if (delta.size != g.batch * t.outVolume) throw new IllegalArgumentException("Expected a delta of shape "
+                + Arrays.toString(t.outShape(input)) + ". Got " + Arrays.toString(delta.shape));
+        val in = input.contiguous().onHeap();
+        val w = t.pack(weights.contiguous().onHeap());
+        val d = delta.contiguous().onHeap();
+        val gradW = new double[w.length];
+        val gradB = accumulator(db);
+        val result = new NArray(input.shape);
+        val dX = result.heapContiguous() ? result.heapArray() : new double[result.size];
+        val dXBase = result.heapContiguous() ? result.offset : 0;
+        val span = g.span();
+        val col = g.pointwise ? null : borrow(patches, g.rows * span);
+        val grid = t.upsampled() ? borrow(grids, g.inVolume) : null;
+        try {
+            for (var n = 0; n < g.batch; n++) {
+                val inBase = in.offset + n * g.outVolume, dXOffset = dXBase + n * g.outVolume;
+                val dBase = d.offset + n * t.outVolume;
+                for (var k = 0; k < g.channels; k++) {
+                    val sum = VectorOps.INSTANCE.sum(d.heapArray(), dBase + k * t.outPlane, t.outPlane);
+                    gradB.heapArray()[gradB.offset + k] += sum;
+                }
+                if (grid != null)
+                    pool(d.heapArray(), dBase, g.channels, t.outWidth, t.outHeight, t.strideX, t.strideY, grid, 0);
+                val source = grid == null ? d.heapArray() : grid;
+                val sourceBase = grid == null ? dBase : 0;
+                for (var p0 = 0; p0 < g.outPlane; p0 += span) {
+                    val width = Math.min(span, g.outPlane - p0);
+                    if (g.pointwise) {
+                        Gemm.gemm(g.filters, width, g.rows, w, 0, 1, g.filters, source, sourceBase + p0, g.inPlane, 1,
+                            dX, dXOffset + p0, g.outPlane, true);
+                        Gemm.gemm(g.rows, g.filters, width, source, sourceBase + p0, g.inPlane, 1, in.heapArray(),
+                            inBase + p0, 1, g.outPlane, gradW, 0, g.filters, true);
+                    } else {
+                        im2col(g, source, sourceBase, p0, width, col);
+                        Gemm.gemm(g.filters, width, g.rows, w, 0, 1, g.filters, col, 0, width, 1, dX, dXOffset + p0,
+                            g.outPlane, true);
+                        Gemm.gemm(g.rows, g.filters, width, col, 0, width, 1, in.heapArray(), inBase + p0, 1,
+                            g.outPlane, gradW, 0, g.filters, true);
+                    }
+                }
+            }
+        } finally {
+            release(patches, col);
+            release(grids, grid);
+        }
+        dW.addInPlace(new NArray(StorageType.HEAP, Precision.DOUBLE, dW.shape).fill(t.unpack(gradW)));
+        if (gradB != db) db.addInPlace(gradB);
+        if (!result.heapContiguous()) result.storage.put(0, dX, 0, result.size);
+        return result;
+    }
+
+    void pool(double[] d, int offset, int planes, int width, int height, int strideX, int strideY, double[] out,
+        int at) {
+        val pooledWidth = (width + strideX - 1) / strideX, pooledHeight = (height + strideY - 1) / strideY;
+        Parallel.forRange(planes * pooledWidth, Math.max(1, Parallel.grain() / (strideX * height)), (from, to) -> {
+            for (var row = from; row < to; row++) {
+                val target = at + row * pooledHeight, i = row % pooledWidth;
+                val source = offset + row / pooledWidth * width * height;
+                Arrays.fill(out, target, target + pooledHeight, 0.0);
+                for (var x = i * strideX; x < Math.min(width, (i + 1) * strideX); x++) {
+                    val line = source + x * height;
+                    for (var y = 0; y < height; y++) out[target + y / strideY] += d[line + y];
+                }
+            }
+        });
+    }
+
+    private void im2col(Geometry g, double[] in, int inBase, int p0, int width, double[] col) {
+        Parallel.forRange(g.rows, Math.max(1, Parallel.grain() / width), (from, to) -> {
+            for (var row = from; row < to; row++) {
+                val plane = inBase + row / g.winVolume * g.inPlane;
+                val rx = row / g.winHeight % g.winWidth, ry = row % g.winHeight;
+                var dst = row * width;
+                for (var p = p0; p < p0 + width;) {
+                    val ox = p / g.outHeight, start = p % g.outHeight;
+                    val end = Math.min(g.outHeight, start + p0 + width - p);
+                    val x = ox * g.strideX - g.paddingX + rx;
+                    if (x < 0 || x >= g.inWidth) Arrays.fill(col, dst, dst + end - start, 0.0);
+                    else {
+                        val line = plane + x * g.inHeight;
+                        for (var oy = start; oy < end; oy++) {
+                            val y = oy * g.strideY - g.paddingY + ry;
+                            col[dst + oy - start] = y >= 0 && y < g.inHeight ? in[line + y] : 0.0;
+                        }
+                    }
+                    dst += end - start;
+                    p += end - start;
+                }
+            }
+        });
+    }
+
+    private void col2im(Geometry g, double[] dCol, int p0, int width, double[] dX, int dXBase) {
+        Parallel.forRange(g.channels, Math.max(1, Parallel.grain() / (g.winVolume * width)), (from, to) -> {
+            for (var c = from; c < to; c++) {
+                val plane = dXBase + c * g.inPlane;
+                for (var r = 0; r < g.winVolume; r++) {
+                    val rx = r / g.winHeight, ry = r % g.winHeight;
+                    var src = (c * g.winVolume + r) * width;
+                    for (var p = p0; p < p0 + width;) {
+                        val ox = p / g.outHeight, start = p % g.outHeight;
+                        val end = Math.min(g.outHeight, start + p0 + width - p);
+                        val x = ox * g.strideX - g.paddingX + rx;
+                        if (x >= 0 && x < g.inWidth) {
+                            val line = plane + x * g.inHeight;
+                            for (var oy = start; oy < end; oy++) {
+                                val y = oy * g.strideY - g.paddingY + ry;
+                                if (y >= 0 && y < g.inHeight) dX[line + y] += dCol[src + oy - start];
+                            }
+                        }
+                        src += end - start;
+                        p += end - start;
+                    }
+                }
+            }
+        });
+    }
+
+    private NArray accumulator(NArray gradient) {
+        return gradient.heapContiguous() ? gradient : new NArray(StorageType.HEAP, Precision.DOUBLE, gradient.shape);
+    }
+
+    double[] borrow(ThreadLocal<double[]> pool, int length) {
+        val buffer = pool.get();
+        if (buffer == null || buffer.length < length) return new double[length];
+        pool.set(null);
+        return buffer;
+    }
+
+    void release(ThreadLocal<double[]> pool, double[] buffer) {
+        if (buffer == null) return;
+        val current = pool.get();
+        if (current == null || current.length < buffer.length) pool.set(buffer);
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Geometry {
+
+        int     batch, channels, inWidth, inHeight, inPlane, inVolume;
+        int     filters, winWidth, winHeight, winVolume, rows;
+        int     strideX, strideY, paddingX, paddingY;
+        int     outWidth, outHeight, outPlane, outVolume;
+        boolean pointwise;
+
+        Geometry(int batch, int channels, int inWidth, int inHeight, int filters, int winWidth, int winHeight,
+            int strideX, int strideY, int paddingX, int paddingY, int outWidth, int outHeight) {
+            this.batch = batch;
+            this.channels = channels;
+            this.inWidth = inWidth;
+            this.inHeight = inHeight;
+            this.filters = filters;
+            this.winWidth = winWidth;
+            this.winHeight = winHeight;
+            this.strideX = strideX;
+            this.strideY = strideY;
+            this.paddingX = paddingX;
+            this.paddingY = paddingY;
+            this.outWidth = outWidth;
+            this.outHeight = outHeight;
+            inPlane = inWidth * inHeight;
+            inVolume = channels * inPlane;
+            winVolume = winWidth * winHeight;
+            rows = channels * winVolume;
+            outPlane = outWidth * outHeight;
+            outVolume = filters * outPlane;
+            pointwise = winVolume == 1 && strideX == 1 && strideY == 1 && paddingX == 0 && paddingY == 0;
+        }
+
+        static Geometry of(NArray input, NArray weights, int strideX, int strideY, int paddingX, int paddingY) {
+            val dims = input.dims;
+            if (dims < 3 || weights.dims != 4) throw new IllegalArgumentException("Expected an input of atleast 3 "
+                    + "dimensions and 4D weights. Got " + dims + " and " + weights.dims);
+            val channels = input.shape[dims - 3], inWidth = input.shape[dims - 2], inHeight = input.shape[dims - 1];
+            if (weights.shape[1] != channels) throw new IllegalArgumentException(
+                    "Expected " + weights.shape[1] + " input channels. Got " + channels);
+            val winWidth = weights.shape[2], winHeight = weights.shape[3];
+            return new Geometry(input.size / (channels * inWidth * inHeight), channels, inWidth, inHeight,
+                    weights.shape[0], winWidth, winHeight, strideX, strideY, paddingX, paddingY,
+                    (inWidth - winWidth + 2 * paddingX) / strideX + 1,
+                    (inHeight - winHeight + 2 * paddingY) / strideY + 1);
+        }
+
+        int span() { return Math.max(1, Math.min(outPlane, LIMIT / rows)); }
+
+        int[] outShape(NArray input) {
+            val shape = input.getShape();
+            shape[input.dims - 3] = filters;
+            shape[input.dims - 2] = outWidth;
+            shape[input.dims - 1] = outHeight;
+            return shape;
+        }
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Transposed {
+
+        Geometry grid;
+        int      spatial, strideX, strideY, outWidth, outHeight, outPlane, outVolume;
+
+        Transposed(NArray input, NArray weights, int strideX, int strideY, int trimX, int trimY) {
+            val dims = input.dims;
+            spatial = weights.dims == 4 ? 2 : 1;
+            if (dims < spatial + 1 || weights.dims != spatial + 2) throw new IllegalArgumentException(
+                    "Expected an input of atleast " + (spatial + 1) + " dimensions and " + (spatial + 2)
+                            + "D weights. Got " + dims + " and " + weights.dims);
+            val channels = input.shape[dims - spatial - 1];
+            if (weights.shape[1] != channels) throw new IllegalArgumentException(
+                    "Expected " + weights.shape[1] + " input channels. Got " + channels);
+            val filters = weights.shape[0];
+            val inWidth = spatial == 2 ? input.shape[dims - 2] : 1, inHeight = input.shape[dims - 1];
+            val winWidth = spatial == 2 ? weights.shape[2] : 1, winHeight = weights.shape[weights.dims - 1];
+            this.strideX = strideX;
+            this.strideY = strideY;
+            outWidth = (inWidth - 1) * strideX + winWidth - 2 * trimX;
+            outHeight = (inHeight - 1) * strideY + winHeight - 2 * trimY;
+            outPlane = outWidth * outHeight;
+            outVolume = filters * outPlane;
+            grid = new Geometry(input.size / (channels * inWidth * inHeight), filters,
+                    (outWidth + strideX - 1) / strideX, (outHeight + strideY - 1) / strideY, channels, winWidth,
+                    winHeight, 1, 1, trimX, trimY, inWidth, inHeight);
+        }
+
+        boolean upsampled() { return strideX > 1 || strideY > 1; }
+
+        double[] pack(NArray weights) {
+            val w = weights.heapArray();
+            val packed = new double[grid.rows * grid.filters];
+            for (var k = 0; k < grid.channels; k++) for (var c = 0; c < grid.filters; c++)
+                for (var r = 0; r < grid.winVolume; r++) packed[(k * grid.winVolume + r) * grid.filters + c] =
+                        w[weights.offset + (k * grid.filters + c) * grid.winVolume + r];
+            return packed;
+        }
+
+        double[] unpack(double[] packed) {
+            val w = new double[packed.length];
+            for (var k = 0; k < grid.channels; k++) for (var c = 0; c < grid.filters; c++)
+                for (var r = 0; r < grid.winVolume; r++) w[(k * grid.filters + c) * grid.winVolume + r] =
+                        packed[(k * grid.winVolume + r) * grid.filters + c];
+            return w;
+        }
+
+        void expand(double[] values, NArray bias, double[] out, int at) {
+            Parallel.forRange(grid.channels * outWidth, Math.max(1, Parallel.grain() / outHeight), (from, to) -> {
+                for (var row = from; row < to; row++) {
+                    val k = row / outWidth, x = row % outWidth;
+                    val source = (k * grid.inWidth + x / strideX) * grid.inHeight, target = at + row * outHeight;
+                    val shift = bias.get(k);
+                    for (var y = 0; y < outHeight; y++) out[target + y] = shift + values[source + y / strideY];
+                }
+            });
+        }
+
+        int[] outShape(NArray input) {
+            val shape = input.getShape();
+            val dims = input.dims;
+            shape[dims - spatial - 1] = grid.channels;
+            if (spatial == 2) shape[dims - 2] = outWidth;
+            shape[dims - 1] = outHeight;
+            return shape;
+        }
+    }
+}
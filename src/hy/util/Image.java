@@ -24,10 +24,12 @@ public class Image {
                 .toArray(String[]::new);
     }
 
+    public NArray read(String path, int width, int height) { return read(path, width, height, Precision.getDefault()); }
+
     @SneakyThrows
-    public NArray read(String path, int width, int height) {
+    public NArray read(String path, int width, int height, Precision precision) {
         val bimg = resize(ImageIO.read(new File(path)), width, height);
-        val aimg = new NArray(3, width, height);
+        val aimg = new NArray(StorageType.getDefault(), precision, 3, width, height);
         for (int i = 0; i < width; i++) {
             for (int j = 0; j < height; j++) {
                 val rgb = new Color(bimg.getRGB(i, j));
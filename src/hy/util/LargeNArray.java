@@ -0,0 +1,256 @@
+package hy.util;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.NonFinal;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class LargeNArray implements AutoCloseable {
+
+    public static final int MAX_SEGMENT = 1 << 27;
+
+    public long             size;
+    public int              dims;
+
+    long[]                  shape;
+    long[]                  blockSize;
+    Precision               precision;
+    int                     segmentLength;
+    Storage[]               segments;
+    ByteBuffer[]            direct;
+    boolean[]               shared;
+    @NonFinal boolean       closed;
+
+    public LargeNArray(@NonNull long... shape) { this(StorageType.getDefault(), Precision.getDefault(), shape); }
+
+    public LargeNArray(@NonNull StorageType type, @NonNull Precision precision, @NonNull long... shape) {
+        if (shape.length == 0) throw new IllegalArgumentException("Shape must have at least one dimension");
+        this.shape = shape.clone();
+        this.dims = shape.length;
+        this.blockSize = new long[dims];
+        var size = 1L;
+        for (var i = dims - 1; i >= 0; i--) {
+            if (shape[i] < 1) throw new IllegalArgumentException(
+                    "Illegal shape. Wrong cardinality provided { < 1 }. " + Arrays.toString(shape));
+            blockSize[i] = size;
+            size = Math.multiplyExact(size, shape[i]);
+        }
+        this.size = size;
+        this.precision = precision;
+        val row = dims > 1 ? blockSize[0] : 1L;
+        val aligned = row <= MAX_SEGMENT ? MAX_SEGMENT / row * row : MAX_SEGMENT;
+        this.segmentLength = (int) Math.min(size, aligned);
+        val count = (int) ((size + segmentLength - 1) / segmentLength);
+        this.segments = new Storage[count];
+        this.direct = type == StorageType.DIRECT ? new ByteBuffer[count] : null;
+        this.shared = type == StorageType.DIRECT ? new boolean[count] : null;
+        for (var s = 0; s < count; s++) {
+            val length = (int) Math.min(segmentLength, size - (long) s * segmentLength);
+            segments[s] = allocate(s, length, type);
+        }
+    }
+
+    public static LargeNArray of(@NonNull NArray array) {
+        val shape = new long[array.dims];
+        for (var i = 0; i < array.dims; i++) shape[i] = array.shape[i];
+        return new LargeNArray(StorageType.of(array.storage), array.precision(), shape).copy(0, array);
+    }
+
+    public long[] getShape() { return shape.clone(); }
+
+    public long dim(int index) { return shape[index]; }
+
+    public Precision precision() { return precision; }
+
+    public int segmentCount() { return segments.length; }
+
+    public boolean isClosed() { return closed; }
+
+    public long indexOf(@NonNull long... coords) {
+        if (coords.length != dims) throw new IllegalArgumentException(
+                "Expected " + dims + " coordinates. Found " + Arrays.toString(coords));
+        var index = 0L;
+        for (var i = 0; i < dims; i++) index += checkIndex(coords[i], shape[i]) * blockSize[i];
+        return index;
+    }
+
+    public long[] coordinatesOf(long index) {
+        checkIndex(index, size);
+        val coords = new long[dims];
+        for (var i = 0; i < dims; i++) {
+            coords[i] = index / blockSize[i];
+            index %= blockSize[i];
+        }
+        return coords;
+    }
+
+    public double get(long index) {
+        checkIndex(index, size);
+        return segment(index / segmentLength).get((int) (index % segmentLength));
+    }
+
+    public double get(@NonNull long... coords) { return get(indexOf(coords)); }
+
+    public LargeNArray set(long index, double value) {
+        checkIndex(index, size);
+        segment(index / segmentLength).set((int) (index % segmentLength), value);
+        return this;
+    }
+
+    public LargeNArray fill(double value) {
+        for (var s = 0; s < segments.length; s++) segment(s).fill(0, segmentSize(s), value);
+        return this;
+    }
+
+    public LargeNArray update(@NonNull DoubleUnaryOperator op) {
+        for (var s = 0; s < segments.length; s++) view(s, 0, segmentSize(s)).update(op);
+        return this;
+    }
+
+    public double sum() {
+        var sum = 0.0;
+        var compensation = 0.0;
+        for (var s = 0; s < segments.length; s++) {
+            val value = Reduction.sum(view(s, 0, segmentSize(s)));
+            val t = sum + value;
+            compensation += Math.abs(sum) >= Math.abs(value) ? (sum - t) + value : (value - t) + sum;
+            sum = t;
+        }
+        return sum + compensation;
+    }
+
+    public NArray rows(long from, int count) {
+        val rowShape = rowShape(count);
+        val length = Math.multiplyExact(count, (int) rowLength());
+        val start = checkRange(from, count, shape[0]) * rowLength();
+        val s = (int) (start / segmentLength);
+        val offset = (int) (start % segmentLength);
+        if (offset + length <= segmentSize(s)) {
+            val view = new NArray(segment(s), offset, rowShape, null);
+            if (shared != null) shared[s] = true;
+            return view;
+        }
+        val rows = new NArray(StorageType.of(segments[s]), precision, rowShape);
+        transfer(start, rows.storage, rows.offset, length, true);
+        return rows;
+    }
+
+    public LargeNArray copy(long from, @NonNull NArray rows) {
+        if (!rows.contiguous) rows = rows.contiguous();
+        val start = checkRange(from * rowLength(), rows.size, size);
+        transfer(start, rows.storage, rows.offset, rows.size, false);
+        return this;
+    }
+
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        Arrays.fill(segments, null);
+        if (direct != null) for (var s = 0; s < direct.length; s++) {
+            if (!shared[s]) Buffers.free(direct[s]);
+            direct[s] = null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "LargeNArray(shape=" + Arrays.toString(shape) + ", precision=" + precision + ", segments="
+                + segments.length + (closed ? ", closed" : "") + ")";
+    }
+
+    private Storage allocate(int s, int length, StorageType type) {
+        if (type != StorageType.DIRECT) return StorageType.HEAP.create(length, precision);
+        val buffer = ByteBuffer.allocateDirect(Math.multiplyExact(length, precision.bytes))
+                .order(ByteOrder.nativeOrder());
+        direct[s] = buffer;
+        return precision == Precision.FLOAT ? new FloatBufferStorage(buffer.asFloatBuffer())
+                : new BufferStorage(buffer.asDoubleBuffer());
+    }
+
+    private Storage segment(long s) {
+        if (closed) throw new IllegalStateException("LargeNArray has been closed");
+        return segments[(int) s];
+    }
+
+    private int segmentSize(int s) { return (int) Math.min(segmentLength, size - (long) s * segmentLength); }
+
+    private NArray view(int s, int offset, int length) {
+        return new NArray(segment(s), offset, new int[] { length }, null);
+    }
+
+    private static long checkIndex(long index, long length) {
+        if (index < 0 || index >= length) throw new IndexOutOfBoundsException(
+                "Index " + index + " out of bounds for length " + length);
+        return index;
+    }
+
+    private static long checkRange(long from, long count, long length) {
+        if (from < 0 || count < 0 || from > length - count) throw new IndexOutOfBoundsException(
+                "Range [" + from + ", " + from + " + " + count + ") out of bounds for length " + length);
+        return from;
+    }
+
+    private long rowLength() { return dims > 1 ? blockSize[0] : 1L; }
+
+    private int[] rowShape(int count) {
+        val rowShape = new int[dims];
+        rowShape[0] = count;
+        for (var i = 1; i < dims; i++) rowShape[i] = Math.toIntExact(shape[i]);
+        return rowShape;
+    }
+
+    private void transfer(long start, Storage storage, int offset, int length, boolean read) {
+        var done = 0;
+        while (done < length) {
+            val index = start + done;
+            val s = (int) (index / segmentLength);
+            val at = (int) (index % segmentLength);
+            val n = Math.min(length - done, segmentSize(s) - at);
+            if (read) storage.put(offset + done, segment(s), at, n);
+            else segment(s).put(at, storage, offset + done, n);
+            done += n;
+        }
+    }
+
+    private static class Buffers {
+
+        private static final Object UNSAFE;
+        private static final Method INVOKE_CLEANER;
+
+        static {
+            Object unsafe = null;
+            Method invokeCleaner = null;
+            try {
+                val type = Class.forName("sun.misc.Unsafe");
+                val field = type.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                unsafe = field.get(null);
+                invokeCleaner = type.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                unsafe = null;
+                invokeCleaner = null;
+            }
+            UNSAFE = unsafe;
+            INVOKE_CLEANER = invokeCleaner;
+        }
+
+        static void free(ByteBuffer buffer) {
+            if (buffer == null || INVOKE_CLEANER == null) return;
+            try {
+                INVOKE_CLEANER.invoke(UNSAFE, buffer);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                return;
+            }
+        }
+    }
+}
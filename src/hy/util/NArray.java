@@ -4,12 +4,11 @@ import static java.lang.System.*;
 import static java.lang.Math.*;
 import static io.vavr.API.*;
 
-import java.nio.ByteBuffer;
 import java.nio.DoubleBuffer;
+import java.nio.FloatBuffer;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Objects;
-import java.util.Random;
 import java.util.function.DoubleBinaryOperator;
 import java.util.function.DoubleUnaryOperator;
 import java.util.function.Function;
@@ -19,11 +18,8 @@ import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import io.vavr.Tuple2;
-import io.vavr.collection.Array;
-import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.NonNull;
-import lombok.Value;
 import lombok.val;
 import lombok.var;
 import lombok.experimental.FieldDefaults;
@@ -31,15 +27,16 @@ import lombok.experimental.FieldDefaults;
 @FieldDefaults(makeFinal = true)
 public class NArray implements Cloneable, Iterable<Double> {
 
-    static Random rand = new Random();
-
     public int    size;
     public int    dims;
     public int    shapeSum;
 
-    DoubleBuffer  buffer;
+    Storage       storage;
+    int           offset;
     int[]         shape;
+    int[]         strides;
     int[]         blockSize;
+    boolean       contiguous;
 
     @Builder
     public NArray(@NonNull int[] shape, @NonNull double... data) {
@@ -47,15 +44,32 @@ public class NArray implements Cloneable, Iterable<Double> {
         fill(data);
     }
 
-    public NArray(int... shape) {
+    public NArray(int... shape) { this(StorageType.getDefault(), shape); }
+
+    public NArray(@NonNull StorageType type, @NonNull int... shape) {
+        this(type.allocate(sizeOf(shape)), 0, shape, null);
+    }
+
+    public NArray(@NonNull StorageType type, @NonNull Precision precision, @NonNull int... shape) {
+        this(type.allocate(sizeOf(shape), precision), 0, shape, null);
+    }
+
+    public NArray(@NonNull Storage storage, @NonNull int... shape) {
+        this(storage, 0, shape, null);
+        if (storage.length() < size) throw new IllegalArgumentException(
+                "Storage of length " + storage.length() + " is too small for shape " + Arrays.toString(shape));
+    }
+
+    NArray(Storage storage, int offset, int[] shape, int[] strides) {
         this.shape = shape.clone();
         this.dims = shape.length;
         this.shapeSum = IntStream.of(shape).sum();
         this.blockSize = new int[dims];
         this.size = initSizes();
-        this.buffer = ByteBuffer//
-                .allocateDirect(Math.multiplyExact(size, Double.BYTES))//
-                .asDoubleBuffer();
+        this.storage = storage;
+        this.offset = offset;
+        this.strides = strides == null ? blockSize : strides;
+        this.contiguous = isContiguous(this.shape, this.strides, blockSize);
     }
 
     private int initSizes() {
@@ -68,15 +82,25 @@ public class NArray implements Cloneable, Iterable<Double> {
         return size;
     }
 
+    private static int sizeOf(int... shape) {
+        var size = 1;
+        for (val card : shape) size = Math.multiplyExact(size, card);
+        return size;
+    }
+
+    private static boolean isContiguous(int[] shape, int[] strides, int[] blockSize) {
+        for (int i = 0; i < shape.length; i++) if (shape[i] > 1 && strides[i] != blockSize[i]) return false;
+        return true;
+    }
+
     public static NArray of(@NonNull NArray... arrays) {
+        if (Stream.of(arrays).allMatch(array -> Arrays.equals(array.shape, arrays[0].shape)))
+            return Stacking.stack(0, arrays);
         val iShape = broadcast(Stream.of(arrays).map(NArray::getShape).toArray(int[][]::new));
         val shape = new int[iShape.length + 1];
         arraycopy(iShape, 0, shape, 1, iShape.length);
         shape[0] = arrays.length;
-        val stack = new NArray(shape).fill(coords -> {
-            val array = arrays[coords[0]];
-            return array[array.clipCoords(coords)];
-        });
+        val stack = new NArray(shape).fill((index, coords) -> arrays[coords[0]].broadcastGet(coords));
         return stack;
     }
 
@@ -123,7 +147,25 @@ public class NArray implements Cloneable, Iterable<Double> {
         return arr;
     }
 
-    public static NArray like(NArray other) { return new NArray(other.shape); }
+    public static NArray like(NArray other) {
+        return new NArray(StorageType.of(other.storage), other.precision(), other.shape);
+    }
+
+    public static NArray wrap(@NonNull double[] data, @NonNull int... shape) {
+        return new NArray(new HeapStorage(data), shape);
+    }
+
+    public static NArray wrap(@NonNull DoubleBuffer data, @NonNull int... shape) {
+        return new NArray(new BufferStorage(data), shape);
+    }
+
+    public static NArray wrap(@NonNull float[] data, @NonNull int... shape) {
+        return new NArray(new FloatStorage(data), shape);
+    }
+
+    public static NArray wrap(@NonNull FloatBuffer data, @NonNull int... shape) {
+        return new NArray(new FloatBufferStorage(data), shape);
+    }
 
     public int indexOf(@NonNull int... coords) {
         val n = coords.length;
@@ -152,144 +194,349 @@ public class NArray implements Cloneable, Iterable<Double> {
         return coordinates;
     }
 
-    public double get(int index) { return buffer[index]; }
+    private int position(int index) {
+        if (contiguous) return offset + index;
+        var position = offset;
+        for (int i = 0; i < dims; i++) {
+            val coord = index / blockSize[i];
+            index -= coord * blockSize[i];
+            position += coord * strides[i];
+        }
+        return position;
+    }
+
+    private int positionOf(int... coords) {
+        val n = coords.length;
+        if (n == 0) throw new IllegalArgumentException();
+        var position = offset;
+        for (int i = 0; i < Math.min(dims, n); i++) position += strides[i] * normCoord(coords[i], shape[i]);
+        return position;
+    }
+
+    public double get(int index) { return storage[position(index)]; }
 
-    public double get(int... coords) { return buffer[indexOf(coords)]; }
+    public double get(int... coords) { return storage[positionOf(coords)]; }
 
     public NArray set(int[] coords, double value) {
-        buffer[indexOf(coords)] = value;
+        storage[positionOf(coords)] = value;
         return this;
     }
 
     public NArray set(int index, double value) {
-        buffer[index] = value;
+        storage[position(index)] = value;
         return this;
     }
 
     public NArray fill(double value) {
-        for (var i = 0; i < size; i++) buffer[i] = value;
+        if (contiguous) storage.fill(offset, offset + size, value);
+        else for (var i = 0; i < size; i++) this[i] = value;
         return this;
     }
 
     public NArray fill(@NonNull double... data) {
         val n = Math.min(size, data.length);
-        buffer.put(data, 0, n);
+        if (contiguous) storage.put(offset, data, 0, n);
+        else for (var i = 0; i < n; i++) this[i] = data[i];
         return this;
     }
 
     public NArray fill(@NonNull DoubleBuffer data) {
-        int p = data.position();
-        int n = Math.min(size, data.limit() - p);
-        for (int i = 0; i < n; i++) buffer[i] = data[p + i];
-        data.position(p + n);
+        val n = Math.min(size, data.remaining());
+        if (contiguous) storage.put(offset, data, n);
+        else for (var i = 0; i < n; i++) this[i] = data.get();
         return this;
     }
 
     public NArray fill(Function<int[], Double> src) {
-        coordinates().parallel().forEach(coords -> this[coords] = src.apply(coords));
+        Parallel.forRange(size, (from, to) -> {
+            val it = new Odometer(shape).seek(from);
+            for (var i = from; i < to; i++, it.next()) this[i] = src.apply(it.coords().clone());
+        });
         return this;
     }
 
-    public NArray copy(@NonNull NArray other) {
-        fill(other.buffer());
+    public NArray fill(@NonNull IndexKernel kernel) {
+        Parallel.forRange(size, (from, to) -> {
+            val it = new Odometer(shape).seek(from);
+            for (var i = from; i < to; i++, it.next()) this[i] = kernel.apply(i, it.coords());
+        });
         return this;
     }
 
-    public NArray update(@NonNull DoubleUnaryOperator op) {
-        IntStream.range(0, size).parallel().forEach(i -> buffer[i] = op.applyAsDouble(buffer[i]));
+    public NArray copy(@NonNull NArray other) {
+        if (other == this) return this;
+        val n = Math.min(size, other.size);
+        if (contiguous && other.contiguous) storage.put(offset, other.storage, other.offset, n);
+        else if (Transpose.supports(other, this)) Transpose.copy(other, this);
+        else Parallel.forRange(n, (from, to) -> {
+            for (var i = from; i < to; i++) this[i] = other[i];
+        });
         return this;
     }
 
-    public NArray randomize() {
-        IntStream.range(0, size).parallel().forEach(i -> buffer[i] = rand.nextGaussian() * sqrt(2.0 / shapeSum));
+    public NArray update(@NonNull DoubleUnaryOperator op) {
+        Parallel.forRange(size, (from, to) -> {
+            for (var i = from; i < to; i++) this[i] = op.applyAsDouble(this[i]);
+        });
         return this;
     }
 
-    public double sum() { return reduce(0, Double::sum); }
+    public NArray randomize() { return randomize(Rng.next()); }
 
-    public double average() { return reduce(0, Double::sum) / size; }
+    public NArray randomize(@NonNull Rng rng) { return rng.fillGaussian(this, 0.0, sqrt(2.0 / shapeSum)); }
 
-    public double max() { return reduce(Double.MIN_VALUE, Math::max); }
+    public double sum() {
+        if (!heapContiguous()) return Reduction.sum(this);
+        return Parallel.reduceRange(size, 0,
+            (from, to) -> VectorOps.INSTANCE.sum(heapArray(), offset + from, to - from), Double::sum);
+    }
 
-    public double min() { return reduce(Double.MAX_VALUE, Math::min); }
+    public double average() { return sum() / size; }
 
-    public int[] argmax() {
-        return coordinatesOf(Array.ofAll(this).zipWithIndex()//
-                .<Double>maxBy(Tuple2::_1)//
-                .get()._2);
+    public double max() {
+        if (!heapContiguous()) return reduce(Double.NEGATIVE_INFINITY, Math::max);
+        return Parallel.reduceRange(size, Double.NEGATIVE_INFINITY,
+            (from, to) -> VectorOps.INSTANCE.max(heapArray(), offset + from, to - from), Math::max);
     }
 
-    public int[] argmin() {
-        return coordinatesOf(Array.ofAll(this).zipWithIndex()//
-                .<Double>minBy(Tuple2::_1)//
-                .get()._2);
+    public double min() {
+        if (!heapContiguous()) return reduce(Double.POSITIVE_INFINITY, Math::min);
+        return Parallel.reduceRange(size, Double.POSITIVE_INFINITY,
+            (from, to) -> VectorOps.INSTANCE.min(heapArray(), offset + from, to - from), Math::min);
     }
 
+    public int[] argmax() { return coordinatesOf(indexOfMax()); }
+
+    public int[] argmin() { return coordinatesOf(indexOfMin()); }
+
+    public int indexOfMax() { return Reduction.indexOfMax(this); }
+
+    public int indexOfMin() { return Reduction.indexOfMin(this); }
+
+    public int[] argmax(int axis) { return Reduction.indexOfMax(this, axis); }
+
+    public int[] argmin(int axis) { return Reduction.indexOfMin(this, axis); }
+
+    public Tuple2<NArray, int[]> topK(int k, int axis) { return Reduction.topK(this, k, axis); }
+
     public NArray negate() { return this.map(x -> -x); }
 
-    public NArray add(NArray arg2) { return this.bimap(Double::sum, arg2); }
+    public NArray add(NArray arg2) {
+        if (!vectorizable(arg2)) return this.bimap(Double::sum, arg2);
+        return vectorized((ops, out, i, n) -> ops.add(heapArray(), offset + i, arg2.heapArray(), arg2.offset + i,
+            out, i, n));
+    }
 
-    public NArray add(double arg2) { return this.bimap(Double::sum, arg2); }
+    public NArray add(double arg2) {
+        if (!vectorizable()) return this.bimap(Double::sum, arg2);
+        return vectorized((ops, out, i, n) -> ops.shift(heapArray(), offset + i, arg2, out, i, n));
+    }
 
     public NArray addRev(double arg2) { return this.bimapRev(Double::sum, arg2); }
 
-    public NArray subtract(NArray arg2) { return this.bimap((a, b) -> a - b, arg2); }
+    public NArray subtract(NArray arg2) {
+        if (!vectorizable(arg2)) return this.bimap((a, b) -> a - b, arg2);
+        return vectorized((ops, out, i, n) -> ops.subtract(heapArray(), offset + i, arg2.heapArray(),
+            arg2.offset + i, out, i, n));
+    }
 
-    public NArray subtract(double arg2) { return this.bimap((a, b) -> a - b, arg2); }
+    public NArray subtract(double arg2) {
+        if (!vectorizable()) return this.bimap((a, b) -> a - b, arg2);
+        return vectorized((ops, out, i, n) -> ops.shift(heapArray(), offset + i, -arg2, out, i, n));
+    }
 
     public NArray subtractRev(double arg2) { return this.bimapRev((a, b) -> a - b, arg2); }
 
-    public NArray multiply(NArray arg2) { return this.bimap((a, b) -> a * b, arg2); }
+    public NArray multiply(NArray arg2) {
+        if (isSparse() && Arrays.equals(arg2.shape, shape)) return Sparse.multiply(this, arg2);
+        if (!vectorizable(arg2)) return this.bimap((a, b) -> a * b, arg2);
+        return vectorized((ops, out, i, n) -> ops.multiply(heapArray(), offset + i, arg2.heapArray(),
+            arg2.offset + i, out, i, n));
+    }
 
-    public NArray multiply(double arg2) { return this.bimap((a, b) -> a * b, arg2); }
+    public NArray multiply(double arg2) {
+        if (!vectorizable()) return this.bimap((a, b) -> a * b, arg2);
+        return vectorized((ops, out, i, n) -> ops.scale(heapArray(), offset + i, arg2, out, i, n));
+    }
 
     public NArray multiplyRev(double arg2) { return this.bimapRev((a, b) -> a * b, arg2); }
 
-    public NArray divide(NArray arg2) { return this.bimap((a, b) -> a / b, arg2); }
+    public NArray multiplyAdd(@NonNull NArray factor, @NonNull NArray addend) {
+        if (!vectorizable(factor, addend)) return this * factor + addend;
+        return vectorized((ops, out, i, n) -> ops.fma(heapArray(), offset + i, factor.heapArray(),
+            factor.offset + i, addend.heapArray(), addend.offset + i, out, i, n));
+    }
+
+    public NArray divide(NArray arg2) {
+        if (!vectorizable(arg2)) return this.bimap((a, b) -> a / b, arg2);
+        return vectorized((ops, out, i, n) -> ops.divide(heapArray(), offset + i, arg2.heapArray(),
+            arg2.offset + i, out, i, n));
+    }
 
     public NArray divide(double arg2) { return this.bimap((a, b) -> a / b, arg2); }
 
     public NArray divideRev(double arg2) { return this.bimapRev((a, b) -> a / b, arg2); }
 
+    public NArray exp() {
+        if (!vectorizable()) return this.map(Math::exp);
+        return vectorized((ops, out, i, n) -> ops.exp(heapArray(), offset + i, out, i, n));
+    }
+
+    public NArray sigmoid() {
+        if (!vectorizable()) return this.map(x -> 1.0 / (1.0 + Math.exp(-x)));
+        return vectorized((ops, out, i, n) -> ops.sigmoid(heapArray(), offset + i, out, i, n));
+    }
+
+    public NArray tanh() {
+        if (!vectorizable()) return this.map(Math::tanh);
+        return vectorized((ops, out, i, n) -> ops.tanh(heapArray(), offset + i, out, i, n));
+    }
+
+    public NArray addInPlace(@NonNull NArray other) {
+        if (!inPlaceVectorizable(other)) return bimapInto(this, Double::sum, other);
+        return inPlace((ops, out, i, n) -> ops.add(out, offset + i, other.heapArray(), other.offset + i, out,
+            offset + i, n));
+    }
+
+    public NArray addInPlace(double value) {
+        if (!inPlaceVectorizable()) return bimapInto(this, Double::sum, value);
+        return inPlace((ops, out, i, n) -> ops.shift(out, offset + i, value, out, offset + i, n));
+    }
+
+    public NArray subInPlace(@NonNull NArray other) {
+        if (!inPlaceVectorizable(other)) return bimapInto(this, (a, b) -> a - b, other);
+        return inPlace((ops, out, i, n) -> ops.subtract(out, offset + i, other.heapArray(), other.offset + i, out,
+            offset + i, n));
+    }
+
+    public NArray mulInPlace(@NonNull NArray other) {
+        if (!inPlaceVectorizable(other)) return bimapInto(this, (a, b) -> a * b, other);
+        return inPlace((ops, out, i, n) -> ops.multiply(out, offset + i, other.heapArray(), other.offset + i, out,
+            offset + i, n));
+    }
+
+    public NArray mulInPlace(double factor) {
+        if (!inPlaceVectorizable()) return bimapInto(this, (a, b) -> a * b, factor);
+        return inPlace((ops, out, i, n) -> ops.scale(out, offset + i, factor, out, offset + i, n));
+    }
+
+    public NArray divInPlace(@NonNull NArray other) {
+        if (!inPlaceVectorizable(other)) return bimapInto(this, (a, b) -> a / b, other);
+        return inPlace((ops, out, i, n) -> ops.divide(out, offset + i, other.heapArray(), other.offset + i, out,
+            offset + i, n));
+    }
+
+    public NArray divInPlace(double divisor) {
+        if (!inPlaceVectorizable()) return bimapInto(this, (a, b) -> a / b, divisor);
+        return inPlace((ops, out, i, n) -> ops.divide(out, offset + i, divisor, out, offset + i, n));
+    }
+
+    public NArray axpy(double alpha, @NonNull NArray x) {
+        if (!inPlaceVectorizable(x)) return bimapInto(this, (y, v) -> y + alpha * v, x);
+        return inPlace((ops, out, i, n) -> ops.axpy(alpha, x.heapArray(), x.offset + i, out, offset + i, out,
+            offset + i, n));
+    }
+
+    boolean heapContiguous() { return contiguous && storage instanceof HeapStorage; }
+
+    private boolean inPlaceVectorizable(NArray... others) {
+        if (!heapContiguous()) return false;
+        for (val other : others) if (!other.heapContiguous() || other.size != size) return false;
+        return true;
+    }
+
+    private NArray inPlace(VectorKernel kernel) {
+        val out = heapArray();
+        Parallel.forRange(size, (from, to) -> kernel.apply(VectorOps.INSTANCE, out, from, to - from));
+        return this;
+    }
+
+    private boolean vectorizable(NArray... others) {
+        if (StorageType.getDefault() != StorageType.HEAP || Precision.getDefault() != Precision.DOUBLE) return false;
+        if (!heapContiguous()) return false;
+        for (val other : others) if (!other.heapContiguous() || !Arrays.equals(shape, other.shape)) return false;
+        return true;
+    }
+
+    private NArray vectorized(VectorKernel kernel) {
+        val arr = new NArray(shape);
+        val out = arr.heapArray();
+        Parallel.forRange(size, (from, to) -> kernel.apply(VectorOps.INSTANCE, out, from, to - from));
+        return arr;
+    }
+
     public NArray dot(@NonNull NArray other) {
+        if (isSparse()) return Sparse.dot(this, other);
         val A = this.shape, B = other.shape;
         val M = A.length, N = B.length;
-        val resultDims = M + N - 2;
-        if (resultDims == 0) {
+        val C = dotCommon(A[M - 1], B[0]);
+        if (M + N == 2) {
             val prod = this * other;
             return NArray.of(prod.values().sum());
         }
-        val resultCards = new int[resultDims];
+        val resultCards = new int[M + N - 2];
         arraycopy(A, 0, resultCards, 0, M - 1);
         arraycopy(B, 1, resultCards, M - 1, N - 1);
         val result = new NArray(resultCards);
-        val C = dotCommon(A[M - 1], B[0]);
-        result.coordinates().parallel().forEach(resultCoords -> {
-            val SCoords = new int[M];
-            val TCoords = new int[N];
-            arraycopy(resultCoords, 0, SCoords, 0, M - 1);
-            arraycopy(resultCoords, M - 1, TCoords, 1, N - 1);
-            SCoords[M - 1] = TCoords[0] = 0;
-            var sum = this[SCoords] * other[TCoords];
-            for (var c = 1; c < C; c++) {
-                SCoords[M - 1] = TCoords[0] = c;
-                sum = sum + this[SCoords] * other[TCoords];
-            }
-            result[resultCoords] = sum;
-        });
+        val rows = sizeOf(Arrays.copyOf(A, M - 1)), cols = sizeOf(Arrays.copyOfRange(B, 1, N));
+        val left = (M > 2 ? contiguous() : this).onHeap();
+        val right = (N > 2 ? other.contiguous() : other).onHeap();
+        val out = result.storage instanceof HeapStorage ? (HeapStorage) result.storage : new HeapStorage(result.size);
+        Gemm.gemm(rows, cols, C, //
+            left.heapArray(), left.offset, M == 2 ? left.strides[0] : C, left.strides[M - 1], //
+            right.heapArray(), right.offset, right.strides[0], N == 2 ? right.strides[1] : 1, //
+            out.array(), 0, cols, false);
+        if (out != result.storage) result.storage.put(0, out.array(), 0, result.size);
         return result;
     }
 
+    NArray onHeap() {
+        return storage instanceof HeapStorage ? this : new NArray(StorageType.HEAP, Precision.DOUBLE, shape).copy(this);
+    }
+
+    double[] heapArray() { return ((HeapStorage) storage).array(); }
+
+    public static NArray einsum(@NonNull String equation, @NonNull NArray... operands) {
+        return Einsum.einsum(equation, operands);
+    }
+
+    public NArray tensordot(@NonNull NArray other, int axes) { return Einsum.tensordot(this, other, axes); }
+
+    public NArray tensordot(@NonNull NArray other, @NonNull int[] axes, @NonNull int[] otherAxes) {
+        return Einsum.tensordot(this, other, axes, otherAxes);
+    }
+
     private int dotCommon(int a, int b) {
         if (a == b) return a;
         throw new IllegalArgumentException(
                 "Dimensions are incompatible. Last dimension of 1st array has to match first dimension of 2nd array");
     }
 
-    public NArray T() {
-        val arr = new NArray(reverse(shape));
-        arr.coordinates().forEach(coords -> arr[coords] = this[reverse(coords)]);
-        return arr;
+    public NArray T() { return new NArray(storage, offset, reverse(shape), reverse(strides)); }
+
+    public NArray permute(@NonNull int... axes) {
+        if (axes.length != dims) throw new IllegalArgumentException(
+                "Expected a permutation of " + dims + " axes. Found " + Arrays.toString(axes));
+        val seen = new boolean[dims];
+        val shape = new int[dims];
+        val strides = new int[dims];
+        for (var i = 0; i < dims; i++) {
+            val axis = Objects.checkIndex(axes[i] < 0 ? axes[i] + dims : axes[i], dims);
+            if (seen[axis]) throw new IllegalArgumentException("Axis " + axis + " repeats in " + Arrays.toString(axes));
+            seen[axis] = true;
+            shape[i] = this.shape[axis];
+            strides[i] = this.strides[axis];
+        }
+        return new NArray(storage, offset, shape, strides);
+    }
+
+    public NArray swapAxes(int axis1, int axis2) {
+        val axes = range(0, dims);
+        axis1 = Objects.checkIndex(axis1 < 0 ? axis1 + dims : axis1, dims);
+        axis2 = Objects.checkIndex(axis2 < 0 ? axis2 + dims : axis2, dims);
+        axes[axis1] = axis2;
+        axes[axis2] = axis1;
+        return permute(axes);
     }
 
     private int[] reverse(int... original) {
@@ -299,23 +546,101 @@ public class NArray implements Cloneable, Iterable<Double> {
         return rev;
     }
 
-    public NArray flattened() { return new NArray(size).fill(buffer()); }
+    public NArray flattened() {
+        if (!contiguous) return contiguous().flattened();
+        return new NArray(storage, offset, new int[] { size }, null);
+    }
+
+    public NArray reshaped(int... shape) {
+        if (sizeOf(shape) != size) return new NArray(shape).copy(this);
+        if (!contiguous) return contiguous().reshaped(shape);
+        return new NArray(storage, offset, shape, null);
+    }
+
+    public NArray slice(int axis, int from, int to) {
+        Objects.checkIndex(axis, dims);
+        Objects.checkFromToIndex(from, to, shape[axis]);
+        val shape = this.shape.clone();
+        shape[axis] = to - from;
+        return new NArray(storage, offset + from * strides[axis], shape, strides.clone());
+    }
+
+    public NArray select(int axis, int index) {
+        Objects.checkIndex(axis, dims);
+        Objects.checkIndex(index, shape[axis]);
+        if (dims == 1) return new NArray(storage, offset + index * strides[0], new int[] { 1 }, null);
+        val shape = new int[dims - 1];
+        val strides = new int[dims - 1];
+        arraycopy(this.shape, 0, shape, 0, axis);
+        arraycopy(this.shape, axis + 1, shape, axis, dims - 1 - axis);
+        arraycopy(this.strides, 0, strides, 0, axis);
+        arraycopy(this.strides, axis + 1, strides, axis, dims - 1 - axis);
+        return new NArray(storage, offset + index * this.strides[axis], shape, strides);
+    }
+
+    public NArray expandDims(int axis) {
+        Objects.checkIndex(axis < 0 ? axis + dims + 1 : axis, dims + 1);
+        if (axis < 0) axis += dims + 1;
+        val shape = new int[dims + 1];
+        val strides = new int[dims + 1];
+        arraycopy(this.shape, 0, shape, 0, axis);
+        arraycopy(this.shape, axis, shape, axis + 1, dims - axis);
+        arraycopy(this.strides, 0, strides, 0, axis);
+        arraycopy(this.strides, axis, strides, axis + 1, dims - axis);
+        shape[axis] = 1;
+        strides[axis] = axis < dims ? this.strides[axis] * this.shape[axis] : 1;
+        return new NArray(storage, offset, shape, strides);
+    }
+
+    public static NArray stack(int axis, @NonNull NArray... arrays) { return Stacking.stack(axis, arrays); }
+
+    public static NArray concat(int axis, @NonNull NArray... arrays) { return Stacking.concat(axis, arrays); }
+
+    public NArray[] split(int axis, int parts) { return Stacking.split(this, axis, parts); }
+
+    public NArray[] split(int axis, @NonNull int[] sizes) { return Stacking.split(this, axis, sizes); }
+
+    public NArray[] unstack(int axis) { return Stacking.unstack(this, axis); }
+
+    public NArray gather(int axis, @NonNull int... indices) { return Stacking.gather(this, axis, indices); }
+
+    public boolean isSparse() { return Sparse.isSparse(this); }
+
+    public NArray toSparse() { return Sparse.of(this); }
+
+    public NArray toDense() { return Sparse.toDense(this); }
 
-    public NArray reshaped(int... shape) { return new NArray(shape).fill(buffer()); }
+    public Expr lazy() { return Expr.of(this); }
+
+    public NArray contiguous() { return contiguous ? this : clone(); }
+
+    public boolean isContiguous() { return contiguous; }
 
     public NArray map(@NonNull DoubleUnaryOperator op) {
         val arr = new NArray(shape);
-        IntStream.range(0, size).parallel().forEach(i -> arr[i] = op.applyAsDouble(buffer[i]));
+        Parallel.forRange(size, (from, to) -> {
+            for (var i = from; i < to; i++) arr[i] = op.applyAsDouble(this[i]);
+        });
         return arr;
     }
 
     public NArray map(@NonNull DoubleUnaryOperator... ops) {
         val arr = new NArray(shape);
         val op = chain(ops);
-        IntStream.range(0, size).parallel().forEach(i -> arr[i] = op.applyAsDouble(buffer[i]));
+        Parallel.forRange(size, (from, to) -> {
+            for (var i = from; i < to; i++) arr[i] = op.applyAsDouble(this[i]);
+        });
         return arr;
     }
 
+    public NArray mapInto(@NonNull NArray out, @NonNull DoubleUnaryOperator op) {
+        checkOutput(out, size);
+        Parallel.forRange(size, (from, to) -> {
+            for (var i = from; i < to; i++) out[i] = op.applyAsDouble(this[i]);
+        });
+        return out;
+    }
+
     private DoubleUnaryOperator chain(DoubleUnaryOperator... ops) {
         int n = ops.length;
         if (n == 0) return DoubleUnaryOperator.identity();
@@ -325,29 +650,60 @@ public class NArray implements Cloneable, Iterable<Double> {
     }
 
     public NArray bimap(@NonNull DoubleBinaryOperator op, @NonNull NArray arg2) {
-        if (arg2.size != size) {
-            val arr = new NArray(broadcast(shape, arg2.shape));
-            arr.coordinates().parallel().forEach(
-                coords -> { arr[coords] = op.applyAsDouble(this[clipCoords(coords)], arg2[arg2.clipCoords(coords)]); });
-            return arr;
-        }
+        if (arg2.size != size) return Broadcast.apply(this, arg2, op);
+        if (isSparse() && Arrays.equals(arg2.shape, shape)) return Sparse.bimap(this, arg2, op);
         val arr = Arrays.equals(arg2.shape, shape) ? new NArray(shape) : new NArray(new int[] { size });
-        IntStream.range(0, size).parallel().forEach(i -> arr[i] = op.applyAsDouble(this[i], arg2[i]));
+        Parallel.forRange(size, (from, to) -> {
+            for (var i = from; i < to; i++) arr[i] = op.applyAsDouble(this[i], arg2[i]);
+        });
         return arr;
     }
 
+    public NArray bimapInto(@NonNull NArray out, @NonNull DoubleBinaryOperator op, @NonNull NArray arg2) {
+        if (arg2.size != size) return Broadcast.apply(this, arg2, op, out);
+        checkOutput(out, size);
+        Parallel.forRange(size, (from, to) -> {
+            for (var i = from; i < to; i++) out[i] = op.applyAsDouble(this[i], arg2[i]);
+        });
+        return out;
+    }
+
+    public NArray bimapInto(@NonNull NArray out, @NonNull DoubleBinaryOperator op, double arg2) {
+        checkOutput(out, size);
+        Parallel.forRange(size, (from, to) -> {
+            for (var i = from; i < to; i++) out[i] = op.applyAsDouble(this[i], arg2);
+        });
+        return out;
+    }
+
+    private void checkOutput(NArray out, int size) {
+        if (out.size != size) throw new IllegalArgumentException(
+                "Output of size " + out.size + " can't hold the " + size + " elements of the result");
+    }
+
     public NArray bimap(@NonNull DoubleBinaryOperator op, double arg2) {
         val arr = new NArray(shape);
-        IntStream.range(0, size).parallel().forEach(i -> arr[i] = op.applyAsDouble(this[i], arg2));
+        Parallel.forRange(size, (from, to) -> {
+            for (var i = from; i < to; i++) arr[i] = op.applyAsDouble(this[i], arg2);
+        });
         return arr;
     }
 
     public NArray bimapRev(@NonNull DoubleBinaryOperator op, double arg2) {
         val arr = new NArray(shape);
-        IntStream.range(0, size).parallel().forEach(i -> arr[i] = op.applyAsDouble(arg2, this[i]));
+        Parallel.forRange(size, (from, to) -> {
+            for (var i = from; i < to; i++) arr[i] = op.applyAsDouble(arg2, this[i]);
+        });
         return arr;
     }
 
+    private double broadcastGet(int[] coords) {
+        val shift = coords.length - dims;
+        var position = offset;
+        for (int i = 0; i < dims; i++) if (shape[i] > 1) position += strides[i] * coords[i + shift];
+        return storage[position];
+    }
+
     public int[] clipCoords(@NonNull int... coords) {
         val N = coords.length;
         if (N > dims) { return Arrays.copyOfRange(coords, N - dims, N); }
@@ -375,92 +731,63 @@ public class NArray implements Cloneable, Iterable<Double> {
         return bshape;
     }
 
-    public double reduce(double identity, DoubleBinaryOperator op) { return values().reduce(identity, op); }
+    public double reduce(double identity, DoubleBinaryOperator op) {
+        return Reduction.reduce(this, identity, op, op);
+    }
+
+    public NArray reduce(@NonNull int[] axes, boolean keepDims, double identity, @NonNull DoubleBinaryOperator op) {
+        return Reduction.reduce(this, axes, keepDims, identity, op, op);
+    }
+
+    public NArray sum(boolean keepDims, @NonNull int... axes) { return Reduction.sum(this, axes, keepDims); }
+
+    public NArray average(boolean keepDims, @NonNull int... axes) {
+        val count = Reduction.count(this, axes);
+        return sum(keepDims, axes).divInPlace(count);
+    }
+
+    public NArray max(boolean keepDims, @NonNull int... axes) {
+        return reduce(axes, keepDims, Double.NEGATIVE_INFINITY, Math::max);
+    }
+
+    public NArray min(boolean keepDims, @NonNull int... axes) {
+        return reduce(axes, keepDims, Double.POSITIVE_INFINITY, Math::min);
+    }
 
     public NArray reduceDim(int dim, double identity, DoubleBinaryOperator op) {
         Objects.checkIndex(dim, dims);
-        if (dim == 0) return reduceFirst(identity, op);
-        if (dim == this.dims - 1) return reduceLast(identity, op);
-        val dims = this.dims - 1;
-        val shape = new int[dims];
-        arraycopy(this.shape, 0, shape, 0, dim);
-        arraycopy(this.shape, dim + 1, shape, dim, dims - dim);
-        val arr = new NArray(shape);
-        val dsize = this.shape[dim];
-        arr.coordinates().forEach(coords -> {
-            val pcoords = new int[this.dims];
-            arraycopy(coords, 0, pcoords, 0, dim);
-            arraycopy(coords, dim, pcoords, dim + 1, dims - dim);
-            arr[coords] = IntStream.range(0, dsize).parallel().mapToDouble(i -> {
-                val tcoords = pcoords.clone();
-                tcoords[dim] = i;
-                return this[tcoords];
-            }).reduce(identity, op);
-        });
-        return arr;
+        return reduce(new int[] { dim }, false, identity, op);
     }
 
     public NArray reduceDim(int dimFrom, int dimTo, double identity, DoubleBinaryOperator op) {
         Objects.checkFromToIndex(dimFrom, dimTo, this.dims);
-        if (dimFrom == dimTo) return reduceDim(dimTo, identity, op);
-        if (dimFrom == 0 && dimTo == this.dims - 1) return NArray.of(reduce(identity, op));
-        val dims = this.dims - (dimTo + 1 - dimFrom);
-        val shape = new int[dims];
-        arraycopy(this.shape, 0, shape, 0, dimFrom);
-        arraycopy(this.shape, dimTo + 1, shape, dimFrom, dims - dimFrom);
-        val arr = new NArray(shape);
-        this.coordinates().collect(Collectors.groupingBy(coords -> {
-            val dcoords = new int[dims];
-            arraycopy(coords, 0, dcoords, 0, dimFrom);
-            arraycopy(coords, dimTo + 1, dcoords, dimFrom, dims - dimFrom);
-            return comparable.of(dcoords);
-        })).forEach((d, s) -> arr[d.arr] = s.parallelStream().mapToDouble(this::get).reduce(identity, op));
-        return arr;
+        return reduce(range(dimFrom, dimTo + 1), false, identity, op);
     }
 
-    public NArray reduceFirst(double identity, DoubleBinaryOperator op) {
-        if (dims == 1) return NArray.of(reduce(identity, op));
-        val arr = new NArray(Arrays.copyOfRange(shape, 1, dims));
-        val dfirst = shape[0];
-        val firstBs = blockSize[0];
-        IntStream.range(0, arr.size).forEach(i -> arr[i] = IntStream.range(0, dfirst).parallel()
-                .mapToDouble(j -> buffer[i + j * firstBs]).reduce(identity, op));
-        return arr;
-    }
+    public NArray reduceFirst(double identity, DoubleBinaryOperator op) { return reduceFirstDims(1, identity, op); }
 
     public NArray reduceFirstDims(int dims, double identity, DoubleBinaryOperator op) {
         if (dims <= 0 || dims > this.dims) throw new IllegalArgumentException();
-        if (dims == 1) return reduceFirst(identity, op);
-        if (dims == this.dims) return NArray.of(reduce(identity, op));
-        val arr = new NArray(Arrays.copyOfRange(shape, dims, this.dims));
-        val firstBs = blockSize[dims - 1];
-        IntStream.range(0, arr.size).forEach(i -> arr[i] = IntStream.range(0, size / firstBs).parallel()
-                .mapToDouble(j -> buffer[i + j * firstBs]).reduce(identity, op));
-        return arr;
+        return reduce(range(0, dims), false, identity, op);
     }
 
-    public NArray reduceLast(double identity, DoubleBinaryOperator op) {
-        if (dims == 1) return NArray.of(reduce(identity, op));
-        val arr = new NArray(Arrays.copyOf(shape, dims - 1));
-        val lastBs = shape[dims - 1];
-        IntStream.range(0, arr.size).forEach(i -> arr[i] = IntStream.range(0, lastBs).parallel()
-                .mapToDouble(j -> buffer[i * lastBs + j]).reduce(identity, op));
-        return arr;
-    }
+    public NArray reduceLast(double identity, DoubleBinaryOperator op) { return reduceLastDims(1, identity, op); }
 
     public NArray reduceLastDims(int dims, double identity, DoubleBinaryOperator op) {
         if (dims <= 0 || dims > this.dims) throw new IllegalArgumentException();
-        if (dims == 1) return reduceLast(identity, op);
-        if (dims == this.dims) return NArray.of(reduce(identity, op));
-        val arr = new NArray(Arrays.copyOf(shape, this.dims - dims));
-        val lastBs = blockSize[dims - 2];
-        IntStream.range(0, arr.size).forEach(i -> arr[i] = IntStream.range(0, lastBs).parallel()
-                .mapToDouble(j -> buffer[i * lastBs + j]).reduce(identity, op));
-        return arr;
+        return reduce(range(this.dims - dims, this.dims), false, identity, op);
+    }
+
+    private static int[] range(int from, int to) {
+        val axes = new int[to - from];
+        for (var i = 0; i < axes.length; i++) axes[i] = from + i;
+        return axes;
     }
 
     public int[] getShape() { return shape.clone(); }
 
+    public int[] getStrides() { return strides.clone(); }
+
     public int dim(int index) { return shape[index]; }
 
     public int firstDim() { return shape[0]; }
@@ -471,13 +798,29 @@ public class NArray implements Cloneable, Iterable<Double> {
 
     public DoubleStream values() { return IntStream.range(0, size).mapToDouble(this::get); }
 
-    public DoubleBuffer buffer() { return buffer.asReadOnlyBuffer().rewind(); }
+    public DoubleBuffer buffer() {
+        if (!contiguous) return contiguous().buffer();
+        return storage.buffer(offset, size).asReadOnlyBuffer();
+    }
+
+    public boolean isDirect() { return storage.isDirect(); }
+
+    public Precision precision() { return storage.precision(); }
+
+    public NArray to(@NonNull Precision precision) {
+        if (precision() == precision) return this;
+        return new NArray(StorageType.of(storage), precision, shape).copy(this);
+    }
+
+    public NArray toFloat() { return to(Precision.FLOAT); }
+
+    public NArray toDouble() { return to(Precision.DOUBLE); }
 
     @Override
     public Iterator<Double> iterator() { return values().iterator(); }
 
     @Override
-    public NArray clone() { return new NArray(shape).fill(buffer); }
+    public NArray clone() { return like(this).copy(this); }
 
     @Override
     public String toString() { return toPrettyString(10); }
@@ -510,10 +853,14 @@ public class NArray implements Cloneable, Iterable<Double> {
         }
     }
 
-    @Value
-    @AllArgsConstructor(staticName = "of")
-    private static class comparable {
-        int[] arr;
+    @FunctionalInterface
+    public static interface IndexKernel {
+        public double apply(int index, int[] coords);
+    }
+
+    @FunctionalInterface
+    private static interface VectorKernel {
+        public void apply(VectorOps ops, double[] out, int from, int length);
     }
 
 }
@@ -0,0 +1,58 @@
+package hy.util;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(level = AccessLevel.PRIVATE)
+public class Odometer {
+
+    final int[]   shape;
+    final int[]   coords;
+    final int[][] strides;
+    final int[]   positions;
+    int           index;
+
+    public Odometer(@NonNull int... shape) { this(shape, new int[0][]); }
+
+    public Odometer(@NonNull int[] shape, @NonNull int[]... strides) {
+        this.shape = shape.clone();
+        this.coords = new int[shape.length];
+        this.strides = strides;
+        this.positions = new int[strides.length];
+        for (val s : strides) if (s.length != shape.length) throw new IllegalArgumentException(
+                "Strides dimensionality " + s.length + " does not match shape dimensionality " + shape.length);
+    }
+
+    public Odometer seek(int index) {
+        this.index = index;
+        for (var k = 0; k < positions.length; k++) positions[k] = 0;
+        for (var i = shape.length - 1; i >= 0; i--) {
+            coords[i] = index % shape[i];
+            index /= shape[i];
+            for (var k = 0; k < positions.length; k++) positions[k] += coords[i] * strides[k][i];
+        }
+        return this;
+    }
+
+    public boolean next() {
+        index++;
+        for (var i = shape.length - 1; i >= 0; i--) {
+            for (var k = 0; k < positions.length; k++) positions[k] += strides[k][i];
+            if (++coords[i] < shape[i]) return true;
+            for (var k = 0; k < positions.length; k++) positions[k] -= strides[k][i] * shape[i];
+            coords[i] = 0;
+        }
+        return false;
+    }
+
+    public int index() { return index; }
+
+    public int[] coords() { return coords; }
+
+    public int coord(int axis) { return coords[axis]; }
+
+    public int position(int operand) { return positions[operand]; }
+}
@@ -0,0 +1,130 @@
+package hy.util;
+
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoubleBinaryOperator;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Parallel {
+
+    public interface Range {
+        public void apply(int from, int to);
+    }
+
+    public interface RangeReduction {
+        public double apply(int from, int to);
+    }
+
+    public int grain() { return ExecutionContext.getDefault().grain; }
+
+    public void forRange(int n, @NonNull Range body) { forRange(n, grain(), body); }
+
+    public void forRange(int n, int grain, @NonNull Range body) {
+        val context = ExecutionContext.getDefault();
+        val chunks = chunks(n, grain, context);
+        if (chunks <= 1) {
+            if (n > 0) body.apply(0, n);
+            return;
+        }
+        context.invoke(new ForRange(context, n, chunks, 0, chunks, body));
+    }
+
+    public double reduceRange(int n, double identity, @NonNull RangeReduction body,
+        @NonNull DoubleBinaryOperator combine) {
+        return reduceRange(n, grain(), identity, body, combine);
+    }
+
+    public double reduceRange(int n, int grain, double identity, @NonNull RangeReduction body,
+        @NonNull DoubleBinaryOperator combine) {
+        val context = ExecutionContext.getDefault();
+        val chunks = chunks(n, grain, context);
+        if (chunks <= 1) return n > 0 ? combine.applyAsDouble(identity, body.apply(0, n)) : identity;
+        val task = new ReduceRange(context, n, chunks, 0, chunks, body, combine);
+        context.invoke(task);
+        return combine.applyAsDouble(identity, task.join());
+    }
+
+    private int chunks(int n, int grain, ExecutionContext context) {
+        if (context.isSequential() || context.parallelism <= 1) return n > 0 ? 1 : 0;
+        val grains = ((long) n + grain - 1) / Math.max(1, grain);
+        return (int) Math.min(grains, context.parallelism * 4L);
+    }
+
+    private int bound(int n, int chunks, int chunk) { return (int) ((long) n * chunk / chunks); }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class ForRange extends RecursiveAction {
+
+        static final long serialVersionUID = 1L;
+
+        ExecutionContext context;
+        int              n, chunks, from, to;
+        Range            body;
+
+        ForRange(ExecutionContext context, int n, int chunks, int from, int to, Range body) {
+            this.context = context;
+            this.n = n;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        @SuppressWarnings("try")
+        protected void compute() {
+            if (to - from == 1) {
+                try (val scope = ExecutionContext.scope(context)) {
+                    body.apply(bound(n, chunks, from), bound(n, chunks, to));
+                }
+                return;
+            }
+            val mid = (from + to) >>> 1;
+            invokeAll(new ForRange(context, n, chunks, from, mid, body),
+                new ForRange(context, n, chunks, mid, to, body));
+        }
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class ReduceRange extends RecursiveTask<Double> {
+
+        static final long serialVersionUID = 1L;
+
+        ExecutionContext     context;
+        int                  n, chunks, from, to;
+        RangeReduction       body;
+        DoubleBinaryOperator combine;
+
+        ReduceRange(ExecutionContext context, int n, int chunks, int from, int to, RangeReduction body,
+            DoubleBinaryOperator combine) {
+            this.context = context;
+            this.n = n;
+            this.chunks = chunks;
+            this.from = from;
+            this.to = to;
+            this.body = body;
+            this.combine = combine;
+        }
+
+        @Override
+        @SuppressWarnings("try")
+        protected Double compute() {
+            if (to - from == 1) {
+                try (val scope = ExecutionContext.scope(context)) {
+                    return body.apply(bound(n, chunks, from), bound(n, chunks, to));
+                }
+            }
+            val mid = (from + to) >>> 1;
+            val right = new ReduceRange(context, n, chunks, mid, to, body, combine);
+            right.fork();
+            val left = new ReduceRange(context, n, chunks, from, mid, body, combine).compute();
+            return combine.applyAsDouble(left, right.join());
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package hy.util;
+
+import lombok.NonNull;
+import lombok.val;
+
+public enum Precision {
+    DOUBLE(Double.BYTES), FLOAT(Float.BYTES);
+
+    public final int                            bytes;
+
+    private static volatile Precision           defaultPrecision = DOUBLE;
+    private static final ThreadLocal<Precision> scoped           = new ThreadLocal<>();
+
+    private Precision(int bytes) { this.bytes = bytes; }
+
+    public static Precision getDefault() {
+        val precision = scoped.get();
+        return precision != null ? precision : defaultPrecision;
+    }
+
+    public static void setDefault(@NonNull Precision precision) { defaultPrecision = precision; }
+
+    public static Scope scope(@NonNull Precision precision) {
+        val scope = new Scope(scoped.get());
+        scoped.set(precision);
+        return scope;
+    }
+
+    public static class Scope implements AutoCloseable {
+
+        private final Precision previous;
+
+        private Scope(Precision previous) { this.previous = previous; }
+
+        @Override
+        public void close() {
+            if (previous == null) scoped.remove();
+            else scoped.set(previous);
+        }
+    }
+}
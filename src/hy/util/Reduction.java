@@ -0,0 +1,382 @@
+package hy.util;
+
+import java.util.Arrays;
+import java.util.function.DoubleBinaryOperator;
+
+import io.vavr.Tuple;
+import io.vavr.Tuple2;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Reduction {
+
+    public double reduce(@NonNull NArray a, double identity, @NonNull DoubleBinaryOperator accumulate,
+        @NonNull DoubleBinaryOperator combine) {
+        val source = a.onHeap();
+        val data = source.heapArray();
+        val layout = coalesce(source.shape, source.strides, allAxes(a.dims));
+        return Parallel.reduceRange(a.size, identity,
+            (from, to) -> fold(data, source.offset, layout, from, to, identity, accumulate), combine);
+    }
+
+    public double sum(@NonNull NArray a) {
+        val source = a.onHeap();
+        val data = source.heapArray();
+        val layout = coalesce(source.shape, source.strides, allAxes(a.dims));
+        return Parallel.reduceRange(a.size, 0, (from, to) -> sum(data, source.offset, layout, from, to), Double::sum);
+    }
+
+    public NArray reduce(@NonNull NArray a, @NonNull int[] axes, boolean keepDims, double identity,
+        @NonNull DoubleBinaryOperator accumulate, @NonNull DoubleBinaryOperator combine) {
+        return run(a, axes, keepDims, identity, accumulate, combine, false);
+    }
+
+    public NArray sum(@NonNull NArray a, @NonNull int[] axes, boolean keepDims) {
+        return run(a, axes, keepDims, 0, Double::sum, Double::sum, true);
+    }
+
+    public int count(@NonNull NArray a, @NonNull int[] axes) {
+        var count = 1;
+        for (val axis : normalize(axes, a.dims)) count *= a.shape[axis];
+        return count;
+    }
+
+    public int indexOfMax(@NonNull NArray a) { return indexOf(a, true); }
+
+    public int indexOfMin(@NonNull NArray a) { return indexOf(a, false); }
+
+    public int[] indexOfMax(@NonNull NArray a, int axis) { return indexOf(a, axis, true); }
+
+    public int[] indexOfMin(@NonNull NArray a, int axis) { return indexOf(a, axis, false); }
+
+    public Tuple2<NArray, int[]> topK(@NonNull NArray a, int k, int axis) {
+        val ax = normalize(new int[] { axis }, a.dims)[0];
+        val length = a.shape[ax];
+        if (k < 1 || k > length) throw new IllegalArgumentException(
+                "Can't select the top " + k + " of " + length + " elements along axis " + axis);
+        val shape = a.getShape();
+        shape[ax] = k;
+        val values = new NArray(StorageType.HEAP, Precision.DOUBLE, shape);
+        val indices = new int[values.size];
+        val source = a.onHeap();
+        val data = source.heapArray();
+        val out = values.heapArray();
+        val rows = rows(source, ax, values.strides);
+        val stride = source.strides[ax];
+        val outStride = values.strides[ax];
+        Parallel.forRange(rows.size, Math.max(1, Parallel.grain() / length), (from, to) -> {
+            val heapValues = new double[k];
+            val heapIndices = new int[k];
+            val it = rows.odometer().seek(from);
+            for (var r = from; r < to; r++, it.next()) {
+                val p = source.offset + it.position(0);
+                for (var j = 0; j < length; j++) {
+                    val v = data[p + j * stride];
+                    if (j < k) {
+                        heapValues[j] = v;
+                        heapIndices[j] = j;
+                        siftUp(heapValues, heapIndices, j);
+                    } else if (worse(heapValues[0], heapIndices[0], v, j)) {
+                        heapValues[0] = v;
+                        heapIndices[0] = j;
+                        siftDown(heapValues, heapIndices, 0, k);
+                    }
+                }
+                val q = it.position(1);
+                for (var n = k; n > 0; n--) {
+                    out[q + (n - 1) * outStride] = heapValues[0];
+                    indices[q + (n - 1) * outStride] = heapIndices[0];
+                    swap(heapValues, heapIndices, 0, n - 1);
+                    siftDown(heapValues, heapIndices, 0, n - 1);
+                }
+            }
+        });
+        return Tuple.of(values.to(Precision.getDefault()), indices);
+    }
+
+    private int indexOf(NArray a, boolean greatest) {
+        val data = heapData(a);
+        val layout = coalesce(a.shape, a.strides, allAxes(a.dims));
+        return (int) Parallel.reduceRange(a.size, -1, (from, to) -> {
+            var best = -1;
+            var bestValue = 0.0;
+            val inner = layout.inner();
+            val stride = layout.innerStride();
+            val it = layout.rows().seek(from / inner);
+            var col = from % inner;
+            for (var i = from; i < to; col = 0, it.next()) {
+                val length = Math.min(inner - col, to - i);
+                val p = a.offset + it.position(0) + col * stride;
+                for (var j = 0; j < length; j++, i++) {
+                    val v = read(a, data, p + j * stride);
+                    if (best < 0 || (greatest ? v > bestValue : v < bestValue)) {
+                        best = i;
+                        bestValue = v;
+                    }
+                }
+            }
+            return best;
+        }, (i, j) -> {
+            if (i < 0 || j < 0) return Math.max(i, j);
+            val left = a.get((int) i);
+            val right = a.get((int) j);
+            return (greatest ? right > left : right < left) ? j : i;
+        });
+    }
+
+    private int[] indexOf(NArray a, int axis, boolean greatest) {
+        val ax = normalize(new int[] { axis }, a.dims)[0];
+        val data = heapData(a);
+        val length = a.shape[ax];
+        val stride = a.strides[ax];
+        val rows = rows(a, ax, null);
+        val indices = new int[rows.size];
+        Parallel.forRange(rows.size, Math.max(1, Parallel.grain() / length), (from, to) -> {
+            val it = rows.odometer().seek(from);
+            for (var r = from; r < to; r++, it.next()) {
+                val p = a.offset + it.position(0);
+                var best = 0;
+                var bestValue = read(a, data, p);
+                for (var j = 1; j < length; j++) {
+                    val v = read(a, data, p + j * stride);
+                    if (greatest ? v > bestValue : v < bestValue) {
+                        best = j;
+                        bestValue = v;
+                    }
+                }
+                indices[r] = best;
+            }
+        });
+        return indices;
+    }
+
+    private double[] heapData(NArray a) { return a.storage instanceof HeapStorage ? a.heapArray() : null; }
+
+    private double read(NArray a, double[] data, int position) {
+        return data != null ? data[position] : a.storage.get(position);
+    }
+
+    private Rows rows(NArray source, int axis, int[] outStrides) {
+        val n = source.dims - 1;
+        val shape = new int[n];
+        val strides = new int[n];
+        val out = new int[n];
+        var size = 1;
+        for (int i = 0, k = 0; i < source.dims; i++) {
+            if (i == axis) continue;
+            shape[k] = source.shape[i];
+            strides[k] = source.strides[i];
+            out[k] = outStrides == null ? 0 : outStrides[i];
+            size *= shape[k++];
+        }
+        return new Rows(shape, strides, out, size);
+    }
+
+    private boolean worse(double value, int index, double otherValue, int otherIndex) {
+        return value < otherValue || (value == otherValue && index > otherIndex);
+    }
+
+    private void siftUp(double[] values, int[] indices, int i) {
+        while (i > 0) {
+            val parent = (i - 1) / 2;
+            if (!worse(values[i], indices[i], values[parent], indices[parent])) return;
+            swap(values, indices, i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(double[] values, int[] indices, int i, int n) {
+        while (true) {
+            val left = 2 * i + 1;
+            if (left >= n) return;
+            val right = left + 1;
+            val child = right < n && worse(values[right], indices[right], values[left], indices[left]) ? right : left;
+            if (!worse(values[child], indices[child], values[i], indices[i])) return;
+            swap(values, indices, i, child);
+            i = child;
+        }
+    }
+
+    private void swap(double[] values, int[] indices, int i, int j) {
+        val value = values[i];
+        values[i] = values[j];
+        values[j] = value;
+        val index = indices[i];
+        indices[i] = indices[j];
+        indices[j] = index;
+    }
+
+    private NArray run(NArray a, int[] axes, boolean keepDims, double identity, DoubleBinaryOperator accumulate,
+        DoubleBinaryOperator combine, boolean compensated) {
+        val reduced = normalize(axes, a.dims);
+        val kept = new boolean[a.dims];
+        Arrays.fill(kept, true);
+        for (val axis : reduced) kept[axis] = false;
+        val keptAxes = new int[a.dims - reduced.length];
+        for (int i = 0, k = 0; i < a.dims; i++) if (kept[i]) keptAxes[k++] = i;
+        val out = new NArray(outputShape(a.shape, kept, keepDims));
+        val source = a.onHeap();
+        val data = source.heapArray();
+        val inner = coalesce(source.shape, source.strides, reduced);
+        val keptShape = new int[keptAxes.length];
+        val keptStrides = new int[keptAxes.length];
+        for (var i = 0; i < keptAxes.length; i++) {
+            keptShape[i] = source.shape[keptAxes[i]];
+            keptStrides[i] = source.strides[keptAxes[i]];
+        }
+        val count = inner.size;
+        if (out.size >= ExecutionContext.getDefault().parallelism || count < Parallel.grain()) {
+            Parallel.forRange(out.size, Math.max(1, Parallel.grain() / Math.max(1, count)), (from, to) -> {
+                val it = new Odometer(keptShape, keptStrides).seek(from);
+                for (var o = from; o < to; o++, it.next()) {
+                    val base = source.offset + it.position(0);
+                    out[o] = compensated ? sum(data, base, inner, 0, count)
+                            : fold(data, base, inner, 0, count, identity, accumulate);
+                }
+            });
+        } else {
+            val it = new Odometer(keptShape, keptStrides);
+            for (var o = 0; o < out.size; o++, it.next()) {
+                val base = source.offset + it.position(0);
+                out[o] = compensated
+                        ? Parallel.reduceRange(count, 0, (from, to) -> sum(data, base, inner, from, to), Double::sum)
+                        : Parallel.reduceRange(count, identity,
+                            (from, to) -> fold(data, base, inner, from, to, identity, accumulate), combine);
+            }
+        }
+        return out;
+    }
+
+    private double fold(double[] data, int base, Layout layout, int from, int to, double identity,
+        DoubleBinaryOperator accumulate) {
+        var acc = identity;
+        val inner = layout.inner();
+        val stride = layout.innerStride();
+        val it = layout.rows().seek(from / inner);
+        var col = from % inner;
+        for (var i = from; i < to; col = 0, it.next()) {
+            val length = Math.min(inner - col, to - i);
+            val p = base + it.position(0) + col * stride;
+            if (stride == 1) for (var j = 0; j < length; j++) acc = accumulate.applyAsDouble(acc, data[p + j]);
+            else for (var j = 0; j < length; j++) acc = accumulate.applyAsDouble(acc, data[p + j * stride]);
+            i += length;
+        }
+        return acc;
+    }
+
+    private double sum(double[] data, int base, Layout layout, int from, int to) {
+        var sum = 0.0;
+        var compensation = 0.0;
+        val inner = layout.inner();
+        val stride = layout.innerStride();
+        val it = layout.rows().seek(from / inner);
+        var col = from % inner;
+        for (var i = from; i < to; col = 0, it.next()) {
+            val length = Math.min(inner - col, to - i);
+            val p = base + it.position(0) + col * stride;
+            for (var j = 0; j < length; j++) {
+                val value = data[p + j * stride];
+                val t = sum + value;
+                compensation += Math.abs(sum) >= Math.abs(value) ? (sum - t) + value : (value - t) + sum;
+                sum = t;
+            }
+            i += length;
+        }
+        return sum + compensation;
+    }
+
+    private int[] normalize(int[] axes, int dims) {
+        val seen = new boolean[dims];
+        for (val axis : axes) {
+            val a = axis < 0 ? axis + dims : axis;
+            if (a < 0 || a >= dims) throw new IllegalArgumentException(
+                    "Axis " + axis + " is out of range for an array of " + dims + " dimensions");
+            if (seen[a]) throw new IllegalArgumentException("Axis " + axis + " is repeated in " + Arrays.toString(axes));
+            seen[a] = true;
+        }
+        var n = 0;
+        val normalized = new int[axes.length];
+        for (var i = 0; i < dims; i++) if (seen[i]) normalized[n++] = i;
+        return normalized;
+    }
+
+    private int[] allAxes(int dims) {
+        val axes = new int[dims];
+        for (var i = 0; i < dims; i++) axes[i] = i;
+        return axes;
+    }
+
+    private int[] outputShape(int[] shape, boolean[] kept, boolean keepDims) {
+        if (keepDims) {
+            val out = shape.clone();
+            for (var i = 0; i < shape.length; i++) if (!kept[i]) out[i] = 1;
+            return out;
+        }
+        val out = new int[shape.length];
+        var n = 0;
+        for (var i = 0; i < shape.length; i++) if (kept[i]) out[n++] = shape[i];
+        return n == 0 ? new int[] { 1 } : Arrays.copyOf(out, n);
+    }
+
+    private Layout coalesce(int[] shape, int[] strides, int[] axes) {
+        val dims = new int[axes.length];
+        val steps = new int[axes.length];
+        var m = 0;
+        var size = 1;
+        for (val axis : axes) {
+            size *= shape[axis];
+            if (shape[axis] == 1) continue;
+            if (m > 0 && steps[m - 1] == strides[axis] * shape[axis]) {
+                dims[m - 1] *= shape[axis];
+                steps[m - 1] = strides[axis];
+            } else {
+                dims[m] = shape[axis];
+                steps[m] = strides[axis];
+                m++;
+            }
+        }
+        return new Layout(Arrays.copyOf(dims, m), Arrays.copyOf(steps, m), size);
+    }
+
+    private static class Rows {
+
+        final int[] shape;
+        final int[] strides;
+        final int[] outStrides;
+        final int   size;
+
+        Rows(int[] shape, int[] strides, int[] outStrides, int size) {
+            this.shape = shape;
+            this.strides = strides;
+            this.outStrides = outStrides;
+            this.size = size;
+        }
+
+        Odometer odometer() { return new Odometer(shape, strides, outStrides); }
+    }
+
+    private static class Layout {
+
+        final int[] dims;
+        final int[] strides;
+        final int   size;
+
+        Layout(int[] dims, int[] strides, int size) {
+            this.dims = dims;
+            this.strides = strides;
+            this.size = size;
+        }
+
+        int inner() { return dims.length == 0 ? 1 : dims[dims.length - 1]; }
+
+        int innerStride() { return dims.length == 0 ? 0 : strides[strides.length - 1]; }
+
+        Odometer rows() {
+            val n = Math.max(0, dims.length - 1);
+            return new Odometer(Arrays.copyOf(dims, n), Arrays.copyOf(strides, n));
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package hy.util;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class Rng {
+
+    private static final long       GOLDEN  = 0x9E3779B97F4A7C15L;
+    private static final AtomicLong streams = new AtomicLong();
+    private static volatile long    seed    = Long.getLong("hy.seed", System.nanoTime());
+
+    long                            key;
+
+    private Rng(long key) { this.key = key; }
+
+    public static void seed(long seed) {
+        Rng.seed = seed;
+        streams.set(0);
+    }
+
+    public static long seed() { return seed; }
+
+    public static Rng next() { return new Rng(mix(seed + streams.getAndIncrement() * GOLDEN)); }
+
+    public static Rng of(long seed) { return new Rng(mix(seed)); }
+
+    public Rng split(long index) { return new Rng(mix(key ^ mix(index * GOLDEN + GOLDEN))); }
+
+    public long bits(long counter) { return mix(key + counter * GOLDEN); }
+
+    public double uniform(long counter) { return (bits(counter) >>> 11) * 0x1.0p-53; }
+
+    public double gaussian(long counter) {
+        val u = 1.0 - uniform(counter << 1);
+        val v = uniform(counter << 1 | 1);
+        return Math.sqrt(-2.0 * Math.log(u)) * Math.cos(2.0 * Math.PI * v);
+    }
+
+    public Random asRandom() { return new Random(key); }
+
+    public NArray fillUniform(@NonNull NArray a) { return fillUniform(a, 0.0, 1.0); }
+
+    public NArray fillUniform(@NonNull NArray a, double from, double to) {
+        val range = to - from;
+        return fill(a, false, from, range);
+    }
+
+    public NArray fillGaussian(@NonNull NArray a, double mean, double deviation) {
+        return fill(a, true, mean, deviation);
+    }
+
+    private NArray fill(NArray a, boolean gaussian, double shift, double scale) {
+        if (a.heapContiguous()) {
+            val data = a.heapArray();
+            val offset = a.offset;
+            Parallel.forRange(a.size, (from, to) -> {
+                for (var i = from; i < to; i++)
+                    data[offset + i] = shift + scale * (gaussian ? gaussian(i) : uniform(i));
+            });
+        } else Parallel.forRange(a.size, (from, to) -> {
+            for (var i = from; i < to; i++) a.set(i, shift + scale * (gaussian ? gaussian(i) : uniform(i)));
+        });
+        return a;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
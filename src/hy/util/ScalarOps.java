@@ -0,0 +1,92 @@
+package hy.util;
+
+import lombok.var;
+
+public class ScalarOps implements VectorOps {
+
+    @Override
+    public String name() { return "scalar"; }
+
+    @Override
+    public void add(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = a[aOffset + i] + b[bOffset + i];
+    }
+
+    @Override
+    public void subtract(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = a[aOffset + i] - b[bOffset + i];
+    }
+
+    @Override
+    public void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = a[aOffset + i] * b[bOffset + i];
+    }
+
+    @Override
+    public void divide(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = a[aOffset + i] / b[bOffset + i];
+    }
+
+    @Override
+    public void shift(double[] a, int aOffset, double value, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = a[aOffset + i] + value;
+    }
+
+    @Override
+    public void scale(double[] a, int aOffset, double factor, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = a[aOffset + i] * factor;
+    }
+
+    @Override
+    public void divide(double[] a, int aOffset, double divisor, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = a[aOffset + i] / divisor;
+    }
+
+    @Override
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, double[] out, int outOffset,
+        int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = y[yOffset + i] + alpha * x[xOffset + i];
+    }
+
+    @Override
+    public void fma(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, double[] out,
+        int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = a[aOffset + i] * b[bOffset + i] + c[cOffset + i];
+    }
+
+    @Override
+    public void exp(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = Math.exp(a[aOffset + i]);
+    }
+
+    @Override
+    public void sigmoid(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = 1.0 / (1.0 + Math.exp(-a[aOffset + i]));
+    }
+
+    @Override
+    public void tanh(double[] a, int aOffset, double[] out, int outOffset, int length) {
+        for (var i = 0; i < length; i++) out[outOffset + i] = Math.tanh(a[aOffset + i]);
+    }
+
+    @Override
+    public double sum(double[] a, int offset, int length) {
+        var sum = 0.0;
+        for (var i = 0; i < length; i++) sum += a[offset + i];
+        return sum;
+    }
+
+    @Override
+    public double max(double[] a, int offset, int length) {
+        var max = Double.NEGATIVE_INFINITY;
+        for (var i = 0; i < length; i++) max = Math.max(max, a[offset + i]);
+        return max;
+    }
+
+    @Override
+    public double min(double[] a, int offset, int length) {
+        var min = Double.POSITIVE_INFINITY;
+        for (var i = 0; i < length; i++) min = Math.min(min, a[offset + i]);
+        return min;
+    }
+}
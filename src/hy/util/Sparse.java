@@ -0,0 +1,206 @@
+package hy.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.function.DoubleBinaryOperator;
+
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Sparse {
+
+    public NArray of(@NonNull NArray dense) {
+        if (isSparse(dense) && csr(dense)) return dense;
+        val columns = dense.shape[dense.dims - 1];
+        val rows = dense.size / columns;
+        val source = dense.contiguous().onHeap();
+        val data = source.heapArray();
+        val rowPointers = new int[rows + 1];
+        for (var r = 0; r < rows; r++) {
+            val row = source.offset + r * columns;
+            var count = 0;
+            for (var c = 0; c < columns; c++) if (data[row + c] != 0.0) count++;
+            rowPointers[r + 1] = rowPointers[r] + count;
+        }
+        val columnIndices = new int[rowPointers[rows]];
+        val values = new double[rowPointers[rows]];
+        Parallel.forRange(rows, Math.max(1, Parallel.grain() / columns), (from, to) -> {
+            for (var r = from; r < to; r++) {
+                val row = source.offset + r * columns;
+                var k = rowPointers[r];
+                for (var c = 0; c < columns; c++) if (data[row + c] != 0.0) {
+                    columnIndices[k] = c;
+                    values[k++] = data[row + c];
+                }
+            }
+        });
+        return wrap(new SparseStorage(rows, columns, rowPointers, columnIndices, values), dense.shape);
+    }
+
+    public NArray of(@NonNull int[] shape, @NonNull int[] indices, @NonNull double[] values) {
+        if (indices.length != values.length) throw new IllegalArgumentException(
+                "Expected one value per index. Found " + indices.length + " indices and " + values.length + " values");
+        val columns = shape[shape.length - 1];
+        val size = Arrays.stream(shape).reduce(1, Math::multiplyExact);
+        val order = new long[indices.length];
+        for (var i = 0; i < indices.length; i++)
+            order[i] = (long) Objects.checkIndex(indices[i], size) << 32 | i;
+        Arrays.sort(order);
+        val rows = size / columns;
+        val rowPointers = new int[rows + 1];
+        val columnIndices = new int[indices.length];
+        val sorted = new double[indices.length];
+        var n = 0;
+        var previous = -1;
+        for (val entry : order) {
+            val index = (int) (entry >>> 32);
+            val value = values[(int) entry];
+            if (index == previous) sorted[n - 1] += value;
+            else {
+                columnIndices[n] = index % columns;
+                sorted[n++] = value;
+                rowPointers[index / columns + 1]++;
+                previous = index;
+            }
+        }
+        for (var r = 0; r < rows; r++) rowPointers[r + 1] += rowPointers[r];
+        return wrap(new SparseStorage(rows, columns, rowPointers, Arrays.copyOf(columnIndices, n),
+            Arrays.copyOf(sorted, n)), shape);
+    }
+
+    public boolean isSparse(@NonNull NArray a) { return a.storage instanceof SparseStorage; }
+
+    public int nonZeros(@NonNull NArray a) {
+        return isSparse(a) ? ((SparseStorage) a.storage).nonZeros() : (int) a.values().filter(v -> v != 0.0).count();
+    }
+
+    public double density(@NonNull NArray a) { return (double) nonZeros(a) / a.size; }
+
+    public NArray toDense(@NonNull NArray a) {
+        if (!isSparse(a)) return a;
+        return new NArray(a.shape).copy(a);
+    }
+
+    public NArray dot(@NonNull NArray a, @NonNull NArray b) {
+        if (!csr(a)) return toDense(a).dot(b);
+        val csr = (SparseStorage) a.storage;
+        val columns = csr.columns();
+        if (b.shape[0] != columns) throw new IllegalArgumentException(
+                "Dimensions are incompatible. Last dimension of 1st array has to match first dimension of 2nd array");
+        val right = b.contiguous().onHeap();
+        val data = right.heapArray();
+        val width = right.size / columns;
+        val shape = new int[Math.max(1, a.dims + b.dims - 2)];
+        shape[0] = 1;
+        System.arraycopy(a.shape, 0, shape, 0, a.dims - 1);
+        System.arraycopy(b.shape, 1, shape, a.dims - 1, b.dims - 1);
+        val result = new NArray(StorageType.HEAP, Precision.DOUBLE, shape);
+        val out = result.heapArray();
+        val pointers = csr.rowPointers();
+        val indices = csr.columnIndices();
+        val values = csr.values();
+        val perRow = Math.max(1, csr.nonZeros() / Math.max(1, csr.rows()));
+        Parallel.forRange(csr.rows(), Math.max(1, Parallel.grain() / (perRow * width)), (from, to) -> {
+            for (var r = from; r < to; r++) {
+                val target = r * width;
+                for (var k = pointers[r]; k < pointers[r + 1]; k++) {
+                    val v = values[k];
+                    val source = right.offset + indices[k] * width;
+                    for (var j = 0; j < width; j++) out[target + j] += v * data[source + j];
+                }
+            }
+        });
+        return Precision.getDefault() == Precision.DOUBLE ? result : result.to(Precision.getDefault());
+    }
+
+    public NArray transposeDot(@NonNull NArray a, @NonNull NArray b, @NonNull NArray out) {
+        if (!csr(a)) {
+            val columns = a.shape[a.dims - 1];
+            val rows = a.size / columns;
+            val product = toDense(a).reshaped(rows, columns).T().dot(b.reshaped(rows, b.size / rows));
+            return out.addInPlace(product.reshaped(out.shape));
+        }
+        val csr = (SparseStorage) a.storage;
+        if (b.size % csr.rows() != 0 || out.size != csr.columns() * (b.size / csr.rows()))
+            throw new IllegalArgumentException("Shapes " + Arrays.toString(a.shape) + ", " + Arrays.toString(b.shape)
+                    + " and " + Arrays.toString(out.shape) + " don't line up for a transposed sparse product");
+        val right = b.contiguous().onHeap();
+        val data = right.heapArray();
+        val width = right.size / csr.rows();
+        val heap = out.heapContiguous();
+        val target = heap ? out.heapArray() : new double[out.size];
+        val base = heap ? out.offset : 0;
+        val pointers = csr.rowPointers();
+        val indices = csr.columnIndices();
+        val values = csr.values();
+        val span = Math.max(1, Parallel.grain() / Math.max(1, csr.nonZeros()));
+        Parallel.forRange(width, span, (from, to) -> {
+            for (var r = 0; r < csr.rows(); r++) {
+                val source = right.offset + r * width;
+                for (var k = pointers[r]; k < pointers[r + 1]; k++) {
+                    val v = values[k];
+                    val row = base + indices[k] * width;
+                    for (var j = from; j < to; j++) target[row + j] += v * data[source + j];
+                }
+            }
+        });
+        return heap ? out : out.addInPlace(new NArray(StorageType.HEAP, Precision.DOUBLE, out.shape).fill(target));
+    }
+
+    public NArray bimap(@NonNull NArray a, @NonNull NArray b, @NonNull DoubleBinaryOperator op) {
+        if (!csr(a)) return toDense(a).bimap(op, b);
+        checkShapes(a, b);
+        val csr = (SparseStorage) a.storage;
+        val columns = csr.columns();
+        val pointers = csr.rowPointers();
+        val indices = csr.columnIndices();
+        val values = csr.values();
+        val result = new NArray(a.shape);
+        val heap = result.heapContiguous();
+        val target = heap ? result.heapArray() : new double[result.size];
+        val base = heap ? result.offset : 0;
+        Parallel.forRange(csr.rows(), Math.max(1, Parallel.grain() / columns), (from, to) -> {
+            for (var r = from; r < to; r++) {
+                var k = pointers[r];
+                for (var c = 0; c < columns; c++) {
+                    val v = k < pointers[r + 1] && indices[k] == c ? values[k++] : 0.0;
+                    target[base + r * columns + c] = op.applyAsDouble(v, b.get(r * columns + c));
+                }
+            }
+        });
+        if (!heap) result.storage.put(0, target, 0, result.size);
+        return result;
+    }
+
+    public NArray multiply(@NonNull NArray a, @NonNull NArray b) {
+        if (!csr(a)) return toDense(a).multiply(b);
+        checkShapes(a, b);
+        val csr = (SparseStorage) a.storage;
+        val columns = csr.columns();
+        val pointers = csr.rowPointers();
+        val indices = csr.columnIndices();
+        val values = csr.values();
+        val mapped = new double[values.length];
+        Parallel.forRange(csr.rows(), Math.max(1, Parallel.grain() / columns), (from, to) -> {
+            for (var r = from; r < to; r++) for (var k = pointers[r]; k < pointers[r + 1]; k++)
+                mapped[k] = values[k] * b.get(r * columns + indices[k]);
+        });
+        return wrap(new SparseStorage(csr.rows(), columns, pointers, indices, mapped), a.shape);
+    }
+
+    private void checkShapes(NArray a, NArray b) {
+        if (!Arrays.equals(a.shape, b.shape)) throw new IllegalArgumentException(
+                "Sparse operands need matching shapes. Found " + Arrays.toString(a.shape) + " and "
+                        + Arrays.toString(b.shape));
+    }
+
+    private boolean csr(NArray a) {
+        if (!isSparse(a) || !a.contiguous || a.offset != 0) return false;
+        return ((SparseStorage) a.storage).columns() == a.shape[a.dims - 1];
+    }
+
+    private NArray wrap(SparseStorage storage, int[] shape) { return new NArray(storage, 0, shape, null); }
+}
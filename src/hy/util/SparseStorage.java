@@ -0,0 +1,90 @@
+package hy.util;
+
+import java.nio.DoubleBuffer;
+import java.util.Arrays;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+
+@FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+public class SparseStorage implements Storage {
+
+    int      rows;
+    int      columns;
+    int[]    rowPointers;
+    int[]    columnIndices;
+    double[] values;
+
+    public SparseStorage(int rows, int columns, @NonNull int[] rowPointers, @NonNull int[] columnIndices,
+        @NonNull double[] values) {
+        if (rowPointers.length != rows + 1 || columnIndices.length != values.length
+                || rowPointers[rows] != values.length)
+            throw new IllegalArgumentException("Inconsistent CSR arrays for a " + rows + "x" + columns + " matrix");
+        Math.multiplyExact(rows, columns);
+        this.rows = rows;
+        this.columns = columns;
+        this.rowPointers = rowPointers;
+        this.columnIndices = columnIndices;
+        this.values = values;
+    }
+
+    public int rows() { return rows; }
+
+    public int columns() { return columns; }
+
+    public int nonZeros() { return values.length; }
+
+    public int[] rowPointers() { return rowPointers; }
+
+    public int[] columnIndices() { return columnIndices; }
+
+    public double[] values() { return values; }
+
+    @Override
+    public int length() { return rows * columns; }
+
+    @Override
+    public double get(int index) {
+        val at = find(index);
+        return at < 0 ? 0.0 : values[at];
+    }
+
+    @Override
+    public void set(int index, double value) {
+        val at = find(index);
+        if (at >= 0) values[at] = value;
+        else if (value != 0.0) throw new UnsupportedOperationException(
+                "Sparse storage can't store new non-zeros. Convert to dense first");
+    }
+
+    @Override
+    public boolean isDirect() { return false; }
+
+    @Override
+    public DoubleBuffer buffer(int index, int length) {
+        val dense = new double[length];
+        val end = index + length;
+        for (var row = index / columns; row < rows && row * columns < end; row++)
+            for (var k = rowPointers[row]; k < rowPointers[row + 1]; k++) {
+                val position = row * columns + columnIndices[k];
+                if (position >= index && position < end) dense[position - index] = values[k];
+            }
+        return DoubleBuffer.wrap(dense);
+    }
+
+    @Override
+    public void fill(int from, int to, double value) {
+        if (value != 0.0) throw new UnsupportedOperationException(
+                "Sparse storage can only be filled with zeros. Convert to dense first");
+        for (var i = from; i < to; i++) set(i, 0.0);
+    }
+
+    private int find(int index) {
+        val row = index / columns;
+        val at = Arrays.binarySearch(columnIndices, rowPointers[row], rowPointers[row + 1], index - row * columns);
+        return at < 0 ? -1 : at;
+    }
+}
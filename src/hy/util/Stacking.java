@@ -0,0 +1,136 @@
+package hy.util;
+
+import java.util.Arrays;
+import java.util.Objects;
+
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Stacking {
+
+    public NArray stack(int axis, @NonNull NArray... arrays) {
+        if (arrays.length == 0) throw new IllegalArgumentException("At least one array is needed for stacking");
+        val shape = arrays[0].shape;
+        axis = axis(axis, shape.length + 1);
+        val expanded = new NArray[arrays.length];
+        for (var i = 0; i < arrays.length; i++) {
+            if (!Arrays.equals(shape, arrays[i].shape)) throw new IllegalArgumentException(
+                    "Stacked arrays must share a shape. Found " + Arrays.toString(shape) + " and "
+                            + Arrays.toString(arrays[i].shape));
+            expanded[i] = arrays[i].expandDims(axis);
+        }
+        return concat(axis, expanded);
+    }
+
+    public NArray concat(int axis, @NonNull NArray... arrays) {
+        if (arrays.length == 0) throw new IllegalArgumentException("At least one array is needed for concatenation");
+        val first = arrays[0];
+        axis = axis(axis, first.dims);
+        val shape = first.shape.clone();
+        shape[axis] = 0;
+        for (val array : arrays) {
+            if (array.dims != first.dims) throw new IllegalArgumentException(
+                    "Concatenated arrays must have the same number of dimensions. Found " + Arrays.toString(first.shape)
+                            + " and " + Arrays.toString(array.shape));
+            for (var d = 0; d < first.dims; d++) if (d != axis && array.shape[d] != first.shape[d])
+                throw new IllegalArgumentException("Concatenated arrays may only differ along axis " + axis
+                        + ". Found " + Arrays.toString(first.shape) + " and " + Arrays.toString(array.shape));
+            shape[axis] = Math.addExact(shape[axis], array.shape[axis]);
+        }
+        val out = new NArray(shape);
+        var at = 0;
+        for (val array : arrays) {
+            val length = array.shape[axis];
+            copyBlocks(array, out, axis, at, length);
+            at += length;
+        }
+        return out;
+    }
+
+    public NArray[] split(@NonNull NArray a, int axis, int parts) {
+        axis = axis(axis, a.dims);
+        if (parts < 1 || a.shape[axis] % parts != 0) throw new IllegalArgumentException(
+                "Axis " + axis + " of length " + a.shape[axis] + " can't be split into " + parts + " equal parts");
+        val sizes = new int[parts];
+        Arrays.fill(sizes, a.shape[axis] / parts);
+        return split(a, axis, sizes);
+    }
+
+    public NArray[] split(@NonNull NArray a, int axis, @NonNull int[] sizes) {
+        axis = axis(axis, a.dims);
+        val parts = new NArray[sizes.length];
+        var at = 0;
+        for (var i = 0; i < sizes.length; i++) {
+            parts[i] = a.slice(axis, at, at + sizes[i]);
+            at += sizes[i];
+        }
+        if (at != a.shape[axis]) throw new IllegalArgumentException("Split sizes " + Arrays.toString(sizes)
+                + " don't add up to the length " + a.shape[axis] + " of axis " + axis);
+        return parts;
+    }
+
+    public NArray[] unstack(@NonNull NArray a, int axis) {
+        axis = axis(axis, a.dims);
+        val parts = new NArray[a.shape[axis]];
+        for (var i = 0; i < parts.length; i++) parts[i] = a.select(axis, i);
+        return parts;
+    }
+
+    public NArray gather(@NonNull NArray a, int axis, @NonNull int... indices) {
+        axis = axis(axis, a.dims);
+        for (val index : indices) Objects.checkIndex(index, a.shape[axis]);
+        val shape = a.shape.clone();
+        shape[axis] = indices.length;
+        val out = new NArray(shape);
+        if (indices.length == 0) return out;
+        val outer = outer(a.shape, axis);
+        val inner = inner(a.shape, axis);
+        val length = a.shape[axis];
+        if (a.contiguous) {
+            val rows = outer * indices.length;
+            Parallel.forRange(rows, Math.max(1, Parallel.grain() / inner), (from, to) -> {
+                for (var r = from; r < to; r++) {
+                    val o = r / indices.length;
+                    val source = a.offset + (o * length + indices[r % indices.length]) * inner;
+                    out.storage.put(r * inner, a.storage, source, inner);
+                }
+            });
+        } else for (var i = 0; i < indices.length; i++) {
+            val index = indices[i];
+            out.slice(axis, i, i + 1).copy(a.slice(axis, index, index + 1));
+        }
+        return out;
+    }
+
+    private void copyBlocks(NArray source, NArray out, int axis, int at, int length) {
+        if (length == 0) return;
+        if (!source.contiguous) {
+            out.slice(axis, at, at + length).copy(source);
+            return;
+        }
+        val inner = inner(source.shape, axis);
+        val block = length * inner;
+        val stride = out.shape[axis] * inner;
+        Parallel.forRange(outer(source.shape, axis), Math.max(1, Parallel.grain() / block), (from, to) -> {
+            for (var r = from; r < to; r++)
+                out.storage.put(out.offset + r * stride + at * inner, source.storage, source.offset + r * block, block);
+        });
+    }
+
+    private int outer(int[] shape, int axis) {
+        var outer = 1;
+        for (var d = 0; d < axis; d++) outer *= shape[d];
+        return outer;
+    }
+
+    private int inner(int[] shape, int axis) {
+        var inner = 1;
+        for (var d = axis + 1; d < shape.length; d++) inner *= shape[d];
+        return inner;
+    }
+
+    private int axis(int axis, int dims) { return Objects.checkIndex(axis < 0 ? axis + dims : axis, dims); }
+}
@@ -0,0 +1,38 @@
+package hy.util;
+
+import java.nio.DoubleBuffer;
+
+import lombok.val;
+import lombok.var;
+
+public interface Storage {
+
+    public int length();
+
+    public double get(int index);
+
+    public void set(int index, double value);
+
+    public boolean isDirect();
+
+    public default Precision precision() { return Precision.DOUBLE; }
+
+    public DoubleBuffer buffer(int index, int length);
+
+    public default void fill(int from, int to, double value) { for (var i = from; i < to; i++) set(i, value); }
+
+    public default void put(int index, double[] src, int offset, int length) {
+        for (var i = 0; i < length; i++) set(index + i, src[offset + i]);
+    }
+
+    public default void put(int index, DoubleBuffer src, int length) {
+        val p = src.position();
+        for (var i = 0; i < length; i++) set(index + i, src.get(p + i));
+        src.position(p + length);
+    }
+
+    public default void put(int index, Storage src, int srcIndex, int length) {
+        for (var i = 0; i < length; i++) set(index + i, src.get(srcIndex + i));
+    }
+
+}
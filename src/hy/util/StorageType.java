@@ -0,0 +1,33 @@
+package hy.util;
+
+import lombok.NonNull;
+import lombok.val;
+
+public enum StorageType {
+    HEAP, DIRECT;
+
+    private static volatile StorageType defaultType = HEAP;
+
+    public Storage allocate(int length) { return allocate(length, Precision.getDefault()); }
+
+    public Storage allocate(int length, @NonNull Precision precision) {
+        val arena = this == HEAP ? Arena.current() : null;
+        return arena != null ? arena.allocate(length, precision) : create(length, precision);
+    }
+
+    Storage create(int length, Precision precision) {
+        switch (this) {
+        case DIRECT:
+            return precision == Precision.FLOAT ? new FloatBufferStorage(length) : new BufferStorage(length);
+        case HEAP:
+        default:
+            return precision == Precision.FLOAT ? new FloatStorage(length) : new HeapStorage(length);
+        }
+    }
+
+    public static StorageType of(@NonNull Storage storage) { return storage.isDirect() ? DIRECT : HEAP; }
+
+    public static StorageType getDefault() { return defaultType; }
+
+    public static void setDefault(@NonNull StorageType type) { defaultType = type; }
+}
@@ -0,0 +1,124 @@
+package hy.util;
+
+import java.util.Arrays;
+
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Transpose {
+
+    public static final int TILE  = 16;
+    public static final int PANEL = 64;
+
+    public boolean supports(@NonNull NArray source, @NonNull NArray out) {
+        return out.heapContiguous() && source.storage instanceof HeapStorage && source.size == out.size;
+    }
+
+    public NArray copy(@NonNull NArray source, @NonNull NArray out) {
+        if (!supports(source, out)) throw new IllegalArgumentException(
+                "Strided copies need a heap source and a contiguous heap output of the same size");
+        val src = source.heapArray();
+        val dst = out.heapArray();
+        val dims = new int[source.dims];
+        val steps = new int[source.dims];
+        var m = 0;
+        for (var i = 0; i < source.dims; i++) {
+            if (source.shape[i] == 1) continue;
+            if (m > 0 && steps[m - 1] == source.strides[i] * source.shape[i]) {
+                dims[m - 1] *= source.shape[i];
+                steps[m - 1] = source.strides[i];
+            } else {
+                dims[m] = source.shape[i];
+                steps[m] = source.strides[i];
+                m++;
+            }
+        }
+        if (m == 0) {
+            dst[out.offset] = src[source.offset];
+            return out;
+        }
+        val outSteps = new int[m];
+        outSteps[m - 1] = 1;
+        for (var i = m - 2; i >= 0; i--) outSteps[i] = outSteps[i + 1] * dims[i + 1];
+        if (steps[m - 1] == 1) rows(src, source.offset, dst, out.offset, Arrays.copyOf(dims, m), steps, outSteps);
+        else if (m == 1) gather(src, source.offset, steps[0], dst, out.offset, dims[0]);
+        else tiles(src, source.offset, dst, out.offset, Arrays.copyOf(dims, m), steps, outSteps);
+        return out;
+    }
+
+    private void rows(double[] src, int srcOffset, double[] dst, int dstOffset, int[] dims, int[] steps,
+        int[] outSteps) {
+        val m = dims.length;
+        val cols = dims[m - 1];
+        val outer = Arrays.copyOf(dims, m - 1);
+        val rows = Arrays.stream(outer).reduce(1, Math::multiplyExact);
+        Parallel.forRange(rows, Math.max(1, Parallel.grain() / cols), (from, to) -> {
+            val it = new Odometer(outer, Arrays.copyOf(steps, m - 1), Arrays.copyOf(outSteps, m - 1)).seek(from);
+            for (var r = from; r < to; r++, it.next())
+                System.arraycopy(src, srcOffset + it.position(0), dst, dstOffset + it.position(1), cols);
+        });
+    }
+
+    private void gather(double[] src, int srcOffset, int step, double[] dst, int dstOffset, int n) {
+        Parallel.forRange(n, (from, to) -> {
+            for (var i = from; i < to; i++) dst[dstOffset + i] = src[srcOffset + i * step];
+        });
+    }
+
+    private void tiles(double[] src, int srcOffset, double[] dst, int dstOffset, int[] dims, int[] steps,
+        int[] outSteps) {
+        val m = dims.length;
+        val last = m - 1;
+        var p = 0;
+        for (var i = 1; i < last; i++) if (Math.abs(steps[i]) < Math.abs(steps[p])) p = i;
+        val rows = dims[p];
+        val cols = dims[last];
+        val rowStep = steps[p];
+        val colStep = steps[last];
+        val rowOut = outSteps[p];
+        val outer = new int[m - 2];
+        val outerSteps = new int[m - 2];
+        val outerOut = new int[m - 2];
+        for (int i = 0, k = 0; i < last; i++) if (i != p) {
+            outer[k] = dims[i];
+            outerSteps[k] = steps[i];
+            outerOut[k++] = outSteps[i];
+        }
+        val panels = (rows + PANEL - 1) / PANEL;
+        val units = Math.multiplyExact(Arrays.stream(outer).reduce(1, Math::multiplyExact), panels);
+        Parallel.forRange(units, Math.max(1, Parallel.grain() / (PANEL * cols)), (from, to) -> {
+            val it = new Odometer(outer, outerSteps, outerOut).seek(from / panels);
+            for (var u = from; u < to; u++) {
+                val panel = u % panels;
+                if (panel == 0 && u != from) it.next();
+                val i0 = panel * PANEL;
+                tile(src, srcOffset + it.position(0), rowStep, colStep, dst, dstOffset + it.position(1), rowOut, i0,
+                    Math.min(rows, i0 + PANEL), 0, cols);
+            }
+        });
+    }
+
+    private void tile(double[] src, int s, int si, int sj, double[] dst, int d, int di, int i0, int i1, int j0,
+        int j1) {
+        val ni = i1 - i0;
+        val nj = j1 - j0;
+        if (ni <= TILE && nj <= TILE) {
+            for (var i = i0; i < i1; i++) {
+                var from = s + i * si + j0 * sj;
+                var to = d + i * di + j0;
+                for (var j = j0; j < j1; j++, from += sj) dst[to++] = src[from];
+            }
+        } else if (ni >= nj) {
+            val mid = i0 + ni / 2;
+            tile(src, s, si, sj, dst, d, di, i0, mid, j0, j1);
+            tile(src, s, si, sj, dst, d, di, mid, i1, j0, j1);
+        } else {
+            val mid = j0 + nj / 2;
+            tile(src, s, si, sj, dst, d, di, i0, i1, j0, mid);
+            tile(src, s, si, sj, dst, d, di, i0, i1, mid, j1);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package hy.util;
+
+public interface VectorOps {
+
+    public static final VectorOps INSTANCE = load();
+
+    public static VectorOps load() {
+        if (!Boolean.parseBoolean(System.getProperty("hy.simd", "true"))) return new ScalarOps();
+        try {
+            return (VectorOps) Class.forName("hy.util.SimdOps").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException | LinkageError e) {
+            return new ScalarOps();
+        }
+    }
+
+    public String name();
+
+    public void add(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    public void subtract(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    public void multiply(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    public void divide(double[] a, int aOffset, double[] b, int bOffset, double[] out, int outOffset, int length);
+
+    public void shift(double[] a, int aOffset, double value, double[] out, int outOffset, int length);
+
+    public void scale(double[] a, int aOffset, double factor, double[] out, int outOffset, int length);
+
+    public void divide(double[] a, int aOffset, double divisor, double[] out, int outOffset, int length);
+
+    public void axpy(double alpha, double[] x, int xOffset, double[] y, int yOffset, double[] out, int outOffset,
+        int length);
+
+    public void fma(double[] a, int aOffset, double[] b, int bOffset, double[] c, int cOffset, double[] out,
+        int outOffset, int length);
+
+    public void exp(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public void sigmoid(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public void tanh(double[] a, int aOffset, double[] out, int outOffset, int length);
+
+    public double sum(double[] a, int offset, int length);
+
+    public double max(double[] a, int offset, int length);
+
+    public double min(double[] a, int offset, int length);
+}
@@ -0,0 +1,338 @@
+package hy.util;
+
+import java.util.Arrays;
+
+import lombok.AccessLevel;
+import lombok.NonNull;
+import lombok.val;
+import lombok.var;
+import lombok.experimental.FieldDefaults;
+import lombok.experimental.UtilityClass;
+
+@UtilityClass
+public class Winograd {
+
+    final int TILE  = 4;
+    final int AREA  = TILE * TILE;
+    final int LIMIT = 1 << 20;
+
+    final ThreadLocal<double[]> inputs   = new ThreadLocal<>();
+    final ThreadLocal<double[]> products = new ThreadLocal<>();
+    final ThreadLocal<double[]> adjoints = new ThreadLocal<>();
+
+    public boolean supports(int winWidth, int winHeight, int strideX, int strideY) {
+        return winWidth == 3 && winHeight == 3 && strideX == 1 && strideY == 1;
+    }
+
+    public Filter transform(@NonNull NArray weights) {
+        if (weights.dims != 4 || weights.shape[2] != 3 || weights.shape[3] != 3) throw new IllegalArgumentException(
+                "Winograd filters have to be 3x3. Got " + Arrays.toString(weights.shape));
+        val filters = weights.shape[0], channels = weights.shape[1];
+        val w = weights.contiguous().onHeap();
+        val u = new double[AREA * filters * channels];
+        Parallel.forRange(filters * channels, Math.max(1, Parallel.grain() / AREA), (from, to) -> {
+            val tile = new double[AREA];
+            for (var f = from; f < to; f++) {
+                val source = w.heapArray();
+                val base = w.offset + f * 9;
+                for (var i = 0; i < 3; i++) {
+                    val g0 = source[base + i * 3], g1 = source[base + i * 3 + 1], g2 = source[base + i * 3 + 2];
+                    tile[i * TILE] = g0;
+                    tile[i * TILE + 1] = 0.5 * (g0 + g1 + g2);
+                    tile[i * TILE + 2] = 0.5 * (g0 - g1 + g2);
+                    tile[i * TILE + 3] = g2;
+                }
+                for (var j = 0; j < TILE; j++) {
+                    val g0 = tile[j], g1 = tile[TILE + j], g2 = tile[2 * TILE + j];
+                    tile[j] = g0;
+                    tile[TILE + j] = 0.5 * (g0 + g1 + g2);
+                    tile[2 * TILE + j] = 0.5 * (g0 - g1 + g2);
+                    tile[3 * TILE + j] = g2;
+                }
+                for (var e = 0; e < AREA; e++) u[e * filters * channels + f] = tile[e];
+            }
+        });
+        return new Filter(weights, u, filters, channels);
+    }
+
+    public NArray forward(@NonNull NArray input, @NonNull Filter filter, @NonNull NArray bias, int paddingX,
+        int paddingY) {
+        val g = new Tiling(input, filter, paddingX, paddingY);
+        val in = input.contiguous().onHeap();
+        val b = bias.values().toArray();
+        val result = new NArray(g.outShape(input));
+        val out = result.heapContiguous() ? result.heapArray() : new double[result.size];
+        val outBase = result.heapContiguous() ? result.offset : 0;
+        val span = g.span();
+        val v = Im2Col.borrow(inputs, AREA * g.channels * span);
+        val m = Im2Col.borrow(products, AREA * g.filters * span);
+        try {
+            for (var n = 0; n < g.batch; n++) {
+                val inBase = in.offset + n * g.inVolume, outOffset = outBase + n * g.outVolume;
+                for (var t0 = 0; t0 < g.tiles; t0 += span) {
+                    val width = Math.min(span, g.tiles - t0);
+                    transformInputs(g, in.heapArray(), inBase, t0, width, span, v);
+                    for (var e = 0; e < AREA; e++)
+                        Gemm.gemm(g.filters, width, g.channels, filter.u, e * g.filters * g.channels, g.channels, 1, v,
+                            e * g.channels * span, span, 1, m, e * g.filters * span, span, false);
+                    transformOutputs(g, m, t0, width, span, b, out, outOffset);
+                }
+            }
+        } finally {
+            Im2Col.release(inputs, v);
+            Im2Col.release(products, m);
+        }
+        if (!result.heapContiguous()) result.storage.put(0, out, 0, result.size);
+        return result;
+    }
+
+    public NArray backward(@NonNull NArray input, @NonNull Filter filter, @NonNull NArray delta, @NonNull NArray dW,
+        @NonNull NArray db, int paddingX, int paddingY) {
+        val g = new Tiling(input, filter, paddingX, paddingY);
+        if (delta.size != g.batch * g.outVolume) throw new IllegalArgumentException("Expected a delta of shape "
+                + Arrays.toString(g.outShape(input)) + ". Got " + Arrays.toString(delta.shape));
+        val in = input.contiguous().onHeap();
+        val d = delta.contiguous().onHeap();
+        val result = new NArray(input.shape);
+        val dX = result.heapContiguous() ? result.heapArray() : new double[result.size];
+        val dXBase = result.heapContiguous() ? result.offset : 0;
+        val gradB = new double[g.filters];
+        val gradU = new double[AREA * g.filters * g.channels];
+        val span = g.span();
+        val v = Im2Col.borrow(inputs, AREA * g.channels * span);
+        val m = Im2Col.borrow(products, AREA * g.filters * span);
+        val dV = Im2Col.borrow(adjoints, AREA * g.channels * span);
+        try {
+            for (var n = 0; n < g.batch; n++) {
+                val inBase = in.offset + n * g.inVolume, dXOffset = dXBase + n * g.inVolume;
+                val dBase = d.offset + n * g.outVolume;
+                for (var k = 0; k < g.filters; k++)
+                    gradB[k] += VectorOps.INSTANCE.sum(d.heapArray(), dBase + k * g.outPlane, g.outPlane);
+                for (var t0 = 0; t0 < g.tiles; t0 += span) {
+                    val width = Math.min(span, g.tiles - t0);
+                    transformInputs(g, in.heapArray(), inBase, t0, width, span, v);
+                    transformDeltas(g, d.heapArray(), dBase, t0, width, span, m);
+                    for (var e = 0; e < AREA; e++) {
+                        Gemm.gemm(g.filters, g.channels, width, m, e * g.filters * span, span, 1, v,
+                            e * g.channels * span, 1, span, gradU, e * g.filters * g.channels, g.channels, true);
+                        Gemm.gemm(g.channels, width, g.filters, filter.u, e * g.filters * g.channels, 1, g.channels, m,
+                            e * g.filters * span, span, 1, dV, e * g.channels * span, span, false);
+                    }
+                    scatterInputs(g, dV, t0, width, span, dX, dXOffset);
+                }
+            }
+        } finally {
+            Im2Col.release(inputs, v);
+            Im2Col.release(products, m);
+            Im2Col.release(adjoints, dV);
+        }
+        dW.addInPlace(new NArray(StorageType.HEAP, Precision.DOUBLE, dW.shape).fill(reduceFilters(g, gradU)));
+        db.addInPlace(new NArray(StorageType.HEAP, Precision.DOUBLE, db.shape).fill(gradB));
+        if (!result.heapContiguous()) result.storage.put(0, dX, 0, result.size);
+        return result;
+    }
+
+    private void transformInputs(Tiling g, double[] in, int inBase, int t0, int width, int span, double[] v) {
+        Parallel.forRange(g.channels * width, Math.max(1, Parallel.grain() / AREA), (from, to) -> {
+            val tile = new double[AREA];
+            for (var index = from; index < to; index++) {
+                val c = index / width, t = index % width;
+                val x0 = (t0 + t) / g.tilesY * 2 - g.paddingX, y0 = (t0 + t) % g.tilesY * 2 - g.paddingY;
+                val plane = inBase + c * g.inPlane;
+                for (var i = 0; i < TILE; i++) {
+                    val x = x0 + i;
+                    for (var j = 0; j < TILE; j++) {
+                        val y = y0 + j;
+                        tile[i * TILE + j] = x >= 0 && x < g.inWidth && y >= 0 && y < g.inHeight
+                                ? in[plane + x * g.inHeight + y]
+                                : 0.0;
+                    }
+                }
+                for (var j = 0; j < TILE; j++) {
+                    val d0 = tile[j], d1 = tile[TILE + j], d2 = tile[2 * TILE + j], d3 = tile[3 * TILE + j];
+                    tile[j] = d0 - d2;
+                    tile[TILE + j] = d1 + d2;
+                    tile[2 * TILE + j] = d2 - d1;
+                    tile[3 * TILE + j] = d1 - d3;
+                }
+                for (var i = 0; i < TILE; i++) {
+                    val row = i * TILE;
+                    val d0 = tile[row], d1 = tile[row + 1], d2 = tile[row + 2], d3 = tile[row + 3];
+                    v[row * g.channels * span + c * span + t] = d0 - d2;
+                    v[(row + 1) * g.channels * span + c * span + t] = d1 + d2;
+                    v[(row + 2) * g.channels * span + c * span + t] = d2 - d1;
+                    v[(row + 3) * g.channels * span + c * span + t] = d1 - d3;
+                }
+            }
+        });
+    }
+
+    private void transformOutputs(Tiling g, double[] m, int t0, int width, int span, double[] bias, double[] out,
+        int outBase) {
+        Parallel.forRange(g.filters * width, Math.max(1, Parallel.grain() / AREA), (from, to) -> {
+            val tile = new double[2 * TILE];
+            for (var index = from; index < to; index++) {
+                val k = index / width, t = index % width;
+                val x0 = (t0 + t) / g.tilesY * 2, y0 = (t0 + t) % g.tilesY * 2;
+                val at = k * span + t, stride = g.filters * span;
+                for (var j = 0; j < TILE; j++) {
+                    val m0 = m[j * stride + at], m1 = m[(TILE + j) * stride + at];
+                    val m2 = m[(2 * TILE + j) * stride + at], m3 = m[(3 * TILE + j) * stride + at];
+                    tile[j] = m0 + m1 + m2;
+                    tile[TILE + j] = m1 - m2 - m3;
+                }
+                val plane = outBase + k * g.outPlane;
+                for (var i = 0; i < 2 && x0 + i < g.outWidth; i++) {
+                    val row = i * TILE, line = plane + (x0 + i) * g.outHeight + y0;
+                    out[line] = bias[k] + tile[row] + tile[row + 1] + tile[row + 2];
+                    if (y0 + 1 < g.outHeight) out[line + 1] = bias[k] + tile[row + 1] - tile[row + 2] - tile[row + 3];
+                }
+            }
+        });
+    }
+
+    private void transformDeltas(Tiling g, double[] d, int dBase, int t0, int width, int span, double[] m) {
+        Parallel.forRange(g.filters * width, Math.max(1, Parallel.grain() / AREA), (from, to) -> {
+            for (var index = from; index < to; index++) {
+                val k = index / width, t = index % width;
+                val x0 = (t0 + t) / g.tilesY * 2, y0 = (t0 + t) % g.tilesY * 2;
+                val line = dBase + k * g.outPlane + x0 * g.outHeight + y0;
+                val right = y0 + 1 < g.outHeight, below = x0 + 1 < g.outWidth;
+                val y00 = d[line], y01 = right ? d[line + 1] : 0.0;
+                val y10 = below ? d[line + g.outHeight] : 0.0, y11 = below && right ? d[line + g.outHeight + 1] : 0.0;
+                val a0 = y00, a1 = y00 + y10, a2 = y00 - y10, a3 = -y10;
+                val b0 = y01, b1 = y01 + y11, b2 = y01 - y11, b3 = -y11;
+                val at = k * span + t, stride = g.filters * span;
+                store(m, at, stride, 0, a0, b0);
+                store(m, at, stride, 1, a1, b1);
+                store(m, at, stride, 2, a2, b2);
+                store(m, at, stride, 3, a3, b3);
+            }
+        });
+    }
+
+    private void store(double[] m, int at, int stride, int i, double y0, double y1) {
+        val row = i * TILE;
+        m[row * stride + at] = y0;
+        m[(row + 1) * stride + at] = y0 + y1;
+        m[(row + 2) * stride + at] = y0 - y1;
+        m[(row + 3) * stride + at] = -y1;
+    }
+
+    private void scatterInputs(Tiling g, double[] dV, int t0, int width, int span, double[] dX, int dXBase) {
+        Parallel.forRange(g.channels, Math.max(1, Parallel.grain() / (AREA * width)), (from, to) -> {
+            val tile = new double[AREA];
+            for (var c = from; c < to; c++) {
+                val plane = dXBase + c * g.inPlane;
+                for (var t = 0; t < width; t++) {
+                    val at = c * span + t, stride = g.channels * span;
+                    for (var i = 0; i < TILE; i++) {
+                        val row = i * TILE;
+                        val v0 = dV[row * stride + at], v1 = dV[(row + 1) * stride + at];
+                        val v2 = dV[(row + 2) * stride + at], v3 = dV[(row + 3) * stride + at];
+                        tile[row] = v0;
+                        tile[row + 1] = v1 - v2 + v3;
+                        tile[row + 2] = v1 + v2 - v0;
+                        tile[row + 3] = -v3;
+                    }
+                    val x0 = (t0 + t) / g.tilesY * 2 - g.paddingX, y0 = (t0 + t) % g.tilesY * 2 - g.paddingY;
+                    for (var j = 0; j < TILE; j++) {
+                        val y = y0 + j;
+                        if (y < 0 || y >= g.inHeight) continue;
+                        val v0 = tile[j], v1 = tile[TILE + j], v2 = tile[2 * TILE + j], v3 = tile[3 * TILE + j];
+                        add(dX, plane, g, x0, y, v0);
+                        add(dX, plane, g, x0 + 1, y, v1 - v2 + v3);
+                        add(dX, plane, g, x0 + 2, y, v1 + v2 - v0);
+                        add(dX, plane, g, x0 + 3, y, -v3);
+                    }
+                }
+            }
+        });
+    }
+
+    private void add(double[] dX, int plane, Tiling g, int x, int y, double value) {
+        if (x >= 0 && x < g.inWidth) dX[plane + x * g.inHeight + y] += value;
+    }
+
+    private double[] reduceFilters(Tiling g, double[] gradU) {
+        val count = g.filters * g.channels;
+        val gradW = new double[count * 9];
+        val tile = new double[3 * TILE];
+        for (var f = 0; f < count; f++) {
+            for (var j = 0; j < TILE; j++) {
+                val m0 = gradU[j * count + f], m1 = gradU[(TILE + j) * count + f];
+                val m2 = gradU[(2 * TILE + j) * count + f], m3 = gradU[(3 * TILE + j) * count + f];
+                tile[j] = m0 + 0.5 * (m1 + m2);
+                tile[TILE + j] = 0.5 * (m1 - m2);
+                tile[2 * TILE + j] = 0.5 * (m1 + m2) + m3;
+            }
+            for (var i = 0; i < 3; i++) {
+                val row = i * TILE;
+                val m0 = tile[row], m1 = tile[row + 1], m2 = tile[row + 2], m3 = tile[row + 3];
+                gradW[f * 9 + i * 3] = m0 + 0.5 * (m1 + m2);
+                gradW[f * 9 + i * 3 + 1] = 0.5 * (m1 - m2);
+                gradW[f * 9 + i * 3 + 2] = 0.5 * (m1 + m2) + m3;
+            }
+        }
+        return gradW;
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    public static class Filter {
+
+        NArray   source;
+        double[] u;
+        int      filters, channels;
+
+        private Filter(NArray source, double[] u, int filters, int channels) {
+            this.source = source;
+            this.u = u;
+            this.filters = filters;
+            this.channels = channels;
+        }
+
+        public boolean isOf(NArray weights) { return source == weights; }
+    }
+
+    @FieldDefaults(makeFinal = true, level = AccessLevel.PRIVATE)
+    private static class Tiling {
+
+        int batch, channels, inWidth, inHeight, inPlane, inVolume;
+        int filters, paddingX, paddingY;
+        int outWidth, outHeight, outPlane, outVolume;
+        int tilesX, tilesY, tiles;
+
+        Tiling(NArray input, Filter filter, int paddingX, int paddingY) {
+            val dims = input.dims;
+            if (dims < 3) throw new IllegalArgumentException("Input dimensions should be atleast 3. Got " + dims);
+            channels = input.shape[dims - 3];
+            inWidth = input.shape[dims - 2];
+            inHeight = input.shape[dims - 1];
+            if (filter.channels != channels) throw new IllegalArgumentException(
+                    "Expected " + filter.channels + " input channels. Got " + channels);
+            filters = filter.filters;
+            this.paddingX = paddingX;
+            this.paddingY = paddingY;
+            outWidth = inWidth - 2 + 2 * paddingX;
+            outHeight = inHeight - 2 + 2 * paddingY;
+            inPlane = inWidth * inHeight;
+            inVolume = channels * inPlane;
+            outPlane = outWidth * outHeight;
+            outVolume = filters * outPlane;
+            batch = input.size / inVolume;
+            tilesX = (outWidth + 1) / 2;
+            tilesY = (outHeight + 1) / 2;
+            tiles = tilesX * tilesY;
+        }
+
+        int span() { return Math.max(1, Math.min(tiles, LIMIT / (AREA * Math.max(channels, filters)))); }
+
+        int[] outShape(NArray input) {
+            val shape = input.getShape();
+            shape[input.dims - 3] = filters;
+            shape[input.dims - 2] = outWidth;
+            shape[input.dims - 1] = outHeight;
+            return shape;
+        }
+    }
+}